@@ -0,0 +1,67 @@
+package top.iceclean.chatspace.cache;
+
+import com.alibaba.fastjson.JSON;
+import lombok.AllArgsConstructor;
+import lombok.Data;
+import lombok.NoArgsConstructor;
+import org.redisson.api.RedissonClient;
+import org.redisson.client.codec.StringCodec;
+import org.springframework.stereotype.Component;
+import top.iceclean.chatspace.infrastructure.po.Friend;
+import top.iceclean.chatspace.infrastructure.po.User;
+
+import java.util.List;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * 好友相关缓存
+ * @author : Ice'Clean
+ * @date : 2026-10-18
+ */
+@Component
+public class FriendCache {
+    /** 用户的好友列表，后接用户 ID */
+    private static final String FRIEND_LIST = "friend-list:";
+    /** 好友列表的存活时间（秒），好友关系变化时会主动清除 */
+    private static final int FRIEND_LIST_EXPIRE = 60;
+
+    /** 好友列表缓存数据（好友关系和好友的用户实体，在线状态不缓存） */
+    @Data
+    @NoArgsConstructor
+    @AllArgsConstructor
+    public static class FriendList {
+        private List<Friend> friends;
+        private List<User> users;
+    }
+
+    private final RedissonClient redissonClient;
+
+    public FriendCache(RedissonClient redissonClient) {
+        this.redissonClient = redissonClient;
+    }
+
+    /**
+     * 获取用户的好友列表
+     * @param userId 用户 ID
+     * @return 好友列表，缓存中没有时返回 null
+     */
+    public FriendList getFriendList(int userId) {
+        String data = redissonClient.<String>getBucket(FRIEND_LIST + userId, StringCodec.INSTANCE).get();
+        return data == null ? null : JSON.parseObject(data, FriendList.class);
+    }
+
+    /** 缓存用户的好友列表 */
+    public void cachedFriendList(int userId, FriendList friendList) {
+        redissonClient.<String>getBucket(FRIEND_LIST + userId, StringCodec.INSTANCE)
+                .set(JSON.toJSONString(friendList), FRIEND_LIST_EXPIRE, TimeUnit.SECONDS);
+    }
+
+    /** 好友关系发生变化时，清除相关用户的好友列表 */
+    public void removeFriendList(int... userIds) {
+        String[] keys = new String[userIds.length];
+        for (int i = 0; i < userIds.length; i++) {
+            keys[i] = FRIEND_LIST + userIds[i];
+        }
+        redissonClient.getKeys().delete(keys);
+    }
+}
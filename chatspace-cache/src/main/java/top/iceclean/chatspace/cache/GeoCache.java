@@ -1,7 +1,7 @@
 package top.iceclean.chatspace.cache;
 
 import lombok.extern.slf4j.Slf4j;
-import org.redisson.api.GeoUnit;
+import org.redisson.api.*;
 import org.springframework.beans.factory.annotation.Autowired;
 import org.springframework.stereotype.Component;
 import top.iceclean.chatspace.infrastructure.constant.RedisKey;
@@ -12,9 +12,7 @@ import top.iceclean.chatspace.infrastructure.utils.GeoUtils;
 import top.iceclean.chatspace.infrastructure.utils.RedissonUtils;
 import top.iceclean.chatspace.infrastructure.vo.SiteVO;
 
-import java.util.Iterator;
-import java.util.Map;
-import java.util.Set;
+import java.util.*;
 
 /**
  * GEO 相关缓存
@@ -26,6 +24,7 @@ import java.util.Set;
 public class GeoCache {
 
     private final RedissonUtils redissonUtils;
+    private final RedissonClient redissonClient;
 
     /** 地图比例 */
     private static final int DEFAULT_RATE = 1;
@@ -35,8 +34,9 @@ public class GeoCache {
     private static final GeoUnit DEFAULT_UNIT = GeoUnit.KILOMETERS;
 
     @Autowired
-    public GeoCache(RedissonUtils redissonUtils) {
+    public GeoCache(RedissonUtils redissonUtils, RedissonClient redissonClient) {
         this.redissonUtils = redissonUtils;
+        this.redissonClient = redissonClient;
     }
 
     /**
@@ -54,6 +54,36 @@ public class GeoCache {
         redissonUtils.geoAdd(RedisKey.USER_SITE_HASH + siteDTO.getSpaceId(), geoSite[0], geoSite[1], userId);
     }
 
+    /**
+     * 批量同步用户位置，移动的用户一条 GEOADD、离开的用户一条 ZREM，在一次管道中异步写入
+     * @param spaceId 空间 ID
+     * @param userIds 移动过的用户 ID
+     * @param xs 对应的虚拟坐标 x
+     * @param ys 对应的虚拟坐标 y
+     * @param removedUserIds 离开空间的用户 ID
+     * @return 写入结果
+     */
+    public RFuture<BatchResult<?>> syncUsers(int spaceId, int[] userIds, int[] xs, int[] ys, int[] removedUserIds) {
+        RBatch batch = redissonClient.createBatch(BatchOptions.defaults());
+        String key = RedisKey.USER_SITE_HASH + spaceId;
+        if (userIds.length > 0) {
+            GeoEntry[] entries = new GeoEntry[userIds.length];
+            for (int i = 0; i < userIds.length; i++) {
+                double[] geoSite = GeoUtils.compute(xs[i], ys[i], DEFAULT_RATE);
+                entries[i] = new GeoEntry(geoSite[0], geoSite[1], String.valueOf(userIds[i]));
+            }
+            batch.getGeo(key).addAsync(entries);
+        }
+        if (removedUserIds.length > 0) {
+            List<String> members = new ArrayList<>(removedUserIds.length);
+            for (int userId : removedUserIds) {
+                members.add(String.valueOf(userId));
+            }
+            batch.getGeo(key).removeAllAsync(members);
+        }
+        return batch.executeAsync();
+    }
+
     /**
      * 将用户从 GEO 缓存中移除
      * @param siteVO 用户坐标信息
@@ -68,15 +98,17 @@ public class GeoCache {
      * @param zone 区域实体
      */
     public void putZone(Zone zone) {
-        String key = RedisKey.ZONE_POINT_HASH + zone.getSpaceId();
-        double[] site1 = GeoUtils.compute(zone.getStartX(), zone.getStartY(), DEFAULT_RATE);
-        double[] site2 = GeoUtils.compute(zone.getStartX(), zone.getEndY(), DEFAULT_RATE);
-        double[] site3 = GeoUtils.compute(zone.getEndX(), zone.getStartY(), DEFAULT_RATE);
-        double[] site4 = GeoUtils.compute(zone.getEndX(), zone.getEndY(), DEFAULT_RATE);
-        redissonUtils.geoAdd(key, site1[0], site1[1], zone.getId() + "-1");
-        redissonUtils.geoAdd(key, site2[0], site2[1], zone.getId() + "-2");
-        redissonUtils.geoAdd(key, site3[0], site3[1], zone.getId() + "-3");
-        redissonUtils.geoAdd(key, site4[0], site4[1], zone.getId() + "-4");
+        // 四个坐标在一条 GEOADD 中写入
+        redissonClient.getGeo(RedisKey.ZONE_POINT_HASH + zone.getSpaceId()).add(zonePoints(zone));
+    }
+
+    /**
+     * 将区域的四个坐标加入批量操作中，由调用方统一提交
+     * @param batch 批量操作
+     * @param zone 区域实体
+     */
+    public void putZone(RBatch batch, Zone zone) {
+        batch.getGeo(RedisKey.ZONE_POINT_HASH + zone.getSpaceId()).addAsync(zonePoints(zone));
     }
 
     /**
@@ -84,11 +116,23 @@ public class GeoCache {
      * @param zone 区域试图以
      */
     public void removeZone(Zone zone) {
-        String key = RedisKey.ZONE_POINT_HASH + zone.getSpaceId();
-        redissonUtils.geoRemove(key, zone.getId() + "-1");
-        redissonUtils.geoRemove(key, zone.getId() + "-2");
-        redissonUtils.geoRemove(key, zone.getId() + "-3");
-        redissonUtils.geoRemove(key, zone.getId() + "-4");
+        // 四个坐标在一条 ZREM 中移除
+        int zoneId = zone.getId();
+        redissonClient.getGeo(RedisKey.ZONE_POINT_HASH + zone.getSpaceId())
+                .removeAll(Arrays.asList(zoneId + "-1", zoneId + "-2", zoneId + "-3", zoneId + "-4"));
+    }
+
+    /** 区域四个角的 GEO 坐标，成员形式为（zoneId-序号） */
+    private GeoEntry[] zonePoints(Zone zone) {
+        int[][] corners = {
+                {zone.getStartX(), zone.getStartY()}, {zone.getStartX(), zone.getEndY()},
+                {zone.getEndX(), zone.getStartY()}, {zone.getEndX(), zone.getEndY()}};
+        GeoEntry[] entries = new GeoEntry[corners.length];
+        for (int i = 0; i < corners.length; i++) {
+            double[] site = GeoUtils.compute(corners[i][0], corners[i][1], DEFAULT_RATE);
+            entries[i] = new GeoEntry(site[0], site[1], zone.getId() + "-" + (i + 1));
+        }
+        return entries;
     }
 
     /**
@@ -1,17 +1,17 @@
 package top.iceclean.chatspace.cache;
 
-import com.alibaba.fastjson.JSON;
+import org.redisson.api.RedissonClient;
 import org.springframework.beans.factory.annotation.Autowired;
 import org.springframework.stereotype.Component;
+import top.iceclean.chatspace.cache.collection.IntSet;
+import top.iceclean.chatspace.cache.collection.IntStringCodec;
+import top.iceclean.chatspace.cache.codec.EntityCache;
 import top.iceclean.chatspace.infrastructure.constant.RedisKey;
 import top.iceclean.chatspace.infrastructure.po.Group;
 import top.iceclean.chatspace.infrastructure.utils.RedissonUtils;
 import top.iceclean.chatspace.infrastructure.vo.GroupVO;
 import top.iceclean.feign.GroupClient;
 
-import java.util.Set;
-import java.util.stream.Collectors;
-
 /**
  * 群组相关缓存
  * @author : Ice'Clean
@@ -21,11 +21,16 @@ import java.util.stream.Collectors;
 public class GroupCache {
 
     private final RedissonUtils redissonUtils;
+    private final RedissonClient redissonClient;
     private final GroupClient groupClient;
+    private final EntityCache entityCache;
 
     @Autowired
-    public GroupCache(RedissonUtils redissonUtils, GroupClient groupClient) {
+    public GroupCache(RedissonUtils redissonUtils, RedissonClient redissonClient,
+                      GroupClient groupClient, EntityCache entityCache) {
         this.redissonUtils = redissonUtils;
+        this.redissonClient = redissonClient;
+        this.entityCache = entityCache;
         this.groupClient = groupClient;
     }
 
@@ -36,18 +41,8 @@ public class GroupCache {
      * @return 群组实体
      */
     public Group getGroup(int groupId) {
-        // 先在缓存中获取
-        Object groupCache = redissonUtils.hashGet(RedisKey.GROUP_HASH, groupId);
-        if (groupCache == null) {
-            // 缓存中不存在，则访问服务获取
-            Group group = groupClient.getGroupById(groupId);
-            // 然后回种缓存并返回
-            redissonUtils.hashSet(RedisKey.GROUP_HASH, groupId, JSON.toJSONString(group));
-            return group;
-        }
-
-        // 缓存中存在，直接反序列化后返回
-        return JSON.parseObject(groupCache.toString(), Group.class);
+        // 先在本地和缓存中获取，不存在则合并并发请求后只访问一次服务并回种
+        return entityCache.get(RedisKey.GROUP_HASH, groupId, Group.class, groupClient::getGroupById);
     }
 
     /**
@@ -98,8 +93,7 @@ public class GroupCache {
      * @param groupId 群组 ID
      * @return 群组中所有在线用户的 ID 集合
      */
-    public Set<Integer> getGroupUsers(int groupId) {
-        return redissonUtils.setGet(RedisKey.GROUP_USER_SET + groupId)
-                .stream().map(id -> Integer.parseInt(id.toString())).collect(Collectors.toSet());
+    public IntSet getGroupUsers(int groupId) {
+        return IntStringCodec.readSet(redissonClient, RedisKey.GROUP_USER_SET + groupId);
     }
 }
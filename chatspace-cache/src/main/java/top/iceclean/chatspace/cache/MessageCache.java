@@ -0,0 +1,78 @@
+package top.iceclean.chatspace.cache;
+
+import com.alibaba.fastjson.JSON;
+import org.redisson.api.BatchOptions;
+import org.redisson.api.RBatch;
+import org.redisson.api.RDequeAsync;
+import org.redisson.api.RedissonClient;
+import org.redisson.client.codec.StringCodec;
+import org.springframework.stereotype.Component;
+import top.iceclean.chatspace.cache.config.CacheProperties;
+import top.iceclean.chatspace.infrastructure.po.Message;
+
+import java.util.Comparator;
+import java.util.List;
+import java.util.concurrent.TimeUnit;
+import java.util.stream.Collectors;
+
+/**
+ * 消息相关缓存
+ * 每个会话在 Redis 列表中保留最近的若干条消息（头部最新），打开会话时直接从这里读取，不访问数据库
+ * @author : Ice'Clean
+ * @date : 2026-10-18
+ */
+@Component
+public class MessageCache {
+    /** 会话最近消息列表，后接会话 ID */
+    private static final String HOT_MESSAGE_LIST = "message-hot:";
+    /** 不活跃会话的最近消息列表过期时间（小时） */
+    private static final int HOT_MESSAGE_EXPIRE = 24;
+
+    private final RedissonClient redissonClient;
+    private final CacheProperties cacheProperties;
+
+    public MessageCache(RedissonClient redissonClient, CacheProperties cacheProperties) {
+        this.redissonClient = redissonClient;
+        this.cacheProperties = cacheProperties;
+    }
+
+    /**
+     * 将新保存的消息放入各自会话的最近消息列表，超出长度的旧消息被裁掉
+     * @param messageList 消息列表，同一会话内按消息 ID 升序
+     */
+    public void pushHotMessages(List<Message> messageList) {
+        int size = cacheProperties.getHotMessageSize();
+        if (size <= 0 || messageList.isEmpty()) {
+            return;
+        }
+        RBatch batch = redissonClient.createBatch(BatchOptions.defaults());
+        messageList.stream().collect(Collectors.groupingBy(Message::getSessionId)).forEach((sessionId, messages) -> {
+            RDequeAsync<String> hotList = batch.getDeque(HOT_MESSAGE_LIST + sessionId, StringCodec.INSTANCE);
+            messages.forEach(message -> hotList.addFirstAsync(JSON.toJSONString(message)));
+            batch.getList(HOT_MESSAGE_LIST + sessionId, StringCodec.INSTANCE).trimAsync(0, size - 1);
+            hotList.expireAsync(HOT_MESSAGE_EXPIRE, TimeUnit.HOURS);
+        });
+        batch.execute();
+    }
+
+    /**
+     * 获取会话最近的消息
+     * @param sessionId 会话 ID
+     * @param limit 获取的条数
+     * @return 按消息 ID 倒序的消息列表，缓存中不足 limit 条时返回 null（需要查询数据库）
+     */
+    public List<Message> getHotMessages(int sessionId, int limit) {
+        if (limit > cacheProperties.getHotMessageSize()) {
+            return null;
+        }
+        List<String> hotList = redissonClient.<String>getList(HOT_MESSAGE_LIST + sessionId, StringCodec.INSTANCE)
+                .range(0, limit - 1);
+        if (hotList.size() < limit) {
+            return null;
+        }
+        // 多个消费者并发写入时，列表中的顺序可能与消息 ID 不完全一致，按 ID 重新排序
+        return hotList.stream().map(data -> JSON.parseObject(data, Message.class))
+                .sorted(Comparator.comparing(Message::getMsgId).reversed())
+                .collect(Collectors.toList());
+    }
+}
@@ -0,0 +1,148 @@
+package top.iceclean.chatspace.cache;
+
+import org.redisson.api.*;
+import org.redisson.client.codec.StringCodec;
+import org.springframework.stereotype.Component;
+
+import java.util.*;
+
+/**
+ * 用户在会话中的阅读位置（最后阅读的消息 ID）缓存
+ * 每个位置是一个只增不减的最大值寄存器，更新时顺带标记为脏，由后台定期合并写回数据库，
+ * 读取时以缓存中的值为准
+ * @author : Ice'Clean
+ * @date : 2026-10-18
+ */
+@Component
+public class ReadCursorCache {
+    /** 会话中各用户的阅读位置哈希（userId : msgId），后接会话 ID */
+    private static final String READ_CURSOR_HASH = "read-cursor:";
+    /** 等待写回数据库的阅读位置集合（sessionId-userId） */
+    private static final String READ_CURSOR_DIRTY_SET = "read-cursor-dirty";
+    /** 只在新位置更大时更新，并标记为脏 */
+    private static final String ADVANCE =
+            "local cur = redis.call('hget', KEYS[1], ARGV[1]) " +
+            "if cur and tonumber(cur) >= tonumber(ARGV[2]) then return 0 end " +
+            "redis.call('hset', KEYS[1], ARGV[1], ARGV[2]) " +
+            "redis.call('sadd', KEYS[2], ARGV[3]) " +
+            "return 1";
+
+    /** 阅读位置 */
+    public static class Cursor {
+        private final int sessionId;
+        private final int userId;
+        private final int msgId;
+
+        public Cursor(int sessionId, int userId, int msgId) {
+            this.sessionId = sessionId;
+            this.userId = userId;
+            this.msgId = msgId;
+        }
+
+        public int getSessionId() {
+            return sessionId;
+        }
+
+        public int getUserId() {
+            return userId;
+        }
+
+        public int getMsgId() {
+            return msgId;
+        }
+    }
+
+    private final RedissonClient redissonClient;
+
+    public ReadCursorCache(RedissonClient redissonClient) {
+        this.redissonClient = redissonClient;
+    }
+
+    /**
+     * 将用户的阅读位置推进到指定消息（比当前位置小时忽略）
+     * @param sessionId 会话 ID
+     * @param userId 用户 ID
+     * @param msgId 消息 ID
+     * @return 位置是否有推进
+     */
+    public boolean advance(int sessionId, int userId, int msgId) {
+        Long result = redissonClient.getScript(StringCodec.INSTANCE).eval(RScript.Mode.READ_WRITE, ADVANCE,
+                RScript.ReturnType.INTEGER, Arrays.asList(READ_CURSOR_HASH + sessionId, READ_CURSOR_DIRTY_SET),
+                String.valueOf(userId), String.valueOf(msgId), sessionId + "-" + userId);
+        return result != null && result == 1;
+    }
+
+    /**
+     * 获取用户的阅读位置
+     * @return 最后阅读的消息 ID，缓存中没有时返回 null
+     */
+    public Integer get(int sessionId, int userId) {
+        String msgId = redissonClient.<String, String>getMap(READ_CURSOR_HASH + sessionId, StringCodec.INSTANCE)
+                .get(String.valueOf(userId));
+        return msgId == null ? null : Integer.parseInt(msgId);
+    }
+
+    /**
+     * 批量获取用户在多个会话中的阅读位置，所有读取在一次管道中完成
+     * @param userId 用户 ID
+     * @param sessionIds 会话 ID 集合
+     * @return 阅读位置 (sessionId -> msgId)，缓存中没有的会话不包含在内
+     */
+    public Map<Integer, Integer> get(int userId, Collection<Integer> sessionIds) {
+        if (sessionIds.isEmpty()) {
+            return Collections.emptyMap();
+        }
+        List<Integer> sessionIdList = new ArrayList<>(sessionIds);
+        RBatch batch = redissonClient.createBatch(BatchOptions.defaults());
+        sessionIdList.forEach(sessionId -> batch.<String, String>getMap(READ_CURSOR_HASH + sessionId, StringCodec.INSTANCE)
+                .getAsync(String.valueOf(userId)));
+        List<?> responses = batch.execute().getResponses();
+        Map<Integer, Integer> cursorMap = new HashMap<>(sessionIdList.size() * 2);
+        for (int i = 0; i < sessionIdList.size(); i++) {
+            if (responses.get(i) != null) {
+                cursorMap.put(sessionIdList.get(i), Integer.parseInt(responses.get(i).toString()));
+            }
+        }
+        return cursorMap;
+    }
+
+    /**
+     * 取出一批等待写回的阅读位置（取出后即不再是脏的）
+     * @param count 最多取出的个数
+     * @return 阅读位置列表
+     */
+    public List<Cursor> pollDirty(int count) {
+        Set<String> dirtySet = redissonClient.<String>getSet(READ_CURSOR_DIRTY_SET, StringCodec.INSTANCE).removeRandom(count);
+        if (dirtySet.isEmpty()) {
+            return Collections.emptyList();
+        }
+        // 一次管道读出所有位置的当前值
+        List<int[]> keys = new ArrayList<>(dirtySet.size());
+        RBatch batch = redissonClient.createBatch(BatchOptions.defaults());
+        for (String dirty : dirtySet) {
+            int split = dirty.indexOf('-');
+            int[] key = {Integer.parseInt(dirty.substring(0, split)), Integer.parseInt(dirty.substring(split + 1))};
+            keys.add(key);
+            batch.<String, String>getMap(READ_CURSOR_HASH + key[0], StringCodec.INSTANCE).getAsync(String.valueOf(key[1]));
+        }
+        List<?> responses = batch.execute().getResponses();
+        List<Cursor> cursors = new ArrayList<>(keys.size());
+        for (int i = 0; i < keys.size(); i++) {
+            Object msgId = responses.get(i);
+            if (msgId != null) {
+                cursors.add(new Cursor(keys.get(i)[0], keys.get(i)[1], Integer.parseInt(msgId.toString())));
+            }
+        }
+        return cursors;
+    }
+
+    /** 写回失败时，重新标记为脏 */
+    public void markDirty(Collection<Cursor> cursors) {
+        if (cursors.isEmpty()) {
+            return;
+        }
+        List<String> dirtyList = new ArrayList<>(cursors.size());
+        cursors.forEach(cursor -> dirtyList.add(cursor.getSessionId() + "-" + cursor.getUserId()));
+        redissonClient.<String>getSet(READ_CURSOR_DIRTY_SET, StringCodec.INSTANCE).addAll(dirtyList);
+    }
+}
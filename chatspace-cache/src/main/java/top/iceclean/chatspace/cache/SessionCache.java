@@ -1,13 +1,16 @@
 package top.iceclean.chatspace.cache;
 
+import org.redisson.api.RedissonClient;
 import org.springframework.beans.factory.annotation.Autowired;
 import org.springframework.stereotype.Component;
+import top.iceclean.chatspace.cache.collection.IntSet;
+import top.iceclean.chatspace.cache.collection.IntStringCodec;
+import top.iceclean.chatspace.cache.local.NearCacheManager;
 import top.iceclean.chatspace.infrastructure.constant.RedisKey;
 import top.iceclean.chatspace.infrastructure.constant.SessionType;
 import top.iceclean.chatspace.infrastructure.utils.RedissonUtils;
 
 import java.util.*;
-import java.util.stream.Collectors;
 
 /**
  * 会话相关缓存
@@ -18,6 +21,7 @@ import java.util.stream.Collectors;
 public class SessionCache {
 
     private final RedissonUtils redissonUtils;
+    private final RedissonClient redissonClient;
     private final UserCache userCache;
     private final GroupCache groupCache;
     private final ZoneCache zoneCache;
@@ -26,12 +30,14 @@ public class SessionCache {
     private final UserCache.State tempSessionState;
 
     @Autowired
-    public SessionCache(RedissonUtils redissonUtils, UserCache userCache, GroupCache groupCache, ZoneCache zoneCache, SpaceCache spaceCache) {
+    public SessionCache(RedissonUtils redissonUtils, RedissonClient redissonClient, NearCacheManager nearCacheManager,
+                        UserCache userCache, GroupCache groupCache, ZoneCache zoneCache, SpaceCache spaceCache) {
         this.redissonUtils = redissonUtils;
+        this.redissonClient = redissonClient;
         this.userCache = userCache;
         this.groupCache = groupCache;
         this.zoneCache = zoneCache;
-        this.tempSessionState = UserCache.getIntState(RedisKey.TEMP_SESSION, redissonUtils, UserCache.State.Type.INT);
+        this.tempSessionState = UserCache.getIntState(RedisKey.TEMP_SESSION, redissonUtils, nearCacheManager, UserCache.State.Type.INT);
         this.spaceCache = spaceCache;
     }
 
@@ -61,9 +67,8 @@ public class SessionCache {
      * @param tempSessionId 临时会话 ID
      * @return 临时会话中的用户 ID 集合
      */
-    public Set<Integer> getTempSessionUsers(long tempSessionId) {
-        return redissonUtils.setGet(RedisKey.TEMP_USER_SET + tempSessionId)
-                .stream().map(id -> Integer.parseInt(id.toString())).collect(Collectors.toSet());
+    public IntSet getTempSessionUsers(long tempSessionId) {
+        return IntStringCodec.readSet(redissonClient, RedisKey.TEMP_USER_SET + tempSessionId);
     }
 
     /**
@@ -72,19 +77,19 @@ public class SessionCache {
      * @param tempSessionId 目标临时会话
      * @return 移除成功的话，返回会话剩下的成员，否则返回 null
      */
-    public Set<Integer> removeUserFromTempSession(int userId, long tempSessionId) {
+    public IntSet removeUserFromTempSession(int userId, long tempSessionId) {
         // 先清除用户的临时会话缓存
         tempSessionState.clean(userId);
         // 若移除用户成功，则返回会话中剩下的用户，并在会话中没有用户时移除会话
         if (redissonUtils.setRemove(RedisKey.TEMP_USER_SET + tempSessionId, userId)) {
-            Set<Integer> tempSessionUsers = getTempSessionUsers(tempSessionId);
+            IntSet tempSessionUsers = getTempSessionUsers(tempSessionId);
             if (tempSessionUsers.isEmpty()) {
                 redissonUtils.delete(RedisKey.TEMP_USER_SET + tempSessionId);
             }
             return tempSessionUsers;
         }
         // 否则用户步在会话中，返回空集
-        return new HashSet<>(0);
+        return new IntSet(0);
     }
 
     /**
@@ -93,9 +98,9 @@ public class SessionCache {
      * @param targetId 会话 ID
      * @return 会话中所有在线用户的 ID 集合
      */
-    public Set<Integer> getSessionUsers(SessionType sessionType, int targetId) {
+    public IntSet getSessionUsers(SessionType sessionType, int targetId) {
         // 通过类型去不同的缓存中获取
-        Set<Integer> userIdSet;
+        IntSet userIdSet;
         switch (sessionType) {
             case TEMP: userIdSet = getTempSessionUsers(targetId); break;
             case FRIEND: userIdSet = userCache.getFriendSessionUsers(targetId); break;
@@ -103,7 +108,7 @@ public class SessionCache {
             case ZONE: userIdSet = zoneCache.getZoneUsers(targetId); break;
             case SPACE: userIdSet = spaceCache.getSpaceUsers(targetId); break;
             case UNIVERSE: userIdSet = userCache.getAllUsers(); break;
-            default: userIdSet = new HashSet<>(0);
+            default: userIdSet = new IntSet(0);
         }
         return userIdSet;
     }
@@ -0,0 +1,235 @@
+package top.iceclean.chatspace.cache;
+
+import org.redisson.api.*;
+import org.redisson.client.codec.StringCodec;
+import org.springframework.context.annotation.Lazy;
+import org.springframework.stereotype.Component;
+import top.iceclean.chatspace.cache.collection.IntSet;
+import top.iceclean.chatspace.cache.local.NearCache;
+import top.iceclean.chatspace.cache.local.NearCacheManager;
+import top.iceclean.feign.FriendClient;
+import top.iceclean.feign.GroupClient;
+
+import java.util.*;
+import java.util.concurrent.TimeUnit;
+import java.util.function.IntFunction;
+
+/**
+ * 社交关系邻接缓存（用户的好友、用户加入的群聊、群聊的成员）
+ * 每个邻接集合在 Redis 中是一个集合，本地以有序的 int 数组近端缓存，
+ * 由加好友、删好友、入群、退群、建群、解散群聊时主动维护，首次使用时才回源到好友和群聊服务
+ * @author : Ice'Clean
+ * @date : 2026-10-18
+ */
+@Component
+public class SocialGraphCache {
+    /** 用户的好友 ID 集合，后接用户 ID（同时作为近端缓存名称） */
+    private static final String FRIEND_SET = "social-friend";
+    /** 用户加入的群聊 ID 集合，后接用户 ID */
+    private static final String USER_GROUP_SET = "social-user-group";
+    /** 群聊的成员 ID 集合，后接群聊 ID */
+    private static final String GROUP_MEMBER_SET = "social-group-member";
+    /** 集合已加载的标记成员，使空集合也能在 Redis 中存在 */
+    private static final String LOADED = "";
+    /** 集合的过期时间（小时），回源与修改并发时可能漏掉一次修改，过期后重新加载兜底 */
+    private static final int SET_EXPIRE = 6;
+    /** 集合存在（已加载）时才修改，不存在时由下一次读取回源加载 */
+    private static final String UPDATE_IF_EXISTS =
+            "for i = 1, #KEYS do " +
+            "if redis.call('exists', KEYS[i]) == 1 then " +
+            "if ARGV[1] == '1' then redis.call('sadd', KEYS[i], ARGV[i + 1]) " +
+            "else redis.call('srem', KEYS[i], ARGV[i + 1]) end end end " +
+            "return 0";
+
+    private final RedissonClient redissonClient;
+    private final NearCacheManager nearCacheManager;
+    private final FriendClient friendClient;
+    private final GroupClient groupClient;
+
+    public SocialGraphCache(RedissonClient redissonClient, NearCacheManager nearCacheManager,
+                            @Lazy FriendClient friendClient, @Lazy GroupClient groupClient) {
+        this.redissonClient = redissonClient;
+        this.nearCacheManager = nearCacheManager;
+        this.friendClient = friendClient;
+        this.groupClient = groupClient;
+    }
+
+    /**
+     * 获取用户所有好友的用户 ID
+     * @param userId 用户 ID
+     * @return 有序的好友 ID 数组
+     */
+    public int[] getFriendIds(int userId) {
+        return get(FRIEND_SET, userId, id -> friendClient.getFriendUserIdList(id));
+    }
+
+    /**
+     * 获取用户加入的所有群聊 ID
+     * @param userId 用户 ID
+     * @return 有序的群聊 ID 数组
+     */
+    public int[] getGroupIds(int userId) {
+        return get(USER_GROUP_SET, userId, id -> groupClient.getGroupIdList(id));
+    }
+
+    /**
+     * 获取群聊所有成员的用户 ID
+     * @param groupId 群聊 ID
+     * @return 有序的成员 ID 数组
+     */
+    public int[] getGroupMemberIds(int groupId) {
+        return get(GROUP_MEMBER_SET, groupId, id -> groupClient.getUserIdList(id));
+    }
+
+    /**
+     * 获取与用户有关联的所有用户（好友以及同群聊的用户），不包括自己
+     * 邻接集合都在本地时不会有任何远程调用
+     * @param userId 用户 ID
+     * @return 关联用户 ID 集合
+     */
+    public IntSet getRelatedUserIds(int userId) {
+        int[] friendIds = getFriendIds(userId);
+        int[] groupIds = getGroupIds(userId);
+        List<int[]> memberIdsList = new ArrayList<>(groupIds.length);
+        int size = friendIds.length;
+        for (int groupId : groupIds) {
+            int[] memberIds = getGroupMemberIds(groupId);
+            memberIdsList.add(memberIds);
+            size += memberIds.length;
+        }
+        IntSet relatedUserIds = new IntSet(size);
+        relatedUserIds.addAll(friendIds);
+        memberIdsList.forEach(relatedUserIds::addAll);
+        relatedUserIds.remove(userId);
+        return relatedUserIds;
+    }
+
+    /** 两个用户成为好友 */
+    public void addFriend(int userId, int toUserId) {
+        updateFriend(userId, toUserId, true);
+    }
+
+    /** 两个用户解除好友关系 */
+    public void removeFriend(int userId, int toUserId) {
+        updateFriend(userId, toUserId, false);
+    }
+
+    /** 用户加入群聊 */
+    public void joinGroup(int userId, int groupId) {
+        updateGroup(userId, groupId, true);
+    }
+
+    /** 用户退出群聊 */
+    public void exitGroup(int userId, int groupId) {
+        updateGroup(userId, groupId, false);
+    }
+
+    /** 用户创建了群聊，丢弃用户的群聊集合，下次使用时重新加载 */
+    public void createGroup(int userId) {
+        redissonClient.getKeys().delete(key(USER_GROUP_SET, userId));
+        nearCacheManager.invalidate(USER_GROUP_SET, userId);
+    }
+
+    /**
+     * 群聊解散，将群聊从所有成员的群聊集合中移除，并丢弃群聊的成员集合
+     * 只能在鉴权通过且群聊真正删除成功之后调用，否则群聊会从成员的在线通知中消失
+     * @param groupId 群聊 ID
+     * @param memberIds 解散前的成员 ID
+     */
+    public void dissolveGroup(int groupId, int[] memberIds) {
+        if (memberIds.length > 0) {
+            List<Object> keys = new ArrayList<>(memberIds.length);
+            int[] groupIds = new int[memberIds.length];
+            for (int memberId : memberIds) {
+                keys.add(key(USER_GROUP_SET, memberId));
+            }
+            Arrays.fill(groupIds, groupId);
+            update(false, keys, groupIds);
+            for (int memberId : memberIds) {
+                nearCacheManager.invalidate(USER_GROUP_SET, memberId);
+            }
+        }
+        redissonClient.getKeys().delete(key(GROUP_MEMBER_SET, groupId));
+        nearCacheManager.invalidate(GROUP_MEMBER_SET, groupId);
+    }
+
+    private void updateFriend(int userId, int toUserId, boolean add) {
+        update(add, Arrays.<Object>asList(key(FRIEND_SET, userId), key(FRIEND_SET, toUserId)), toUserId, userId);
+        nearCacheManager.invalidate(FRIEND_SET, userId);
+        nearCacheManager.invalidate(FRIEND_SET, toUserId);
+    }
+
+    private void updateGroup(int userId, int groupId, boolean add) {
+        update(add, Arrays.<Object>asList(key(USER_GROUP_SET, userId), key(GROUP_MEMBER_SET, groupId)), groupId, userId);
+        nearCacheManager.invalidate(USER_GROUP_SET, userId);
+        nearCacheManager.invalidate(GROUP_MEMBER_SET, groupId);
+    }
+
+    private void update(boolean add, List<Object> keys, int... members) {
+        Object[] args = new Object[members.length + 1];
+        args[0] = add ? "1" : "0";
+        for (int i = 0; i < members.length; i++) {
+            args[i + 1] = String.valueOf(members[i]);
+        }
+        redissonClient.getScript(StringCodec.INSTANCE).eval(RScript.Mode.READ_WRITE, UPDATE_IF_EXISTS,
+                RScript.ReturnType.INTEGER, keys, args);
+    }
+
+    /**
+     * 读取邻接集合，依次从近端缓存、Redis 和服务中获取
+     * @param prefix 集合名称，同时作为近端缓存名称
+     * @param id 用户或群聊 ID
+     * @param loader 回源加载函数
+     * @return 有序的 ID 数组
+     */
+    private int[] get(String prefix, int id, IntFunction<List<Integer>> loader) {
+        NearCache nearCache = nearCacheManager.getCache(prefix);
+        if (nearCache != null) {
+            Object cached = nearCache.get(id);
+            if (cached != null) {
+                return (int[]) cached;
+            }
+        }
+        long epoch = nearCache == null ? 0 : nearCache.epoch(id);
+        int[] ids = load(key(prefix, id), id, loader);
+        if (nearCache != null) {
+            nearCache.put(id, ids, epoch);
+        }
+        return ids;
+    }
+
+    private int[] load(String key, int id, IntFunction<List<Integer>> loader) {
+        RSet<String> set = redissonClient.getSet(key, StringCodec.INSTANCE);
+        Set<String> members = set.readAll();
+        if (members.isEmpty()) {
+            // Redis 中还没有，回源加载后回种（连同加载标记一起写入）
+            List<Integer> idList = loader.apply(id);
+            List<String> memberList = new ArrayList<>(idList.size() + 1);
+            memberList.add(LOADED);
+            idList.forEach(memberId -> memberList.add(String.valueOf(memberId)));
+            set.addAll(memberList);
+            set.expire(SET_EXPIRE, TimeUnit.HOURS);
+            return toSortedArray(idList);
+        }
+        int[] ids = new int[members.size()];
+        int size = 0;
+        for (String member : members) {
+            if (!LOADED.equals(member)) {
+                ids[size++] = Integer.parseInt(member);
+            }
+        }
+        ids = Arrays.copyOf(ids, size);
+        Arrays.sort(ids);
+        return ids;
+    }
+
+    private static String key(String prefix, int id) {
+        return prefix + ':' + id;
+    }
+
+    private static int[] toSortedArray(Collection<Integer> idList) {
+        int[] ids = idList.stream().mapToInt(Integer::intValue).distinct().toArray();
+        Arrays.sort(ids);
+        return ids;
+    }
+}
@@ -1,16 +1,17 @@
 package top.iceclean.chatspace.cache;
 
+import org.redisson.api.RedissonClient;
 import org.springframework.beans.factory.annotation.Autowired;
 import org.springframework.stereotype.Component;
+import top.iceclean.chatspace.cache.collection.IntSet;
+import top.iceclean.chatspace.cache.collection.IntStringCodec;
+import top.iceclean.chatspace.cache.local.NearCacheManager;
 import top.iceclean.chatspace.infrastructure.constant.RedisKey;
 import top.iceclean.chatspace.infrastructure.po.Site;
 import top.iceclean.chatspace.infrastructure.po.Space;
 import top.iceclean.chatspace.infrastructure.utils.RedissonUtils;
 import top.iceclean.chatspace.infrastructure.vo.SpaceVO;
 
-import java.util.Set;
-import java.util.stream.Collectors;
-
 /**
  * @author : Ice'Clean
  * @date : 2022-12-03
@@ -19,15 +20,18 @@ import java.util.stream.Collectors;
 public class SpaceCache {
 
     private final RedissonUtils redissonUtils;
+    private final RedissonClient redissonClient;
     /** 用户所在空间的状态缓存 */
     private final UserCache.State spaceState;
     /** 位置缓存 */
     private final GeoCache geoCache;
 
     @Autowired
-    public SpaceCache(RedissonUtils redissonUtils, GeoCache geoCache) {
+    public SpaceCache(RedissonUtils redissonUtils, RedissonClient redissonClient,
+                      NearCacheManager nearCacheManager, GeoCache geoCache) {
         this.redissonUtils = redissonUtils;
-        this.spaceState = UserCache.getIntState(RedisKey.SPACE_SESSION, redissonUtils, UserCache.State.Type.INT);
+        this.redissonClient = redissonClient;
+        this.spaceState = UserCache.getIntState(RedisKey.SPACE_SESSION, redissonUtils, nearCacheManager, UserCache.State.Type.INT);
         this.geoCache = geoCache;
     }
 
@@ -62,9 +66,8 @@ public class SpaceCache {
     }
 
     /** 获取空间中的所有用户 */
-    public Set<Integer> getSpaceUsers(int spaceId) {
-        return redissonUtils.setGet(RedisKey.SPACE_USER_SET + spaceId)
-                .stream().map(id -> Integer.parseInt(id.toString())).collect(Collectors.toSet());
+    public IntSet getSpaceUsers(int spaceId) {
+        return IntStringCodec.readSet(redissonClient, RedisKey.SPACE_USER_SET + spaceId);
     }
 
     /** 获取空间的用户数量 */
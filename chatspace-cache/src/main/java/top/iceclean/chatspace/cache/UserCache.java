@@ -1,16 +1,23 @@
 package top.iceclean.chatspace.cache;
 
+import org.redisson.api.BatchOptions;
+import org.redisson.api.RBatch;
+import org.redisson.api.RBitSetAsync;
+import org.redisson.api.RedissonClient;
 import org.springframework.beans.factory.annotation.Autowired;
 import org.springframework.stereotype.Component;
+import top.iceclean.chatspace.cache.codec.EntityCache;
+import top.iceclean.chatspace.cache.collection.IntSet;
+import top.iceclean.chatspace.cache.local.NearCache;
+import top.iceclean.chatspace.cache.local.NearCacheManager;
+import top.iceclean.chatspace.cache.local.OnlineRegistry;
 import top.iceclean.chatspace.infrastructure.constant.RedisKey;
 import top.iceclean.chatspace.infrastructure.po.User;
 import top.iceclean.chatspace.infrastructure.utils.RedissonUtils;
 import top.iceclean.chatspace.infrastructure.vo.UserVO;
 import top.iceclean.feign.FriendClient;
 
-import java.util.Arrays;
-import java.util.HashSet;
-import java.util.Set;
+import java.util.*;
 import java.util.concurrent.TimeUnit;
 import java.util.stream.Collectors;
 
@@ -22,7 +29,10 @@ import java.util.stream.Collectors;
 @Component
 public class UserCache {
 
-    /** 用户各种整型状态的缓存，给外部用 */
+    /**
+     * 用户各种整型状态的缓存，给外部用
+     * 读取时优先走本地近端缓存，修改时广播失效消息保证各节点一致
+     */
     public static class State {
         /** 指定类型，用于序列化 */
         enum Type {
@@ -35,17 +45,24 @@ public class UserCache {
         private final RedissonUtils redissonUtils;
         /** 所属类型 */
         private final Type type;
+        /** 近端缓存管理 */
+        private final NearCacheManager nearCacheManager;
+        /** 该状态的近端缓存，未启用时为 null */
+        private final NearCache nearCache;
 
-        public State(String stateName, RedissonUtils redissonUtils, Type type) {
+        public State(String stateName, RedissonUtils redissonUtils, NearCacheManager nearCacheManager, Type type) {
             this.stateName = stateName;
             this.redissonUtils = redissonUtils;
             this.type = type;
+            this.nearCacheManager = nearCacheManager;
+            this.nearCache = nearCacheManager.getCache(stateName);
         }
 
         /** 设置指定用户该状态的当前值 */
         public void set(int userId, Object value) {
             if (value != null) {
                 redissonUtils.hashSet(RedisKey.USER_LOGIN_HASH + userId, stateName, value);
+                nearCacheManager.invalidate(stateName, userId);
             }
         }
 
@@ -54,25 +71,93 @@ public class UserCache {
             if (type != Type.INT) {
                 throw new IllegalStateException(type.name() + "类型，不允许获取 INT 类型的值");
             }
-            Object value = redissonUtils.hashGet(RedisKey.USER_LOGIN_HASH + userId, stateName);
-            return value == null ? null : Integer.parseInt(value.toString());
+            return (Integer) load(userId);
         }
 
         public String getString(int userId) {
             if (type != Type.STRING) {
                 throw new IllegalStateException(type.name() + "类型，不允许获取 STRING 类型的值");
             }
-            Object value = redissonUtils.hashGet(RedisKey.USER_LOGIN_HASH + userId, stateName);
-            return value == null ? null : value.toString();
+            return (String) load(userId);
+        }
+
+        /**
+         * 批量获取多个用户该状态的当前值，近端缓存未命中的在一次管道中回源
+         * @param userIds 用户 ID 集合
+         * @param redissonClient 用于创建管道
+         * @return 状态值 (userId -> value)，没有该状态的用户不包含在内
+         */
+        public Map<Integer, Object> getAll(Collection<Integer> userIds, RedissonClient redissonClient) {
+            Map<Integer, Object> valueMap = new HashMap<>(userIds.size() * 2);
+            List<Integer> missList = new ArrayList<>();
+            for (Integer userId : userIds) {
+                Object cached = nearCache == null ? null : nearCache.get(userId);
+                if (cached == null) {
+                    missList.add(userId);
+                } else if (cached != NearCache.NULL) {
+                    valueMap.put(userId, cached);
+                }
+            }
+            if (missList.isEmpty()) {
+                return valueMap;
+            }
+            long[] epochs = new long[missList.size()];
+            if (nearCache != null) {
+                for (int i = 0; i < epochs.length; i++) {
+                    epochs[i] = nearCache.epoch(missList.get(i));
+                }
+            }
+            RBatch batch = redissonClient.createBatch(BatchOptions.defaults());
+            missList.forEach(userId -> batch.getMap(RedisKey.USER_LOGIN_HASH + userId).getAsync(stateName));
+            List<?> responses = batch.execute().getResponses();
+            for (int i = 0; i < missList.size(); i++) {
+                Object value = responses.get(i);
+                if (value != null) {
+                    value = type == Type.INT ? (Object) Integer.parseInt(value.toString()) : value.toString();
+                    valueMap.put(missList.get(i), value);
+                }
+                if (nearCache != null) {
+                    nearCache.put(missList.get(i), value == null ? NearCache.NULL : value, epochs[i]);
+                }
+            }
+            return valueMap;
         }
 
         /** 清除指定用户的该状态 */
         public void clean(int userId) {
             redissonUtils.hashDel(RedisKey.USER_LOGIN_HASH + userId, stateName);
+            nearCacheManager.invalidate(stateName, userId);
+        }
+
+        /** 先从近端缓存获取，未命中再回源 Redis，并按类型转换好放入近端缓存 */
+        private Object load(int userId) {
+            if (nearCache == null) {
+                return fetch(userId);
+            }
+            Object cached = nearCache.get(userId);
+            if (cached != null) {
+                return cached == NearCache.NULL ? null : cached;
+            }
+            long epoch = nearCache.epoch(userId);
+            Object value = fetch(userId);
+            nearCache.put(userId, value == null ? NearCache.NULL : value, epoch);
+            return value;
+        }
+
+        private Object fetch(int userId) {
+            Object value = redissonUtils.hashGet(RedisKey.USER_LOGIN_HASH + userId, stateName);
+            if (value == null) {
+                return null;
+            }
+            return type == Type.INT ? (Object) Integer.parseInt(value.toString()) : value.toString();
         }
     }
 
     private final RedissonUtils redissonUtils;
+    private final RedissonClient redissonClient;
+    private final NearCacheManager nearCacheManager;
+    private final OnlineRegistry onlineRegistry;
+    private final EntityCache entityCache;
     private FriendClient friendClient;
 
     /** 各种状态缓存 */
@@ -80,11 +165,16 @@ public class UserCache {
     private final State userBoxState;
     private final State serverNodeState;
 
-    public UserCache(RedissonUtils redissonUtils) {
+    public UserCache(RedissonUtils redissonUtils, RedissonClient redissonClient,
+                     NearCacheManager nearCacheManager, OnlineRegistry onlineRegistry, EntityCache entityCache) {
         this.redissonUtils = redissonUtils;
-        this.friendSessionState = getIntState(RedisKey.FRIEND_SESSION, redissonUtils, State.Type.INT);
-        this.userBoxState = getIntState(RedisKey.USER_BOX, redissonUtils, State.Type.INT);
-        this.serverNodeState = getIntState(RedisKey.SERVER_NODE, redissonUtils, State.Type.STRING);
+        this.redissonClient = redissonClient;
+        this.nearCacheManager = nearCacheManager;
+        this.onlineRegistry = onlineRegistry;
+        this.entityCache = entityCache;
+        this.friendSessionState = getIntState(RedisKey.FRIEND_SESSION, redissonUtils, nearCacheManager, State.Type.INT);
+        this.userBoxState = getIntState(RedisKey.USER_BOX, redissonUtils, nearCacheManager, State.Type.INT);
+        this.serverNodeState = getIntState(RedisKey.SERVER_NODE, redissonUtils, nearCacheManager, State.Type.STRING);
     }
 
     @Autowired
@@ -93,8 +183,9 @@ public class UserCache {
     }
 
     /** 获取一个用户状态缓存操作对象 */
-    public static State getIntState(String stateName, RedissonUtils redissonUtils, State.Type type) {
-        return new State(stateName, redissonUtils, type);
+    public static State getIntState(String stateName, RedissonUtils redissonUtils,
+                                    NearCacheManager nearCacheManager, State.Type type) {
+        return new State(stateName, redissonUtils, nearCacheManager, type);
     }
 
     /** 用户登录缓存 */
@@ -102,6 +193,7 @@ public class UserCache {
         String loginKey = RedisKey.USER_LOGIN_HASH + user.getId();
         // 首先删除之前可能遗留的缓存
         redissonUtils.delete(loginKey);
+        nearCacheManager.invalidateAll(user.getId());
         // 设置缓存状态
         redissonUtils.hashSet(loginKey, RedisKey.TOKEN, token);
         redissonUtils.hashSet(loginKey, RedisKey.AUTHORITIES, authorityString);
@@ -148,6 +240,7 @@ public class UserCache {
     /** 设置用户上下线标记 */
     public void setOnline(int userId, boolean online) {
         redissonUtils.setBit(RedisKey.USER_ONLINE_BIT, userId, online);
+        onlineRegistry.publish(userId, online);
     }
 
     /** 判断用户是否在线 */
@@ -155,14 +248,52 @@ public class UserCache {
         return redissonUtils.getBit(RedisKey.USER_ONLINE_BIT, userId);
     }
 
+    /**
+     * 批量判断用户是否在线，所有 GETBIT 在一次管道中完成
+     * @param userIds 用户 ID 集合
+     * @return 用户在线状态 (userId -> online)
+     */
+    public Map<Integer, Boolean> isOnline(Collection<Integer> userIds) {
+        if (userIds.isEmpty()) {
+            return Collections.emptyMap();
+        }
+        List<Integer> userIdList = new ArrayList<>(userIds);
+        RBatch batch = redissonClient.createBatch(BatchOptions.defaults());
+        RBitSetAsync onlineBit = batch.getBitSet(RedisKey.USER_ONLINE_BIT);
+        userIdList.forEach(onlineBit::getAsync);
+        List<?> responses = batch.execute().getResponses();
+        Map<Integer, Boolean> onlineMap = new HashMap<>(userIdList.size() * 2);
+        for (int i = 0; i < userIdList.size(); i++) {
+            onlineMap.put(userIdList.get(i), Boolean.TRUE.equals(responses.get(i)));
+        }
+        return onlineMap;
+    }
+
     /** 获取系统在先总人数 */
     public long onlineUserNum() {
-        return redissonUtils.countBit(RedisKey.USER_ONLINE_BIT);
+        return onlineRegistry.cardinality();
     }
 
     /** 获取所有在线的用户 */
-    public Set<Integer> getAllUsers() {
-        return redissonUtils.getBitValueSet(RedisKey.USER_ONLINE_BIT);
+    public IntSet getAllUsers() {
+        return onlineRegistry.toIntSet();
+    }
+
+    /**
+     * 求指定用户中在线的用户，用于消息路由
+     * 直接读取 Redis 在线位图（一次管道），不使用本地在线位图：本地位图依赖至多一次送达的广播和定时全量同步，
+     * 启动后首次同步完成前为空，丢失广播时会在下次同步前漏掉在线用户，只适合统计和遍历
+     * @param userIds 用户 ID 集合
+     * @return 其中在线的用户 ID 集合
+     */
+    public IntSet filterOnline(IntSet userIds) {
+        IntSet onlineSet = new IntSet(userIds.size());
+        isOnline(userIds).forEach((userId, online) -> {
+            if (online) {
+                onlineSet.add(userId);
+            }
+        });
+        return onlineSet;
     }
 
     /**
@@ -174,11 +305,25 @@ public class UserCache {
         return new UserVO(user, isOnline(user.getId()));
     }
 
+    /**
+     * 批量将用户包装为用户响应对象，在线状态一次性读取
+     * @param users 用户实体集合
+     * @return 用户响应对象 (userId -> userVO)
+     */
+    public Map<Integer, UserVO> wrapUsers(Collection<User> users) {
+        Map<Integer, Boolean> onlineMap = isOnline(users.stream().map(User::getId).collect(Collectors.toSet()));
+        Map<Integer, UserVO> userMap = new HashMap<>(users.size() * 2);
+        users.forEach(user -> userMap.put(user.getId(), new UserVO(user, onlineMap.getOrDefault(user.getId(), false))));
+        return userMap;
+    }
+
     /** 获取两个用户的会话 ID */
     public Integer getFriendSession(int userId1, int userId2) {
         Integer friendId = friendClient.getFriendId(userId1, userId2);
         // 将 sessionId 所对应的两个用户的映射缓存起来，加速后面的发送消息
-        redissonUtils.hashSet(RedisKey.FRIEND_USER_HASH, friendId, userId1 + "-" + userId2);
+        if (friendId != null) {
+            entityCache.put(RedisKey.FRIEND_USER_HASH, friendId, new int[]{userId1, userId2});
+        }
         // 同时在两个用户的缓存中，设置该好友会话，便于后期的查询
         friendSessionState.set(userId1, friendId);
         friendSessionState.set(userId2, friendId);
@@ -193,25 +338,19 @@ public class UserCache {
     /** 移除好友会话缓存 */
     public void removeFriendSession(int friendId) {
         // 获取好友会话中的用户，并清除他们缓存中的好友会话
-        getFriendSessionUsers(friendId).forEach(friendSessionState::clean);
+        getFriendSessionUsers(friendId).forEachInt(friendSessionState::clean);
         // 将好友会话移除
-        redissonUtils.hashDel(RedisKey.FRIEND_USER_HASH, friendId);
-    }
-
-    /** 获取好友会话的用户 */
-    public Set<Integer> getFriendSessionUsers(int friendId) {
-        Object usersCache = redissonUtils.hashGet(RedisKey.FRIEND_USER_HASH, friendId);
-        if (usersCache == null) {
-            // 为空的话，重新查询出来
-            HashSet<Integer> friendIds = new HashSet<>(friendClient.getFriendUserIdList(friendId));
-            // 将其缓存起来
-            redissonUtils.hashSet(RedisKey.FRIEND_USER_HASH, friendId,
-                    friendIds.stream().map(Object::toString).collect(Collectors.joining("-")));
-            return friendIds;
-        }
-        // 否则直接返回
-        return Arrays.stream(usersCache.toString().split("-"))
-                .map(Integer::parseInt).collect(Collectors.toSet());
+        entityCache.remove(RedisKey.FRIEND_USER_HASH, friendId);
+    }
+
+    /** 获取好友会话的用户，并发未命中时只回源一次，不存在的好友会话短暂缓存为空 */
+    public IntSet getFriendSessionUsers(int friendId) {
+        int[] userIds = entityCache.get(RedisKey.FRIEND_USER_HASH, friendId, int[].class, id -> {
+            List<Integer> userIdList = friendClient.getFriendUserIdList(id);
+            return userIdList == null || userIdList.isEmpty() ? null :
+                    userIdList.stream().mapToInt(Integer::intValue).toArray();
+        });
+        return userIds == null ? new IntSet(2) : IntSet.of(userIds);
     }
 
     /** 获取用户所在节点 */
@@ -219,6 +358,18 @@ public class UserCache {
         return serverNodeState.getString(userId);
     }
 
+    /**
+     * 批量获取用户所在节点
+     * @param userIds 用户 ID 集合
+     * @return 用户所在节点 (userId -> serverId)，没有节点信息的用户不包含在内
+     */
+    public Map<Integer, String> getServerNodes(Collection<Integer> userIds) {
+        Map<Integer, String> serverNodeMap = new HashMap<>(userIds.size() * 2);
+        serverNodeState.getAll(userIds, redissonClient).forEach((userId, serverId) ->
+                serverNodeMap.put(userId, serverId.toString()));
+        return serverNodeMap;
+    }
+
     public void setServerNode(int userId, String serverId) {
         serverNodeState.set(userId, serverId);
     }
@@ -1,10 +1,23 @@
 package top.iceclean.chatspace.cache;
 
-import com.alibaba.fastjson.JSON;
 import lombok.AllArgsConstructor;
 import lombok.Getter;
 import lombok.extern.slf4j.Slf4j;
+import org.redisson.api.BatchOptions;
+import org.redisson.api.RBatch;
+import org.redisson.api.RMap;
+import org.redisson.api.RScript;
+import org.redisson.api.RTopic;
+import org.redisson.api.RedissonClient;
+import org.redisson.client.codec.StringCodec;
 import org.springframework.stereotype.Component;
+import top.iceclean.chatspace.cache.collection.IntSet;
+import top.iceclean.chatspace.cache.collection.IntStringCodec;
+import top.iceclean.chatspace.cache.codec.EntityCache;
+import top.iceclean.chatspace.cache.config.CacheProperties;
+import top.iceclean.chatspace.cache.loader.SingleFlight;
+import top.iceclean.chatspace.cache.local.NearCacheManager;
+import top.iceclean.chatspace.cache.local.ZoneIndex;
 import top.iceclean.chatspace.infrastructure.constant.GroupType;
 import top.iceclean.chatspace.infrastructure.constant.RedisKey;
 import top.iceclean.chatspace.infrastructure.constant.ZoneType;
@@ -15,9 +28,9 @@ import top.iceclean.chatspace.infrastructure.vo.SiteVO;
 import top.iceclean.chatspace.infrastructure.vo.ZoneVO;
 import top.iceclean.feign.GroupClient;
 
-import java.util.Arrays;
-import java.util.Objects;
-import java.util.Set;
+import java.util.*;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentMap;
 import java.util.stream.Collectors;
 
 /**
@@ -28,16 +41,51 @@ import java.util.stream.Collectors;
 @Slf4j
 @Component
 public class ZoneCache {
+    /** 区域矩形哈希（zoneId : pid,startX,startY,endX,endY,type-groupId-zoneId），后接空间 ID */
+    private static final String ZONE_RECT_HASH = "zone-rect:";
+    /** 区域矩形哈希中的完整标记字段，存在时表示哈希中已经包含空间的全部区域（与哈希一起过期或被清除） */
+    private static final String ZONE_RECT_COMPLETE = "complete";
+    /** 区域矩形哈希中的版本字段，每删除一个区域递增一次 */
+    private static final String ZONE_RECT_VERSION = "version";
+    /** 删除区域矩形并递增版本 */
+    private static final String REMOVE_RECT =
+            "redis.call('hdel', KEYS[1], ARGV[1]) " +
+            "return redis.call('hincrby', KEYS[1], '" + ZONE_RECT_VERSION + "', 1)";
+    /**
+     * 回种区域矩形：版本与读取时一致才写入，只补上缺少的区域（不覆盖新写入的矩形），最后打上完整标记；
+     * 版本不一致说明回种期间有区域被删除，此时放弃写入，避免把已删除的区域写回去
+     * ARGV[1] 为读取时的版本（没有时为空串），之后依次为区域 ID 和矩形
+     */
+    private static final String RESEED_RECTS =
+            "if (redis.call('hget', KEYS[1], '" + ZONE_RECT_VERSION + "') or '') ~= ARGV[1] then return 0 end " +
+            "for i = 2, #ARGV, 2 do redis.call('hsetnx', KEYS[1], ARGV[i], ARGV[i + 1]) end " +
+            "redis.call('hset', KEYS[1], '" + ZONE_RECT_COMPLETE + "', '1') " +
+            "return 1";
+    /** 回种时遇到并发删除的最大重试次数 */
+    private static final int RESEED_ATTEMPTS = 3;
+    /** 区域索引失效频道，消息为空间 ID */
+    private static final String ZONE_INDEX_TOPIC = "zone-index-invalidate";
 
     private final RedissonUtils redissonUtils;
+    private final RedissonClient redissonClient;
     private final GroupClient groupClient;
 
     private final GroupCache groupCache;
     private final GeoCache geoCache;
+    private final CacheProperties cacheProperties;
+    private final EntityCache entityCache;
 
     /** 缓存用户未 ACK 的区域进入 */
     private final UserCache.State tempZoneInState;
 
+    /** 各空间的区域空间索引，按需从 Redis 加载 (spaceId -> index) */
+    private final ConcurrentMap<Integer, ZoneIndex> zoneIndexMap = new ConcurrentHashMap<>();
+    /** 各空间索引的本地失效次数，加载期间发生过失效的索引不放入本地 (spaceId -> 次数) */
+    private final ConcurrentMap<Integer, Long> zoneIndexVersionMap = new ConcurrentHashMap<>();
+    /** 合并同一空间并发的索引加载 */
+    private final SingleFlight zoneIndexFlight = new SingleFlight();
+    private final RTopic zoneIndexTopic;
+
     /** 区域的关键缓存数据 */
     @Getter
     @AllArgsConstructor
@@ -73,12 +121,20 @@ public class ZoneCache {
         }
     }
 
-    public ZoneCache(RedissonUtils redissonUtils, GroupClient groupClient, GroupCache groupCache, GeoCache geoCache) {
+    public ZoneCache(RedissonUtils redissonUtils, RedissonClient redissonClient, NearCacheManager nearCacheManager,
+                     GroupClient groupClient, GroupCache groupCache, GeoCache geoCache,
+                     CacheProperties cacheProperties, EntityCache entityCache) {
         this.redissonUtils = redissonUtils;
+        this.redissonClient = redissonClient;
         this.groupClient = groupClient;
         this.groupCache = groupCache;
         this.geoCache = geoCache;
-        this.tempZoneInState = UserCache.getIntState(RedisKey.TEMP_ZONE_IN, redissonUtils, UserCache.State.Type.INT);
+        this.cacheProperties = cacheProperties;
+        this.entityCache = entityCache;
+        this.tempZoneInState = UserCache.getIntState(RedisKey.TEMP_ZONE_IN, redissonUtils, nearCacheManager, UserCache.State.Type.INT);
+        // 任意节点修改了区域后，丢弃本地索引，下次使用时重新加载
+        this.zoneIndexTopic = redissonClient.getTopic(ZONE_INDEX_TOPIC, StringCodec.INSTANCE);
+        this.zoneIndexTopic.addListener(String.class, (channel, spaceId) -> discardZoneIndex(Integer.parseInt(spaceId)));
     }
 
     /**
@@ -100,18 +156,8 @@ public class ZoneCache {
      * @param zoneId 区域 ID
      */
     public Zone getZone(int zoneId) {
-        // 先在缓存中获取
-        Object zoneCache = redissonUtils.hashGet(RedisKey.ZONE_HASH, zoneId);
-        if (zoneCache == null) {
-            // 缓存中不存在，则访问服务获取
-            Zone zone = groupClient.getZoneById(zoneId);
-            // 然后回种缓存并返回
-            redissonUtils.hashSet(RedisKey.ZONE_HASH, zoneId, JSON.toJSONString(zone));
-            return zone;
-        }
-
-        // 缓存中存在，直接反序列化后返回
-        return JSON.parseObject(zoneCache.toString(), Zone.class);
+        // 先在本地和缓存中获取，不存在则合并并发请求后只访问一次服务并回种
+        return entityCache.get(RedisKey.ZONE_HASH, zoneId, Zone.class, groupClient::getZoneById);
     }
 
     /**
@@ -121,34 +167,50 @@ public class ZoneCache {
      */
     public ZoneVO cachedZone(Zone zone) {
         // 将区域缓存起来，并缓存其位置
-        redissonUtils.hashSet(RedisKey.ZONE_HASH, zone.getId(), JSON.toJSONString(zone));
+        entityCache.put(RedisKey.ZONE_HASH, zone.getId(), zone);
         cachedZoneSite(zone);
         Group group = groupCache.getGroup(zone.getGroupId());
         return new ZoneVO(zone, group);
     }
 
     /**
-     * 将指定区域的所有坐标缓存起来（默认实现，调用各个实现类的缓存操作方法）
+     * 将指定区域的位置缓存起来（默认实现，调用各个实现类的缓存操作方法）
      * @param zone 指定的区域
      */
     public void cachedZoneSite(Zone zone) {
-        // 先将区域的四个坐标加入，用于判断区域重叠
-        geoCache.putZone(zone);
-
-        // 扫描全部坐标，缓存坐标和区域 ID 的映射关系
-        String key = RedisKey.ZONE_SITE_HASH + zone.getSpaceId();
-        String zoneInfo = Info.serialize(zone);
-        int startX = zone.getStartX();
-        int startY = zone.getStartY();
-        int endX = zone.getEndX();
-        int endY = zone.getEndY();
-        int pId = zone.getZonePid();
-        for (int x = startX; x <= endX; x++) {
-            for (int y = startY; y<= endY; y++) {
-                // 形式为（pid-x-y : type-groupId-zoneId）
-                redissonUtils.hashSet(key, pId + "-" + x + "-" + y, zoneInfo);
+        cachedZoneSites(Collections.singletonList(zone));
+    }
+
+    /**
+     * 批量缓存区域的位置（发生在节点启动初始化所有空间区域的时候）
+     * 写入通过管道按批提交，每批最多 batchSize 个区域，最后通知各节点重新加载涉及空间的索引
+     * @param zones 区域列表，可以属于不同空间
+     */
+    public void cachedZoneSites(List<Zone> zones) {
+        int batchSize = Math.max(1, cacheProperties.getBatchSize());
+        for (int from = 0; from < zones.size(); from += batchSize) {
+            RBatch batch = redissonClient.createBatch(BatchOptions.defaults());
+            for (Zone zone : zones.subList(from, Math.min(from + batchSize, zones.size()))) {
+                // 区域的四个坐标用于判断区域重叠，整个区域只记录一个矩形
+                geoCache.putZone(batch, zone);
+                batch.<String, String>getMap(ZONE_RECT_HASH + zone.getSpaceId(), StringCodec.INSTANCE)
+                        .fastPutAsync(String.valueOf(zone.getId()), ZoneIndex.Rect.of(zone).serialize());
             }
+            batch.execute();
         }
+        zones.stream().map(Zone::getSpaceId).distinct().forEach(this::invalidateZoneIndex);
+    }
+
+    /**
+     * 将指定区域的位置从缓存中移除（发生在区域被删除的时候）
+     * @param zone 指定的区域
+     */
+    public void removeZoneSite(Zone zone) {
+        geoCache.removeZone(zone);
+        // 删除矩形的同时递增版本，正在回种的节点据此放弃写入
+        redissonClient.getScript(StringCodec.INSTANCE).eval(RScript.Mode.READ_WRITE, REMOVE_RECT, RScript.ReturnType.INTEGER,
+                Collections.singletonList(ZONE_RECT_HASH + zone.getSpaceId()), String.valueOf(zone.getId()));
+        invalidateZoneIndex(zone.getSpaceId());
     }
 
     /**
@@ -158,12 +220,7 @@ public class ZoneCache {
      * @return 有区域则返回区域类型和 ID的数组，否则返回 null
      */
     public Info getZoneInfo(int pid, SiteVO site) {
-        Object result = redissonUtils.hashGet(RedisKey.ZONE_SITE_HASH + site.getSpaceId(),
-                pid + "-" + site.getX() + "-" + site.getY());
-        if (result != null) {
-            return Info.parse(result.toString());
-        }
-        return null;
+        return getZoneIndex(site.getSpaceId()).find(pid, site.getX(), site.getY());
     }
 
     /**
@@ -235,9 +292,8 @@ public class ZoneCache {
     }
 
     /** 获取区域中的所有用户 */
-    public Set<Integer> getZoneUsers(int zoneId) {
-        return redissonUtils.setGet(RedisKey.ZONE_USER_SET + zoneId)
-                .stream().map(id -> Integer.parseInt(id.toString())).collect(Collectors.toSet());
+    public IntSet getZoneUsers(int zoneId) {
+        return IntStringCodec.readSet(redissonClient, RedisKey.ZONE_USER_SET + zoneId);
     }
 
     /**
@@ -246,21 +302,85 @@ public class ZoneCache {
      * @return 重叠了返回 true，否则 false
      */
     public boolean isZoneCover(Zone zone) {
-        String key = RedisKey.ZONE_SITE_HASH + zone.getSpaceId();
-        int startX = zone.getStartX();
-        int startY = zone.getStartY();
-        int endX = zone.getEndX();
-        int endY = zone.getEndY();
-        int pId = zone.getZonePid();
-        for (int x = startX; x <= endX; x++) {
-            for (int y = startY; y<= endY; y++) {
-                // 形式为（pid-x-y : type-groupId-zoneId）
-                if (redissonUtils.hashGet(key, pId + "-" + x + "-" + y) != null) {
-                    return true;
-                }
+        return getZoneIndex(zone.getSpaceId())
+                .intersects(zone.getZonePid(), zone.getStartX(), zone.getStartY(), zone.getEndX(), zone.getEndY());
+    }
+
+    /**
+     * 获取指定空间的区域索引，本地没有时加载
+     * 加载在 computeIfAbsent 之外进行（不在持有哈希桶锁时访问远程服务），同一空间的并发加载合并为一次；
+     * 加载期间发生过失效时，加载结果只用于本次调用，不放入本地
+     */
+    private ZoneIndex getZoneIndex(int spaceId) {
+        ZoneIndex zoneIndex = zoneIndexMap.get(spaceId);
+        if (zoneIndex != null) {
+            return zoneIndex;
+        }
+        return zoneIndexFlight.execute(ZONE_RECT_HASH + spaceId, () -> {
+            long version = zoneIndexVersionMap.getOrDefault(spaceId, 0L);
+            ZoneIndex loaded = loadZoneIndex(spaceId);
+            zoneIndexMap.put(spaceId, loaded);
+            if (zoneIndexVersionMap.getOrDefault(spaceId, 0L) != version) {
+                zoneIndexMap.remove(spaceId, loaded);
+            }
+            return loaded;
+        });
+    }
+
+    /**
+     * 从 Redis 加载空间的区域矩形并构建索引
+     * Redis 中没有完整标记时（从未加载过，或者清除、过期后只写入了新注册的区域），从群组服务获取空间的全部区域并回种
+     */
+    private ZoneIndex loadZoneIndex(int spaceId) {
+        RMap<String, String> rectMap = getZoneRectMap(spaceId);
+        for (int attempt = 1; ; attempt++) {
+            Map<String, String> rectCache = rectMap.readAllMap();
+            String version = rectCache.remove(ZONE_RECT_VERSION);
+            if (rectCache.remove(ZONE_RECT_COMPLETE) != null) {
+                return toZoneIndex(rectCache);
+            }
+            List<Zone> zones = groupClient.getZones(spaceId);
+            Object[] args = new Object[zones.size() * 2 + 1];
+            args[0] = version == null ? "" : version;
+            for (int i = 0; i < zones.size(); i++) {
+                args[2 * i + 1] = String.valueOf(zones.get(i).getId());
+                args[2 * i + 2] = ZoneIndex.Rect.of(zones.get(i)).serialize();
+            }
+            // 全部区域写入后才打上完整标记，其他节点不会读到写了一半的哈希
+            Long reseeded = redissonClient.getScript(StringCodec.INSTANCE).eval(RScript.Mode.READ_WRITE, RESEED_RECTS,
+                    RScript.ReturnType.INTEGER, Collections.singletonList(ZONE_RECT_HASH + spaceId), args);
+            if (reseeded != null && reseeded == 1) {
+                log.info("重建空间 {} 的区域索引，共 {} 个区域", spaceId, zones.size());
+                return toZoneIndex(rectMap.readAllMap());
+            }
+            if (attempt >= RESEED_ATTEMPTS) {
+                // 删除一直在并发进行，这次直接使用服务返回的区域，Redis 留给之后的加载回种
+                log.warn("空间 {} 的区域回种多次与删除冲突，暂不回种", spaceId);
+                return new ZoneIndex(zones.stream().map(ZoneIndex.Rect::of).collect(Collectors.toList()));
             }
         }
-        // 返回没重叠
-        return false;
+    }
+
+    /** 由区域矩形哈希构建索引（跳过标记字段） */
+    private static ZoneIndex toZoneIndex(Map<String, String> rectCache) {
+        rectCache.remove(ZONE_RECT_COMPLETE);
+        rectCache.remove(ZONE_RECT_VERSION);
+        return new ZoneIndex(rectCache.values().stream().map(ZoneIndex.Rect::parse).collect(Collectors.toList()));
+    }
+
+    private RMap<String, String> getZoneRectMap(int spaceId) {
+        return redissonClient.getMap(ZONE_RECT_HASH + spaceId, StringCodec.INSTANCE);
+    }
+
+    /** 丢弃本节点和其他节点上该空间的区域索引 */
+    private void invalidateZoneIndex(int spaceId) {
+        discardZoneIndex(spaceId);
+        zoneIndexTopic.publish(String.valueOf(spaceId));
+    }
+
+    /** 丢弃本节点上该空间的区域索引 */
+    private void discardZoneIndex(int spaceId) {
+        zoneIndexVersionMap.merge(spaceId, 1L, Long::sum);
+        zoneIndexMap.remove(spaceId);
     }
 }
@@ -2,6 +2,10 @@ package top.iceclean.chatspace.cache.annotation;
 
 import org.springframework.context.annotation.Import;
 import top.iceclean.chatspace.cache.*;
+import top.iceclean.chatspace.cache.config.CacheProperties;
+import top.iceclean.chatspace.cache.codec.EntityCache;
+import top.iceclean.chatspace.cache.local.NearCacheManager;
+import top.iceclean.chatspace.cache.local.OnlineRegistry;
 
 import java.lang.annotation.ElementType;
 import java.lang.annotation.Retention;
@@ -15,6 +19,8 @@ import java.lang.annotation.Target;
 @Retention(RetentionPolicy.RUNTIME)
 @Target(ElementType.TYPE)
 @Import({GeoCache.class, GroupCache.class, SessionCache.class,
-        SpaceCache.class, UserCache.class, ZoneCache.class})
+        SpaceCache.class, UserCache.class, ZoneCache.class, MessageCache.class, ReadCursorCache.class,
+        FriendCache.class, SocialGraphCache.class,
+        CacheProperties.class, NearCacheManager.class, OnlineRegistry.class, EntityCache.class})
 public @interface EnableCache {
 }
@@ -0,0 +1,183 @@
+package top.iceclean.chatspace.cache.codec;
+
+import lombok.extern.slf4j.Slf4j;
+import org.redisson.api.BatchOptions;
+import org.redisson.api.RBatch;
+import org.redisson.api.RBucket;
+import org.redisson.api.RedissonClient;
+import org.redisson.client.codec.ByteArrayCodec;
+import org.springframework.stereotype.Component;
+import top.iceclean.chatspace.cache.config.CacheProperties;
+import top.iceclean.chatspace.cache.loader.SingleFlight;
+import top.iceclean.chatspace.cache.local.NearCache;
+import top.iceclean.chatspace.cache.local.NearCacheManager;
+
+import javax.annotation.PreDestroy;
+import java.util.List;
+import java.util.Set;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ThreadLocalRandom;
+import java.util.concurrent.TimeUnit;
+import java.util.function.IntFunction;
+
+/**
+ * 实体缓存（旁路缓存加载器）
+ * 实体以编解码器编码后按 ID 单独存放在 Redis 中，解码后的对象放在本地近端缓存，
+ * 近端缓存的失效版本号保证修改后不会读到旧对象，热点实体的读取既不需要解析也不需要重新分配对象
+ * 回源时同一节点上同一实体只有一个请求真正访问服务，其余请求等待共享结果；
+ * 不存在的实体以空值短暂缓存，存活时间带随机浮动，快过期的热点实体在后台提前刷新
+ * @author : Ice'Clean
+ * @date : 2026-10-18
+ */
+@Slf4j
+@Component
+public class EntityCache {
+    /** 不存在的实体在 Redis 中的占位值 */
+    private static final byte[] NULL_DATA = new byte[0];
+
+    private final RedissonClient redissonClient;
+    private final NearCacheManager nearCacheManager;
+    private final EntityCodec codec;
+    private final CacheProperties.Loader properties;
+    /** 回源请求合并 */
+    private final SingleFlight singleFlight = new SingleFlight();
+    /** 正在后台刷新的实体键 */
+    private final Set<String> refreshing = ConcurrentHashMap.newKeySet();
+    /** 后台提前刷新的线程 */
+    private final ExecutorService refresher;
+
+    public EntityCache(RedissonClient redissonClient, NearCacheManager nearCacheManager, CacheProperties cacheProperties) {
+        this.redissonClient = redissonClient;
+        this.nearCacheManager = nearCacheManager;
+        this.codec = EntityCodec.of(cacheProperties.getEntityCodec());
+        this.properties = cacheProperties.getLoader();
+        this.refresher = Executors.newFixedThreadPool(2, r -> {
+            Thread thread = new Thread(r, "entity-cache-refresh");
+            thread.setDaemon(true);
+            return thread;
+        });
+    }
+
+    /**
+     * 获取实体，依次从近端缓存、Redis 和回源函数中获取
+     * 返回的对象在多个调用方之间共享，不要修改
+     * @param hashKey 实体键的前缀，同时作为近端缓存名称
+     * @param id 实体 ID
+     * @param type 实体类型
+     * @param loader 回源函数，实体不存在时返回 null
+     * @return 实体，不存在时返回 null
+     */
+    public <T> T get(String hashKey, int id, Class<T> type, IntFunction<T> loader) {
+        NearCache nearCache = nearCacheManager.getCache(hashKey);
+        if (nearCache != null) {
+            Object cached = nearCache.get(id);
+            if (cached != null) {
+                return cached == NearCache.NULL ? null : type.cast(cached);
+            }
+        }
+        long epoch = nearCache == null ? 0 : nearCache.epoch(id);
+        String key = entityKey(hashKey, id);
+        T entity = singleFlight.execute(key, () -> read(key, id, type, loader));
+        if (nearCache != null) {
+            nearCache.put(id, entity == null ? NearCache.NULL : entity, epoch);
+        }
+        return entity;
+    }
+
+    /**
+     * 写入实体，并使所有节点上的本地对象失效
+     * @param hashKey 实体键的前缀
+     * @param id 实体 ID
+     * @param entity 实体
+     */
+    public void put(String hashKey, int id, Object entity) {
+        write(entityKey(hashKey, id), entity);
+        nearCacheManager.invalidate(hashKey, id);
+    }
+
+    /**
+     * 移除实体，并使所有节点上的本地对象失效
+     * @param hashKey 实体键的前缀
+     * @param id 实体 ID
+     */
+    public void remove(String hashKey, int id) {
+        getBucket(entityKey(hashKey, id)).delete();
+        nearCacheManager.invalidate(hashKey, id);
+    }
+
+    /** 从 Redis 读取实体，没有时回源，快过期时提交后台刷新 */
+    private <T> T read(String key, int id, Class<T> type, IntFunction<T> loader) {
+        // 值和剩余存活时间在一次管道中读出
+        RBatch batch = redissonClient.createBatch(BatchOptions.defaults());
+        batch.<byte[]>getBucket(key, ByteArrayCodec.INSTANCE).getAsync();
+        batch.<byte[]>getBucket(key, ByteArrayCodec.INSTANCE).remainTimeToLiveAsync();
+        List<?> responses = batch.execute().getResponses();
+        byte[] data = (byte[]) responses.get(0);
+        if (data != null) {
+            if (data.length == 0) {
+                return null;
+            }
+            try {
+                T entity = codec.decode(data, type);
+                Long remain = (Long) responses.get(1);
+                if (remain != null && remain > 0
+                        && remain < properties.getTtlSeconds() * 1000L * properties.getRefreshAhead()) {
+                    refresh(key, id, loader);
+                }
+                return entity;
+            } catch (RuntimeException e) {
+                // 实体结构变化后旧数据可能无法解码，当作缓存未命中处理
+                log.warn("无法解码缓存实体 {}，重新加载：{}", key, e.getMessage());
+            }
+        }
+        T entity = loader.apply(id);
+        write(key, entity);
+        return entity;
+    }
+
+    /** 在后台重新回源并写入 Redis，同一实体同时只刷新一次 */
+    private void refresh(String key, int id, IntFunction<?> loader) {
+        if (!refreshing.add(key)) {
+            return;
+        }
+        refresher.execute(() -> {
+            try {
+                write(key, loader.apply(id));
+            } catch (RuntimeException e) {
+                log.warn("提前刷新缓存实体 {} 失败：{}", key, e.getMessage());
+            } finally {
+                refreshing.remove(key);
+            }
+        });
+    }
+
+    /** 写入 Redis，不存在的实体写入占位值 */
+    private void write(String key, Object entity) {
+        if (entity != null) {
+            getBucket(key).set(codec.encode(entity), jitter(properties.getTtlSeconds()), TimeUnit.MILLISECONDS);
+        } else if (properties.getNullTtlSeconds() > 0) {
+            getBucket(key).set(NULL_DATA, jitter(properties.getNullTtlSeconds()), TimeUnit.MILLISECONDS);
+        }
+    }
+
+    /** 在存活时间上加上随机浮动（毫秒） */
+    private long jitter(int ttlSeconds) {
+        double offset = properties.getJitter() * (ThreadLocalRandom.current().nextDouble() * 2 - 1);
+        return Math.max(1000L, (long) (ttlSeconds * 1000L * (1 + offset)));
+    }
+
+    private RBucket<byte[]> getBucket(String key) {
+        return redissonClient.getBucket(key, ByteArrayCodec.INSTANCE);
+    }
+
+    private static String entityKey(String hashKey, int id) {
+        return hashKey + ":" + id;
+    }
+
+    @PreDestroy
+    public void shutdown() {
+        refresher.shutdown();
+    }
+}
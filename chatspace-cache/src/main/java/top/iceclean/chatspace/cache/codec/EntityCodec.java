@@ -0,0 +1,36 @@
+package top.iceclean.chatspace.cache.codec;
+
+/**
+ * 缓存实体的编解码器
+ * @author : Ice'Clean
+ * @date : 2026-10-18
+ */
+public interface EntityCodec {
+    /**
+     * 将实体编码为字节
+     * @param entity 实体
+     * @return 编码结果
+     */
+    byte[] encode(Object entity);
+
+    /**
+     * 将字节解码为实体
+     * @param data 编码结果
+     * @param type 实体类型
+     * @return 实体，无法解码时抛出异常
+     */
+    <T> T decode(byte[] data, Class<T> type);
+
+    /**
+     * 通过名称获取编解码器
+     * @param name 名称（json 或 jsonb）
+     * @return 编解码器
+     */
+    static EntityCodec of(String name) {
+        switch (name) {
+            case "json": return JsonEntityCodec.INSTANCE;
+            case "jsonb": return JsonbEntityCodec.INSTANCE;
+            default: throw new IllegalArgumentException("未知的实体编解码器：" + name);
+        }
+    }
+}
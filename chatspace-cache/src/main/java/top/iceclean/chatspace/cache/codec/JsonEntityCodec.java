@@ -0,0 +1,24 @@
+package top.iceclean.chatspace.cache.codec;
+
+import com.alibaba.fastjson.JSON;
+
+import java.nio.charset.StandardCharsets;
+
+/**
+ * JSON 文本编解码（缓存原来使用的格式）
+ * @author : Ice'Clean
+ * @date : 2026-10-18
+ */
+public class JsonEntityCodec implements EntityCodec {
+    public static final JsonEntityCodec INSTANCE = new JsonEntityCodec();
+
+    @Override
+    public byte[] encode(Object entity) {
+        return JSON.toJSONString(entity).getBytes(StandardCharsets.UTF_8);
+    }
+
+    @Override
+    public <T> T decode(byte[] data, Class<T> type) {
+        return JSON.parseObject(new String(data, StandardCharsets.UTF_8), type);
+    }
+}
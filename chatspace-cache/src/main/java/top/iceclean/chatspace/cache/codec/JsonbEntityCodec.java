@@ -0,0 +1,84 @@
+package top.iceclean.chatspace.cache.codec;
+
+import com.alibaba.fastjson2.JSONB;
+import com.alibaba.fastjson2.JSONReader;
+import com.alibaba.fastjson2.JSONWriter;
+
+import java.lang.reflect.Field;
+import java.lang.reflect.Modifier;
+import java.util.ArrayDeque;
+import java.util.Arrays;
+import java.util.Deque;
+
+/**
+ * 紧凑的二进制编解码（fastjson2 JSONB）
+ * 字段按声明顺序写成数组，不带字段名，整数使用变长编码；
+ * 数组按位置对应字段，因此数据前带有格式版本和实体字段布局的哈希，实体字段增删、改名、改类型或调整顺序后，
+ * 旧数据因布局不一致而解码失败，由缓存当作未命中重新加载，不会悄悄解码到错误的字段上；
+ * 以 '{' 开头的数据是切换之前写入的 JSON 文本，照旧按 JSON 解析
+ * @author : Ice'Clean
+ * @date : 2026-10-18
+ */
+public class JsonbEntityCodec implements EntityCodec {
+    public static final JsonbEntityCodec INSTANCE = new JsonbEntityCodec();
+
+    /** 格式版本，数据的第一个字节 */
+    private static final byte FORMAT = 1;
+    /** 格式版本和布局哈希的长度 */
+    private static final int HEADER_LENGTH = 5;
+
+    /** 各实体类型的字段布局哈希 */
+    private static final ClassValue<Integer> LAYOUT = new ClassValue<Integer>() {
+        @Override
+        protected Integer computeValue(Class<?> type) {
+            // 从最上层的父类开始，按声明顺序拼接所有实例字段的名称和类型
+            Deque<Class<?>> hierarchy = new ArrayDeque<>();
+            for (Class<?> current = type; current != null && current != Object.class; current = current.getSuperclass()) {
+                hierarchy.push(current);
+            }
+            StringBuilder layout = new StringBuilder(type.getName());
+            for (Class<?> current : hierarchy) {
+                for (Field field : current.getDeclaredFields()) {
+                    int modifiers = field.getModifiers();
+                    if (!Modifier.isStatic(modifiers) && !Modifier.isTransient(modifiers)) {
+                        layout.append(';').append(field.getName()).append(':').append(field.getGenericType().getTypeName());
+                    }
+                }
+            }
+            return layout.toString().hashCode();
+        }
+    };
+
+    @Override
+    public byte[] encode(Object entity) {
+        byte[] body = JSONB.toBytes(entity, JSONWriter.Feature.BeanToArray);
+        byte[] data = new byte[HEADER_LENGTH + body.length];
+        data[0] = FORMAT;
+        writeInt(data, LAYOUT.get(entity.getClass()));
+        System.arraycopy(body, 0, data, HEADER_LENGTH, body.length);
+        return data;
+    }
+
+    @Override
+    public <T> T decode(byte[] data, Class<T> type) {
+        if (data.length > 0 && data[0] == '{') {
+            return JsonEntityCodec.INSTANCE.decode(data, type);
+        }
+        if (data.length <= HEADER_LENGTH || data[0] != FORMAT || readInt(data) != LAYOUT.get(type)) {
+            throw new IllegalStateException("实体 " + type.getSimpleName() + " 的字段布局与缓存数据不一致");
+        }
+        return JSONB.parseObject(Arrays.copyOfRange(data, HEADER_LENGTH, data.length), type,
+                JSONReader.Feature.SupportArrayToBean);
+    }
+
+    private static void writeInt(byte[] data, int value) {
+        data[1] = (byte) (value >>> 24);
+        data[2] = (byte) (value >>> 16);
+        data[3] = (byte) (value >>> 8);
+        data[4] = (byte) value;
+    }
+
+    private static int readInt(byte[] data) {
+        return (data[1] & 0xFF) << 24 | (data[2] & 0xFF) << 16 | (data[3] & 0xFF) << 8 | (data[4] & 0xFF);
+    }
+}
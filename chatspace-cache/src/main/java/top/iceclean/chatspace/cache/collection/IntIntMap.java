@@ -0,0 +1,182 @@
+package top.iceclean.chatspace.cache.collection;
+
+import java.util.Arrays;
+
+/**
+ * 基本类型 int 到 int 的哈希表（开放寻址、线性探测）
+ * 用于用户 ID 到数组下标之类的热点映射，读写都不产生装箱对象；
+ * 键不能为 Integer.MIN_VALUE（作为空槽位标记）；非线程安全
+ * @author : Ice'Clean
+ * @date : 2026-10-18
+ */
+public class IntIntMap {
+    /** 空槽位标记 */
+    private static final int FREE = Integer.MIN_VALUE;
+    /** 最大装载因子 */
+    private static final float LOAD_FACTOR = 0.75f;
+
+    private int[] keys;
+    private int[] values;
+    private int mask;
+    /** 扩容阈值 */
+    private int threshold;
+    /** 键值对个数 */
+    private int size;
+
+    public IntIntMap() {
+        this(16);
+    }
+
+    public IntIntMap(int expectedSize) {
+        int tableSize = (int) Math.ceil(Math.max(2, expectedSize) / LOAD_FACTOR);
+        allocate(Math.max(4, Integer.highestOneBit(tableSize - 1) << 1));
+    }
+
+    /**
+     * 获取键对应的值
+     * @param key 键
+     * @param missing 不存在时返回的值
+     * @return 值
+     */
+    public int get(int key, int missing) {
+        int index = index(key);
+        int current;
+        while ((current = keys[index]) != FREE) {
+            if (current == key) {
+                return values[index];
+            }
+            index = (index + 1) & mask;
+        }
+        return missing;
+    }
+
+    /** 是否包含指定的键 */
+    public boolean containsKey(int key) {
+        int index = index(key);
+        int current;
+        while ((current = keys[index]) != FREE) {
+            if (current == key) {
+                return true;
+            }
+            index = (index + 1) & mask;
+        }
+        return false;
+    }
+
+    /**
+     * 放入键值对
+     * @param key 键，不能为 Integer.MIN_VALUE
+     * @param value 值
+     * @param missing 原来不存在时返回的值
+     * @return 原来的值
+     */
+    public int put(int key, int value, int missing) {
+        if (key == FREE) {
+            throw new IllegalArgumentException("不支持的键：" + key);
+        }
+        int index = index(key);
+        int current;
+        while ((current = keys[index]) != FREE) {
+            if (current == key) {
+                int old = values[index];
+                values[index] = value;
+                return old;
+            }
+            index = (index + 1) & mask;
+        }
+        keys[index] = key;
+        values[index] = value;
+        if (++size >= threshold) {
+            rehash(keys.length << 1);
+        }
+        return missing;
+    }
+
+    /**
+     * 移除键
+     * @param key 键
+     * @param missing 原来不存在时返回的值
+     * @return 原来的值
+     */
+    public int remove(int key, int missing) {
+        int index = index(key);
+        int current;
+        while ((current = keys[index]) != FREE) {
+            if (current == key) {
+                int old = values[index];
+                size--;
+                shiftKeys(index);
+                return old;
+            }
+            index = (index + 1) & mask;
+        }
+        return missing;
+    }
+
+    public int size() {
+        return size;
+    }
+
+    public boolean isEmpty() {
+        return size == 0;
+    }
+
+    public void clear() {
+        Arrays.fill(keys, FREE);
+        size = 0;
+    }
+
+    /** 删除槽位后，将后面同一探测链上的键值对前移，保证查找不会提前中断 */
+    private void shiftKeys(int pos) {
+        int last;
+        int current;
+        while (true) {
+            last = pos;
+            pos = (pos + 1) & mask;
+            while (true) {
+                if ((current = keys[pos]) == FREE) {
+                    keys[last] = FREE;
+                    return;
+                }
+                int slot = index(current);
+                // 键的理想位置不在 (last, pos] 之间时，可以移动到 last
+                if (last <= pos ? last >= slot || slot > pos : last >= slot && slot > pos) {
+                    break;
+                }
+                pos = (pos + 1) & mask;
+            }
+            keys[last] = current;
+            values[last] = values[pos];
+        }
+    }
+
+    private void rehash(int newSize) {
+        int[] oldKeys = keys;
+        int[] oldValues = values;
+        allocate(newSize);
+        for (int i = 0; i < oldKeys.length; i++) {
+            if (oldKeys[i] != FREE) {
+                int index = index(oldKeys[i]);
+                while (keys[index] != FREE) {
+                    index = (index + 1) & mask;
+                }
+                keys[index] = oldKeys[i];
+                values[index] = oldValues[i];
+            }
+        }
+    }
+
+    private void allocate(int tableSize) {
+        keys = new int[tableSize];
+        values = new int[tableSize];
+        Arrays.fill(keys, FREE);
+        mask = tableSize - 1;
+        threshold = (int) (tableSize * LOAD_FACTOR);
+    }
+
+    private int index(int key) {
+        // 打散连续的用户 ID
+        int h = key * 0x9E3779B9;
+        return (h ^ (h >>> 16)) & mask;
+    }
+}
@@ -0,0 +1,283 @@
+package top.iceclean.chatspace.cache.collection;
+
+import java.util.AbstractSet;
+import java.util.Arrays;
+import java.util.Collection;
+import java.util.Iterator;
+import java.util.NoSuchElementException;
+import java.util.function.IntConsumer;
+
+/**
+ * 基本类型 int 的哈希集合（开放寻址、线性探测）
+ * 用于广播目标等大集合，元素直接存放在 int 数组中，不产生装箱对象；
+ * 同时实现了 Set&lt;Integer&gt;，只接受 Set 的旧代码不需要修改，但通过 Set 接口访问会产生装箱；非线程安全
+ * @author : Ice'Clean
+ * @date : 2026-10-18
+ */
+public class IntSet extends AbstractSet<Integer> {
+    /** 空槽位标记，该值本身用 containsFree 单独记录 */
+    private static final int FREE = Integer.MIN_VALUE;
+    /** 最大装载因子 */
+    private static final float LOAD_FACTOR = 0.75f;
+
+    private int[] table;
+    private int mask;
+    /** 扩容阈值 */
+    private int threshold;
+    /** 元素个数 */
+    private int size;
+    /** 是否包含 FREE 值 */
+    private boolean containsFree;
+
+    public IntSet() {
+        this(16);
+    }
+
+    public IntSet(int expectedSize) {
+        allocate(tableSize(expectedSize));
+    }
+
+    /** 从装箱集合创建 */
+    public static IntSet of(Collection<Integer> collection) {
+        if (collection instanceof IntSet) {
+            return (IntSet) collection;
+        }
+        IntSet set = new IntSet(collection.size());
+        for (Integer value : collection) {
+            set.add((int) value);
+        }
+        return set;
+    }
+
+    /** 从数组创建 */
+    public static IntSet of(int... values) {
+        IntSet set = new IntSet(values.length);
+        for (int value : values) {
+            set.add(value);
+        }
+        return set;
+    }
+
+    /**
+     * 添加元素
+     * @return 原来不存在返回 true
+     */
+    public boolean add(int value) {
+        if (value == FREE) {
+            if (containsFree) {
+                return false;
+            }
+            containsFree = true;
+            size++;
+            return true;
+        }
+        int index = index(value);
+        int current;
+        while ((current = table[index]) != FREE) {
+            if (current == value) {
+                return false;
+            }
+            index = (index + 1) & mask;
+        }
+        table[index] = value;
+        if (++size >= threshold) {
+            rehash(table.length << 1);
+        }
+        return true;
+    }
+
+    /** 添加数组中的所有元素 */
+    public void addAll(int[] values) {
+        for (int value : values) {
+            add(value);
+        }
+    }
+
+    /** 添加另一个集合中的所有元素 */
+    public void addAll(IntSet other) {
+        other.forEachInt(this::add);
+    }
+
+    /** 是否包含指定元素 */
+    public boolean contains(int value) {
+        if (value == FREE) {
+            return containsFree;
+        }
+        int index = index(value);
+        int current;
+        while ((current = table[index]) != FREE) {
+            if (current == value) {
+                return true;
+            }
+            index = (index + 1) & mask;
+        }
+        return false;
+    }
+
+    /**
+     * 移除元素
+     * @return 原来存在返回 true
+     */
+    public boolean remove(int value) {
+        if (value == FREE) {
+            if (!containsFree) {
+                return false;
+            }
+            containsFree = false;
+            size--;
+            return true;
+        }
+        int index = index(value);
+        int current;
+        while ((current = table[index]) != FREE) {
+            if (current == value) {
+                size--;
+                shiftKeys(index);
+                return true;
+            }
+            index = (index + 1) & mask;
+        }
+        return false;
+    }
+
+    /** 遍历所有元素（不装箱） */
+    public void forEachInt(IntConsumer consumer) {
+        if (containsFree) {
+            consumer.accept(FREE);
+        }
+        for (int value : table) {
+            if (value != FREE) {
+                consumer.accept(value);
+            }
+        }
+    }
+
+    /** 转换为 int 数组（顺序不确定） */
+    public int[] toIntArray() {
+        int[] values = new int[size];
+        int i = 0;
+        if (containsFree) {
+            values[i++] = FREE;
+        }
+        for (int value : table) {
+            if (value != FREE) {
+                values[i++] = value;
+            }
+        }
+        return values;
+    }
+
+    @Override
+    public int size() {
+        return size;
+    }
+
+    @Override
+    public boolean isEmpty() {
+        return size == 0;
+    }
+
+    @Override
+    public void clear() {
+        Arrays.fill(table, FREE);
+        containsFree = false;
+        size = 0;
+    }
+
+    @Override
+    public boolean add(Integer value) {
+        return add((int) value);
+    }
+
+    @Override
+    public boolean contains(Object o) {
+        return o instanceof Integer && contains((int) (Integer) o);
+    }
+
+    @Override
+    public boolean remove(Object o) {
+        return o instanceof Integer && remove((int) (Integer) o);
+    }
+
+    @Override
+    public Iterator<Integer> iterator() {
+        // 通过 Set 接口遍历时才会装箱
+        int[] values = toIntArray();
+        return new Iterator<Integer>() {
+            private int next = 0;
+
+            @Override
+            public boolean hasNext() {
+                return next < values.length;
+            }
+
+            @Override
+            public Integer next() {
+                if (next >= values.length) {
+                    throw new NoSuchElementException();
+                }
+                return values[next++];
+            }
+
+            @Override
+            public void remove() {
+                IntSet.this.remove(values[next - 1]);
+            }
+        };
+    }
+
+    /** 删除槽位后，将后面同一探测链上的元素前移，保证查找不会提前中断 */
+    private void shiftKeys(int pos) {
+        int last;
+        int current;
+        while (true) {
+            last = pos;
+            pos = (pos + 1) & mask;
+            while (true) {
+                if ((current = table[pos]) == FREE) {
+                    table[last] = FREE;
+                    return;
+                }
+                int slot = index(current);
+                // 元素的理想位置不在 (last, pos] 之间时，可以移动到 last
+                if (last <= pos ? last >= slot || slot > pos : last >= slot && slot > pos) {
+                    break;
+                }
+                pos = (pos + 1) & mask;
+            }
+            table[last] = current;
+        }
+    }
+
+    private void rehash(int newSize) {
+        int[] oldTable = table;
+        allocate(newSize);
+        for (int value : oldTable) {
+            if (value != FREE) {
+                int index = index(value);
+                while (table[index] != FREE) {
+                    index = (index + 1) & mask;
+                }
+                table[index] = value;
+            }
+        }
+    }
+
+    private void allocate(int tableSize) {
+        table = new int[tableSize];
+        Arrays.fill(table, FREE);
+        mask = tableSize - 1;
+        threshold = (int) (tableSize * LOAD_FACTOR);
+    }
+
+    private int index(int value) {
+        // 打散连续的用户 ID
+        int h = value * 0x9E3779B9;
+        return (h ^ (h >>> 16)) & mask;
+    }
+
+    private static int tableSize(int expectedSize) {
+        int size = (int) Math.ceil(Math.max(2, expectedSize) / LOAD_FACTOR);
+        return Math.max(4, Integer.highestOneBit(size - 1) << 1);
+    }
+}
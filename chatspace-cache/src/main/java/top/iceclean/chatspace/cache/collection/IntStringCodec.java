@@ -0,0 +1,78 @@
+package top.iceclean.chatspace.cache.collection;
+
+import io.netty.buffer.ByteBuf;
+import org.redisson.api.RScript;
+import org.redisson.api.RedissonClient;
+import org.redisson.client.codec.StringCodec;
+import org.redisson.client.protocol.Decoder;
+
+import java.util.Collections;
+
+/**
+ * 读取整型集合的编解码器
+ * 集合成员在 Redis 中仍是 StringCodec 写入的十进制字符串，读取时由脚本用逗号拼接成一个值返回，
+ * 再直接从 ByteBuf 中解析数字放入 IntSet，整个过程不创建 String 和 Integer 对象
+ * @author : Ice'Clean
+ * @date : 2026-10-18
+ */
+public class IntStringCodec extends StringCodec {
+    public static final IntStringCodec INSTANCE = new IntStringCodec();
+
+    /** 以逗号拼接的形式返回集合的所有成员 */
+    private static final String JOINED_MEMBERS = "return table.concat(redis.call('smembers', KEYS[1]), ',')";
+
+    private final Decoder<Object> decoder = (buf, state) -> decodeIntSet(buf);
+
+    @Override
+    public Decoder<Object> getValueDecoder() {
+        return decoder;
+    }
+
+    /**
+     * 读取 Redis 集合的所有成员（成员必须都是整数）
+     * @param redissonClient Redisson 客户端
+     * @param key 集合的键
+     * @return 成员集合，集合不存在时返回空集合
+     */
+    public static IntSet readSet(RedissonClient redissonClient, String key) {
+        IntSet set = redissonClient.getScript(INSTANCE).eval(RScript.Mode.READ_ONLY, JOINED_MEMBERS,
+                RScript.ReturnType.VALUE, Collections.singletonList(key));
+        return set == null ? new IntSet(0) : set;
+    }
+
+    /** 从 ByteBuf 中解析以逗号分隔的十进制整数 */
+    private static IntSet decodeIntSet(ByteBuf buf) {
+        int end = buf.writerIndex();
+        int count = buf.readableBytes() == 0 ? 0 : 1;
+        for (int i = buf.readerIndex(); i < end; i++) {
+            if (buf.getByte(i) == ',') {
+                count++;
+            }
+        }
+        IntSet set = new IntSet(count);
+        int value = 0;
+        boolean negative = false;
+        boolean hasDigit = false;
+        for (int i = buf.readerIndex(); i < end; i++) {
+            byte b = buf.getByte(i);
+            if (b == ',') {
+                if (hasDigit) {
+                    set.add(negative ? -value : value);
+                }
+                value = 0;
+                negative = false;
+                hasDigit = false;
+            } else if (b == '-') {
+                negative = true;
+            } else {
+                value = value * 10 + (b - '0');
+                hasDigit = true;
+            }
+        }
+        if (hasDigit) {
+            set.add(negative ? -value : value);
+        }
+        buf.readerIndex(end);
+        return set;
+    }
+}
@@ -0,0 +1,140 @@
+package top.iceclean.chatspace.cache.config;
+
+import org.springframework.boot.context.properties.ConfigurationProperties;
+import org.springframework.stereotype.Component;
+
+/**
+ * 缓存模块的配置
+ * @author : Ice'Clean
+ * @date : 2026-10-18
+ */
+@Component
+@ConfigurationProperties(prefix = "chatspace.cache")
+public class CacheProperties {
+    /** 本地近端缓存配置 */
+    private Near near = new Near();
+    /** 批量写入时每次管道提交的最大命令数 */
+    private int batchSize = 500;
+    /** 每个会话在缓存中保留的最近消息条数，不大于 0 时不缓存 */
+    private int hotMessageSize = 50;
+    /** 群组、区域等实体在 Redis 中的编码格式（jsonb 或 json） */
+    private String entityCodec = "jsonb";
+    /** 实体回源加载配置 */
+    private Loader loader = new Loader();
+
+    public static class Near {
+        /** 是否启用本地近端缓存 */
+        private boolean enabled = true;
+        /** 每个近端缓存的槽位数（会向上取整为 2 的幂） */
+        private int capacity = 65536;
+        /** 条目的最长存活时间（秒），兜底失效消息丢失的情况 */
+        private int ttlSeconds = 30;
+
+        public boolean isEnabled() {
+            return enabled;
+        }
+
+        public void setEnabled(boolean enabled) {
+            this.enabled = enabled;
+        }
+
+        public int getCapacity() {
+            return capacity;
+        }
+
+        public void setCapacity(int capacity) {
+            this.capacity = capacity;
+        }
+
+        public int getTtlSeconds() {
+            return ttlSeconds;
+        }
+
+        public void setTtlSeconds(int ttlSeconds) {
+            this.ttlSeconds = ttlSeconds;
+        }
+    }
+
+    public static class Loader {
+        /** 实体在 Redis 中的存活时间（秒） */
+        private int ttlSeconds = 3600;
+        /** 不存在的实体在 Redis 中的存活时间（秒），不大于 0 时不缓存 */
+        private int nullTtlSeconds = 60;
+        /** 存活时间的随机浮动比例，避免同一批写入的实体同时过期 */
+        private double jitter = 0.2;
+        /** 剩余存活时间低于该比例时在后台提前刷新，不大于 0 时不提前刷新 */
+        private double refreshAhead = 0.1;
+
+        public int getTtlSeconds() {
+            return ttlSeconds;
+        }
+
+        public void setTtlSeconds(int ttlSeconds) {
+            this.ttlSeconds = ttlSeconds;
+        }
+
+        public int getNullTtlSeconds() {
+            return nullTtlSeconds;
+        }
+
+        public void setNullTtlSeconds(int nullTtlSeconds) {
+            this.nullTtlSeconds = nullTtlSeconds;
+        }
+
+        public double getJitter() {
+            return jitter;
+        }
+
+        public void setJitter(double jitter) {
+            this.jitter = jitter;
+        }
+
+        public double getRefreshAhead() {
+            return refreshAhead;
+        }
+
+        public void setRefreshAhead(double refreshAhead) {
+            this.refreshAhead = refreshAhead;
+        }
+    }
+
+    public Near getNear() {
+        return near;
+    }
+
+    public void setNear(Near near) {
+        this.near = near;
+    }
+
+    public int getBatchSize() {
+        return batchSize;
+    }
+
+    public void setBatchSize(int batchSize) {
+        this.batchSize = batchSize;
+    }
+
+    public int getHotMessageSize() {
+        return hotMessageSize;
+    }
+
+    public void setHotMessageSize(int hotMessageSize) {
+        this.hotMessageSize = hotMessageSize;
+    }
+
+    public String getEntityCodec() {
+        return entityCodec;
+    }
+
+    public void setEntityCodec(String entityCodec) {
+        this.entityCodec = entityCodec;
+    }
+
+    public Loader getLoader() {
+        return loader;
+    }
+
+    public void setLoader(Loader loader) {
+        this.loader = loader;
+    }
+}
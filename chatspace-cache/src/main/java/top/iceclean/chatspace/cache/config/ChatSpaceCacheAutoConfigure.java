@@ -3,6 +3,9 @@ package top.iceclean.chatspace.cache.config;
 import org.springframework.context.annotation.Configuration;
 import org.springframework.context.annotation.Import;
 import top.iceclean.chatspace.cache.*;
+import top.iceclean.chatspace.cache.codec.EntityCache;
+import top.iceclean.chatspace.cache.local.NearCacheManager;
+import top.iceclean.chatspace.cache.local.OnlineRegistry;
 
 /**
  * 缓存的自动装载
@@ -11,6 +14,8 @@ import top.iceclean.chatspace.cache.*;
  */
 @Configuration
 @Import({GeoCache.class, GroupCache.class, SessionCache.class,
-        SpaceCache.class, UserCache.class, ZoneCache.class})
+        SpaceCache.class, UserCache.class, ZoneCache.class, MessageCache.class, ReadCursorCache.class,
+        FriendCache.class, SocialGraphCache.class,
+        CacheProperties.class, NearCacheManager.class, OnlineRegistry.class, EntityCache.class})
 public class ChatSpaceCacheAutoConfigure {
 }
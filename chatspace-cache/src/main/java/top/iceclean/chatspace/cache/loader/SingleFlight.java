@@ -0,0 +1,65 @@
+package top.iceclean.chatspace.cache.loader;
+
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.CompletionException;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentMap;
+import java.util.function.Supplier;
+
+/**
+ * 按键合并的并发请求
+ * 同一个键同时只有一个调用真正执行，其余调用等待并共享它的结果（包括异常），
+ * 执行结束后立刻移除，之后的调用重新执行
+ * @author : Ice'Clean
+ * @date : 2026-10-18
+ */
+public class SingleFlight {
+    /** 正在执行的调用 */
+    private final ConcurrentMap<String, CompletableFuture<Object>> calls = new ConcurrentHashMap<>();
+
+    /**
+     * 执行调用，同一个键已经有调用在执行时直接等待它的结果
+     * @param key 键
+     * @param supplier 实际的调用
+     * @return 调用结果
+     */
+    @SuppressWarnings("unchecked")
+    public <V> V execute(String key, Supplier<V> supplier) {
+        CompletableFuture<Object> call = new CompletableFuture<>();
+        CompletableFuture<Object> running = calls.putIfAbsent(key, call);
+        if (running != null) {
+            return (V) await(running);
+        }
+        try {
+            V value = supplier.get();
+            call.complete(value);
+            return value;
+        } catch (RuntimeException | Error e) {
+            call.completeExceptionally(e);
+            throw e;
+        } finally {
+            calls.remove(key, call);
+        }
+    }
+
+    /** 正在执行的调用数 */
+    public int inFlight() {
+        return calls.size();
+    }
+
+    private static Object await(CompletableFuture<Object> running) {
+        try {
+            return running.join();
+        } catch (CompletionException e) {
+            // 抛出执行方原本的异常
+            Throwable cause = e.getCause();
+            if (cause instanceof RuntimeException) {
+                throw (RuntimeException) cause;
+            }
+            if (cause instanceof Error) {
+                throw (Error) cause;
+            }
+            throw e;
+        }
+    }
+}
@@ -0,0 +1,140 @@
+package top.iceclean.chatspace.cache.local;
+
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicLongArray;
+import java.util.concurrent.atomic.AtomicReferenceArray;
+import java.util.concurrent.atomic.LongAdder;
+
+/**
+ * 以 int 为键的本地近端缓存
+ * 采用直接映射的定长槽位，冲突时新条目直接覆盖旧条目，因此容量有界且读写无锁
+ * 一致性由 NearCacheManager 的失效广播保证，条目过期时间用于兜底；
+ * 失效版本号按槽位记录，一个键的失效只影响同一槽位上的回源，不会丢弃其他键并发回源的结果
+ * @author : Ice'Clean
+ * @date : 2026-10-18
+ */
+public class NearCache {
+    /** 缓存“值不存在”的标记，避免对空值反复回源 */
+    public static final Object NULL = new Object();
+
+    /** 缓存条目 */
+    private static final class Entry {
+        private final int key;
+        private final Object value;
+        private final long expireAt;
+
+        private Entry(int key, Object value, long expireAt) {
+            this.key = key;
+            this.value = value;
+            this.expireAt = expireAt;
+        }
+    }
+
+    /** 缓存名称 */
+    private final String name;
+    /** 槽位 */
+    private final AtomicReferenceArray<Entry> table;
+    private final int shift;
+    /** 条目存活时间（纳秒） */
+    private final long ttlNanos;
+    /** 各槽位的失效版本号，槽位上的键每次失效都会递增，用于丢弃失效前发起的回源结果 */
+    private final AtomicLongArray epochs;
+
+    /** 命中、未命中和失效计数 */
+    private final LongAdder hitCount = new LongAdder();
+    private final LongAdder missCount = new LongAdder();
+    private final LongAdder invalidationCount = new LongAdder();
+
+    public NearCache(String name, int capacity, long ttl, TimeUnit unit) {
+        int size = Integer.highestOneBit(Math.max(2, capacity - 1)) << 1;
+        this.name = name;
+        this.table = new AtomicReferenceArray<>(size);
+        this.epochs = new AtomicLongArray(size);
+        this.shift = Integer.numberOfLeadingZeros(size) + 1;
+        this.ttlNanos = unit.toNanos(ttl);
+    }
+
+    /**
+     * 获取缓存值
+     * @param key 键
+     * @return 未命中返回 null，缓存了空值则返回 NULL
+     */
+    public Object get(int key) {
+        Entry entry = table.get(index(key));
+        if (entry != null && entry.key == key && entry.expireAt - System.nanoTime() > 0) {
+            hitCount.increment();
+            return entry.value;
+        }
+        missCount.increment();
+        return null;
+    }
+
+    /**
+     * 获取键当前的失效版本号，需要在回源之前获取
+     * @param key 键
+     * @return 键所在槽位的失效版本号
+     */
+    public long epoch(int key) {
+        return epochs.get(index(key));
+    }
+
+    /**
+     * 放入回源得到的值，若回源期间发生过失效则放弃
+     * @param key 键
+     * @param value 值，空值使用 NULL
+     * @param epoch 回源前获取的该键的失效版本号
+     */
+    public void put(int key, Object value, long epoch) {
+        int index = index(key);
+        if (epochs.get(index) != epoch) {
+            return;
+        }
+        Entry entry = new Entry(key, value, System.nanoTime() + ttlNanos);
+        table.set(index, entry);
+        // 写入与失效并发时，以失效为准
+        if (epochs.get(index) != epoch) {
+            table.compareAndSet(index, entry, null);
+        }
+    }
+
+    /** 使指定键失效 */
+    public void invalidate(int key) {
+        int index = index(key);
+        epochs.incrementAndGet(index);
+        Entry entry = table.get(index);
+        if (entry != null && entry.key == key) {
+            table.compareAndSet(index, entry, null);
+        }
+        invalidationCount.increment();
+    }
+
+    /** 使所有键失效 */
+    public void clear() {
+        for (int i = 0; i < table.length(); i++) {
+            epochs.incrementAndGet(i);
+            table.set(i, null);
+        }
+        invalidationCount.increment();
+    }
+
+    public String getName() {
+        return name;
+    }
+
+    public long hitCount() {
+        return hitCount.sum();
+    }
+
+    public long missCount() {
+        return missCount.sum();
+    }
+
+    public long invalidationCount() {
+        return invalidationCount.sum();
+    }
+
+    private int index(int key) {
+        // 斐波那契散列，让连续的用户 ID 均匀分布
+        return (key * 0x9E3779B9) >>> shift;
+    }
+}
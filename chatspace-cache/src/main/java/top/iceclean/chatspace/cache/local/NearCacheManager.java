@@ -0,0 +1,113 @@
+package top.iceclean.chatspace.cache.local;
+
+import io.micrometer.core.instrument.FunctionCounter;
+import io.micrometer.core.instrument.MeterRegistry;
+import lombok.extern.slf4j.Slf4j;
+import org.redisson.api.RTopic;
+import org.redisson.api.RedissonClient;
+import org.redisson.client.codec.StringCodec;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.stereotype.Component;
+import top.iceclean.chatspace.cache.config.CacheProperties;
+
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentMap;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * 本地近端缓存管理
+ * 所有节点订阅同一个 Redis 失效频道，任意节点修改缓存后广播失效消息，
+ * 各节点收到后丢弃本地对应的条目，下一次读取时再回源
+ * @author : Ice'Clean
+ * @date : 2026-10-18
+ */
+@Slf4j
+@Component
+public class NearCacheManager {
+    /** 失效频道 */
+    private static final String INVALIDATE_TOPIC = "near-cache-invalidate";
+    /** 失效消息中表示所有缓存的名称 */
+    private static final String ALL = "*";
+    /** 失效消息的分隔符（name:key） */
+    private static final char SEPARATOR = ':';
+
+    private final CacheProperties.Near properties;
+    private final MeterRegistry meterRegistry;
+    private final RTopic invalidateTopic;
+    /** 所有近端缓存 (name -> cache) */
+    private final ConcurrentMap<String, NearCache> cacheMap = new ConcurrentHashMap<>();
+
+    @Autowired
+    public NearCacheManager(RedissonClient redissonClient, MeterRegistry meterRegistry, CacheProperties cacheProperties) {
+        this.properties = cacheProperties.getNear();
+        this.meterRegistry = meterRegistry;
+        this.invalidateTopic = redissonClient.getTopic(INVALIDATE_TOPIC, StringCodec.INSTANCE);
+        if (properties.isEnabled()) {
+            invalidateTopic.addListener(String.class, (channel, msg) -> onInvalidate(msg));
+        }
+    }
+
+    /**
+     * 获取指定名称的近端缓存，不存在则创建
+     * @param name 缓存名称
+     * @return 近端缓存，未启用近端缓存时返回 null
+     */
+    public NearCache getCache(String name) {
+        if (!properties.isEnabled()) {
+            return null;
+        }
+        return cacheMap.computeIfAbsent(name, this::createCache);
+    }
+
+    /**
+     * 使所有节点上指定缓存的指定键失效
+     * @param name 缓存名称
+     * @param key 键
+     */
+    public void invalidate(String name, int key) {
+        if (!properties.isEnabled()) {
+            return;
+        }
+        invalidateLocal(name, key);
+        invalidateTopic.publishAsync(name + SEPARATOR + key);
+    }
+
+    /**
+     * 使所有节点上所有缓存的指定键失效（例如用户重新登录，整个状态哈希被清空）
+     * @param key 键
+     */
+    public void invalidateAll(int key) {
+        invalidate(ALL, key);
+    }
+
+    private NearCache createCache(String name) {
+        NearCache cache = new NearCache(name, properties.getCapacity(), properties.getTtlSeconds(), TimeUnit.SECONDS);
+        FunctionCounter.builder("chatspace.near.cache.requests", cache, NearCache::hitCount)
+                .tag("cache", name).tag("result", "hit").register(meterRegistry);
+        FunctionCounter.builder("chatspace.near.cache.requests", cache, NearCache::missCount)
+                .tag("cache", name).tag("result", "miss").register(meterRegistry);
+        FunctionCounter.builder("chatspace.near.cache.invalidations", cache, NearCache::invalidationCount)
+                .tag("cache", name).register(meterRegistry);
+        return cache;
+    }
+
+    private void invalidateLocal(String name, int key) {
+        if (ALL.equals(name)) {
+            cacheMap.values().forEach(cache -> cache.invalidate(key));
+            return;
+        }
+        NearCache cache = cacheMap.get(name);
+        if (cache != null) {
+            cache.invalidate(key);
+        }
+    }
+
+    private void onInvalidate(String msg) {
+        int split = msg.lastIndexOf(SEPARATOR);
+        try {
+            invalidateLocal(msg.substring(0, split), Integer.parseInt(msg.substring(split + 1)));
+        } catch (RuntimeException e) {
+            log.error("无法解析的近端缓存失效消息：{}", msg);
+        }
+    }
+}
@@ -0,0 +1,195 @@
+package top.iceclean.chatspace.cache.local;
+
+import lombok.extern.slf4j.Slf4j;
+import org.redisson.api.RTopic;
+import org.redisson.api.RedissonClient;
+import org.redisson.client.codec.ByteArrayCodec;
+import org.redisson.client.codec.StringCodec;
+import org.roaringbitmap.RoaringBitmap;
+import org.springframework.stereotype.Component;
+import top.iceclean.chatspace.cache.collection.IntSet;
+import top.iceclean.chatspace.infrastructure.constant.RedisKey;
+
+import javax.annotation.PreDestroy;
+import java.util.*;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.locks.ReadWriteLock;
+import java.util.concurrent.locks.ReentrantReadWriteLock;
+import java.util.function.IntConsumer;
+
+/**
+ * 在线用户登记表
+ * Redis 中的在线位图（USER_ONLINE_BIT）仍然是唯一的数据源，每个节点在本地维护一份压缩位图，
+ * 上下线时广播变更消息增量更新，并定期从 Redis 全量同步兜底，
+ * 统计在线人数和遍历在线用户都只与在线人数有关，与最大用户 ID 无关；
+ * 本地位图可能短暂落后于 Redis（启动后首次同步前、广播丢失后），只用于统计和遍历，消息路由仍以 Redis 为准
+ * @author : Ice'Clean
+ * @date : 2026-10-18
+ */
+@Slf4j
+@Component
+public class OnlineRegistry {
+    /** 上下线变更频道，消息格式为 userId:1 或 userId:0 */
+    private static final String ONLINE_CHANGE_TOPIC = "online-change";
+    /** 全量同步间隔（秒） */
+    private static final long SYNC_INTERVAL = 60;
+
+    private final RedissonClient redissonClient;
+    private final RTopic changeTopic;
+    private final ReadWriteLock lock = new ReentrantReadWriteLock();
+    private final ScheduledExecutorService scheduler;
+    /** 本地在线位图，读写都需要持有对应的锁 */
+    private RoaringBitmap online = new RoaringBitmap();
+    /** 全量同步期间发生的变更（上线为 userId，下线为 ~userId），同步完成后重放，不同步时为 null */
+    private List<Integer> syncChanges;
+
+    public OnlineRegistry(RedissonClient redissonClient) {
+        this.redissonClient = redissonClient;
+        this.changeTopic = redissonClient.getTopic(ONLINE_CHANGE_TOPIC, StringCodec.INSTANCE);
+        changeTopic.addListener(String.class, (channel, msg) -> onChange(msg));
+        this.scheduler = Executors.newSingleThreadScheduledExecutor(r -> {
+            Thread thread = new Thread(r, "online-registry-sync");
+            thread.setDaemon(true);
+            return thread;
+        });
+        scheduler.scheduleWithFixedDelay(this::sync, 0, SYNC_INTERVAL, TimeUnit.SECONDS);
+    }
+
+    /**
+     * 广播用户的上下线变更（Redis 位图需要由调用方先行更新）
+     * @param userId 用户 ID
+     * @param isOnline 是否在线
+     */
+    public void publish(int userId, boolean isOnline) {
+        apply(userId, isOnline);
+        changeTopic.publishAsync(userId + (isOnline ? ":1" : ":0"));
+    }
+
+    /** 在线人数 */
+    public int cardinality() {
+        lock.readLock().lock();
+        try {
+            return online.getCardinality();
+        } finally {
+            lock.readLock().unlock();
+        }
+    }
+
+    /** 用户是否在线 */
+    public boolean contains(int userId) {
+        lock.readLock().lock();
+        try {
+            return online.contains(userId);
+        } finally {
+            lock.readLock().unlock();
+        }
+    }
+
+    /**
+     * 按升序遍历所有在线用户（遍历期间持有读锁，回调中不要做耗时操作）
+     * @param consumer 用户 ID 的消费者
+     */
+    public void forEach(IntConsumer consumer) {
+        lock.readLock().lock();
+        try {
+            online.forEach((org.roaringbitmap.IntConsumer) consumer::accept);
+        } finally {
+            lock.readLock().unlock();
+        }
+    }
+
+    /**
+     * 获取所有在线用户
+     * @return 在线用户 ID 集合
+     */
+    public IntSet toIntSet() {
+        lock.readLock().lock();
+        try {
+            IntSet userIdSet = new IntSet(online.getCardinality());
+            online.forEach((org.roaringbitmap.IntConsumer) userIdSet::add);
+            return userIdSet;
+        } finally {
+            lock.readLock().unlock();
+        }
+    }
+
+    private void apply(int userId, boolean isOnline) {
+        lock.writeLock().lock();
+        try {
+            if (isOnline) {
+                online.add(userId);
+            } else {
+                online.remove(userId);
+            }
+            if (syncChanges != null) {
+                syncChanges.add(isOnline ? userId : ~userId);
+            }
+        } finally {
+            lock.writeLock().unlock();
+        }
+    }
+
+    private void onChange(String msg) {
+        int split = msg.lastIndexOf(':');
+        try {
+            apply(Integer.parseInt(msg.substring(0, split)), msg.charAt(split + 1) == '1');
+        } catch (RuntimeException e) {
+            log.error("无法解析的上下线变更消息：{}", msg);
+        }
+    }
+
+    /** 从 Redis 在线位图全量同步（位图中第 0 位是第一个字节的最高位） */
+    private void sync() {
+        lock.writeLock().lock();
+        try {
+            syncChanges = new ArrayList<>();
+        } finally {
+            lock.writeLock().unlock();
+        }
+        try {
+            byte[] bytes = redissonClient.<byte[]>getBucket(RedisKey.USER_ONLINE_BIT, ByteArrayCodec.INSTANCE).get();
+            RoaringBitmap bitmap = new RoaringBitmap();
+            if (bytes != null) {
+                for (int i = 0; i < bytes.length; i++) {
+                    int b = bytes[i] & 0xFF;
+                    while (b != 0) {
+                        int bit = Integer.numberOfLeadingZeros(b) - 24;
+                        bitmap.add((i << 3) + bit);
+                        b &= ~(0x80 >>> bit);
+                    }
+                }
+            }
+            bitmap.runOptimize();
+            lock.writeLock().lock();
+            try {
+                // 读取位图之后才到达的变更可能没有包含在内，需要重放一遍
+                for (int change : syncChanges) {
+                    if (change >= 0) {
+                        bitmap.add(change);
+                    } else {
+                        bitmap.remove(~change);
+                    }
+                }
+                online = bitmap;
+            } finally {
+                lock.writeLock().unlock();
+            }
+        } catch (RuntimeException e) {
+            log.error("同步在线用户失败：{}", e.getMessage());
+        } finally {
+            lock.writeLock().lock();
+            try {
+                syncChanges = null;
+            } finally {
+                lock.writeLock().unlock();
+            }
+        }
+    }
+
+    @PreDestroy
+    public void shutdown() {
+        scheduler.shutdown();
+    }
+}
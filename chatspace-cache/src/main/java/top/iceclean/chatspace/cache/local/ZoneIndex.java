@@ -0,0 +1,159 @@
+package top.iceclean.chatspace.cache.local;
+
+import top.iceclean.chatspace.cache.ZoneCache;
+import top.iceclean.chatspace.infrastructure.po.Zone;
+
+import java.util.*;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentMap;
+import java.util.function.LongConsumer;
+
+/**
+ * 单个空间的区域空间索引
+ * 每个父级区域下维护一张定长瓦片网格，区域矩形登记到它所覆盖的每个瓦片中，
+ * 坐标查询只需扫描一个瓦片内的少量矩形；瓦片内容写时复制，读取无锁
+ * @author : Ice'Clean
+ * @date : 2026-10-18
+ */
+public class ZoneIndex {
+    /** 瓦片边长为 2 ^ TILE_SHIFT */
+    private static final int TILE_SHIFT = 5;
+    private static final Rect[] EMPTY = new Rect[0];
+
+    /** 区域矩形（闭区间），同时作为 Redis 中的持久化格式 */
+    public static final class Rect {
+        private final int zoneId;
+        private final int pid;
+        private final int startX;
+        private final int startY;
+        private final int endX;
+        private final int endY;
+        private final ZoneCache.Info info;
+
+        private Rect(int pid, int startX, int startY, int endX, int endY, ZoneCache.Info info) {
+            this.zoneId = info.getZoneId();
+            this.pid = pid;
+            this.startX = startX;
+            this.startY = startY;
+            this.endX = endX;
+            this.endY = endY;
+            this.info = info;
+        }
+
+        public static Rect of(Zone zone) {
+            return new Rect(zone.getZonePid(), zone.getStartX(), zone.getStartY(), zone.getEndX(), zone.getEndY(),
+                    new ZoneCache.Info(zone.getId(), zone.getGroupId(), zone.getZoneType()));
+        }
+
+        /** 形式为（pid,startX,startY,endX,endY,type-groupId-zoneId） */
+        public String serialize() {
+            return pid + "," + startX + "," + startY + "," + endX + "," + endY + "," +
+                    info.getZoneType() + "-" + info.getGroupId() + "-" + info.getZoneId();
+        }
+
+        public static Rect parse(String data) {
+            String[] parts = data.split(",");
+            return new Rect(Integer.parseInt(parts[0]), Integer.parseInt(parts[1]), Integer.parseInt(parts[2]),
+                    Integer.parseInt(parts[3]), Integer.parseInt(parts[4]), ZoneCache.Info.parse(parts[5]));
+        }
+
+        public int getZoneId() {
+            return zoneId;
+        }
+
+        private boolean contains(int x, int y) {
+            return x >= startX && x <= endX && y >= startY && y <= endY;
+        }
+
+        private boolean intersects(int sx, int sy, int ex, int ey) {
+            return sx <= endX && ex >= startX && sy <= endY && ey >= startY;
+        }
+    }
+
+    /** 各父级区域下的瓦片网格 (pid -> (tile -> 矩形)) */
+    private final ConcurrentMap<Integer, ConcurrentMap<Long, Rect[]>> gridMap = new ConcurrentHashMap<>();
+    /** 已登记的区域 (zoneId -> 矩形)，用于删除 */
+    private final Map<Integer, Rect> rectMap = new HashMap<>();
+
+    public ZoneIndex(Collection<Rect> rects) {
+        rects.forEach(this::add);
+    }
+
+    /**
+     * 获取指定父级区域下包含该坐标的区域
+     * @return 区域信息，没有则返回 null
+     */
+    public ZoneCache.Info find(int pid, int x, int y) {
+        ConcurrentMap<Long, Rect[]> grid = gridMap.get(pid);
+        if (grid == null) {
+            return null;
+        }
+        for (Rect rect : grid.getOrDefault(tile(x >> TILE_SHIFT, y >> TILE_SHIFT), EMPTY)) {
+            if (rect.contains(x, y)) {
+                return rect.info;
+            }
+        }
+        return null;
+    }
+
+    /** 判断指定父级区域下是否有区域与该矩形重叠 */
+    public boolean intersects(int pid, int startX, int startY, int endX, int endY) {
+        ConcurrentMap<Long, Rect[]> grid = gridMap.get(pid);
+        if (grid == null) {
+            return false;
+        }
+        for (int tx = startX >> TILE_SHIFT; tx <= endX >> TILE_SHIFT; tx++) {
+            for (int ty = startY >> TILE_SHIFT; ty <= endY >> TILE_SHIFT; ty++) {
+                for (Rect rect : grid.getOrDefault(tile(tx, ty), EMPTY)) {
+                    if (rect.intersects(startX, startY, endX, endY)) {
+                        return true;
+                    }
+                }
+            }
+        }
+        return false;
+    }
+
+    /** 登记区域，已存在同 ID 的区域时先移除旧的 */
+    public synchronized void add(Rect rect) {
+        remove(rect.zoneId);
+        rectMap.put(rect.zoneId, rect);
+        ConcurrentMap<Long, Rect[]> grid = gridMap.computeIfAbsent(rect.pid, pid -> new ConcurrentHashMap<>());
+        forEachTile(rect, tile -> {
+            Rect[] old = grid.getOrDefault(tile, EMPTY);
+            Rect[] rects = Arrays.copyOf(old, old.length + 1);
+            rects[old.length] = rect;
+            grid.put(tile, rects);
+        });
+    }
+
+    /** 移除区域 */
+    public synchronized void remove(int zoneId) {
+        Rect rect = rectMap.remove(zoneId);
+        if (rect == null) {
+            return;
+        }
+        ConcurrentMap<Long, Rect[]> grid = gridMap.get(rect.pid);
+        forEachTile(rect, tile -> {
+            Rect[] rects = Arrays.stream(grid.getOrDefault(tile, EMPTY))
+                    .filter(r -> r.zoneId != zoneId).toArray(Rect[]::new);
+            if (rects.length == 0) {
+                grid.remove(tile);
+            } else {
+                grid.put(tile, rects);
+            }
+        });
+    }
+
+    private static void forEachTile(Rect rect, LongConsumer consumer) {
+        for (int tx = rect.startX >> TILE_SHIFT; tx <= rect.endX >> TILE_SHIFT; tx++) {
+            for (int ty = rect.startY >> TILE_SHIFT; ty <= rect.endY >> TILE_SHIFT; ty++) {
+                consumer.accept(tile(tx, ty));
+            }
+        }
+    }
+
+    private static long tile(int tx, int ty) {
+        return ((long) tx << 32) | (ty & 0xFFFFFFFFL);
+    }
+}
@@ -0,0 +1,163 @@
+package top.iceclean.chatspace.cache.codec;
+
+import org.openjdk.jmh.annotations.*;
+import org.openjdk.jmh.runner.Runner;
+import org.openjdk.jmh.runner.RunnerException;
+import org.openjdk.jmh.runner.options.OptionsBuilder;
+
+import java.util.concurrent.TimeUnit;
+
+/**
+ * 缓存实体编解码的基准测试：JSONB 紧凑二进制（JsonbEntityCodec）对比原来的 JSON 文本（JsonEntityCodec）
+ * 实体字段与区域实体相当，编码后的字节数在 setUp 中打印
+ * 运行：在 chatspace-cache 目录下 mvn test-compile 后执行本类的 main 方法
+ * @author : Ice'Clean
+ * @date : 2026-10-18
+ */
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.NANOSECONDS)
+@Warmup(iterations = 3, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+@State(Scope.Benchmark)
+public class EntityCodecBenchmark {
+
+    public static class Zone {
+        private Integer id;
+        private Integer spaceId;
+        private String name;
+        private String description;
+        private Integer x;
+        private Integer y;
+        private Integer width;
+        private Integer height;
+        private Integer sessionId;
+        private String createTime;
+
+        public Integer getId() {
+            return id;
+        }
+
+        public void setId(Integer id) {
+            this.id = id;
+        }
+
+        public Integer getSpaceId() {
+            return spaceId;
+        }
+
+        public void setSpaceId(Integer spaceId) {
+            this.spaceId = spaceId;
+        }
+
+        public String getName() {
+            return name;
+        }
+
+        public void setName(String name) {
+            this.name = name;
+        }
+
+        public String getDescription() {
+            return description;
+        }
+
+        public void setDescription(String description) {
+            this.description = description;
+        }
+
+        public Integer getX() {
+            return x;
+        }
+
+        public void setX(Integer x) {
+            this.x = x;
+        }
+
+        public Integer getY() {
+            return y;
+        }
+
+        public void setY(Integer y) {
+            this.y = y;
+        }
+
+        public Integer getWidth() {
+            return width;
+        }
+
+        public void setWidth(Integer width) {
+            this.width = width;
+        }
+
+        public Integer getHeight() {
+            return height;
+        }
+
+        public void setHeight(Integer height) {
+            this.height = height;
+        }
+
+        public Integer getSessionId() {
+            return sessionId;
+        }
+
+        public void setSessionId(Integer sessionId) {
+            this.sessionId = sessionId;
+        }
+
+        public String getCreateTime() {
+            return createTime;
+        }
+
+        public void setCreateTime(String createTime) {
+            this.createTime = createTime;
+        }
+    }
+
+    private Zone zone;
+    private byte[] jsonb;
+    private byte[] json;
+
+    @Setup
+    public void setUp() {
+        zone = new Zone();
+        zone.setId(1024);
+        zone.setSpaceId(3);
+        zone.setName("中央广场");
+        zone.setDescription("进入后加入广场的群聊");
+        zone.setX(120);
+        zone.setY(-48);
+        zone.setWidth(64);
+        zone.setHeight(32);
+        zone.setSessionId(20481);
+        zone.setCreateTime("2026-10-18 12:00:00");
+        jsonb = JsonbEntityCodec.INSTANCE.encode(zone);
+        json = JsonEntityCodec.INSTANCE.encode(zone);
+        System.out.println("JSONB " + jsonb.length + " 字节，JSON " + json.length + " 字节");
+    }
+
+    @Benchmark
+    public byte[] encodeJsonb() {
+        return JsonbEntityCodec.INSTANCE.encode(zone);
+    }
+
+    @Benchmark
+    public byte[] encodeJson() {
+        return JsonEntityCodec.INSTANCE.encode(zone);
+    }
+
+    @Benchmark
+    public Zone decodeJsonb() {
+        return JsonbEntityCodec.INSTANCE.decode(jsonb, Zone.class);
+    }
+
+    @Benchmark
+    public Zone decodeJson() {
+        return JsonEntityCodec.INSTANCE.decode(json, Zone.class);
+    }
+
+    public static void main(String[] args) throws RunnerException {
+        new Runner(new OptionsBuilder().include(EntityCodecBenchmark.class.getSimpleName()).build()).run();
+    }
+}
@@ -0,0 +1,147 @@
+package top.iceclean.chatspace.cache.codec;
+
+import org.junit.jupiter.api.Test;
+
+import java.nio.charset.StandardCharsets;
+import java.util.Arrays;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+/**
+ * JsonbEntityCodec 的编解码和字段布局校验测试
+ * @author : Ice'Clean
+ * @date : 2026-10-18
+ */
+class JsonbEntityCodecTest {
+    private final JsonbEntityCodec codec = JsonbEntityCodec.INSTANCE;
+
+    public static class Base {
+        private Integer id;
+
+        public Integer getId() {
+            return id;
+        }
+
+        public void setId(Integer id) {
+            this.id = id;
+        }
+    }
+
+    public static class Zone extends Base {
+        private String name;
+        private int x;
+        private Integer width;
+
+        public String getName() {
+            return name;
+        }
+
+        public void setName(String name) {
+            this.name = name;
+        }
+
+        public int getX() {
+            return x;
+        }
+
+        public void setX(int x) {
+            this.x = x;
+        }
+
+        public Integer getWidth() {
+            return width;
+        }
+
+        public void setWidth(Integer width) {
+            this.width = width;
+        }
+    }
+
+    /** 与 Zone 只有字段顺序不同 */
+    public static class ReorderedZone extends Base {
+        private int x;
+        private String name;
+        private Integer width;
+
+        public int getX() {
+            return x;
+        }
+
+        public void setX(int x) {
+            this.x = x;
+        }
+
+        public String getName() {
+            return name;
+        }
+
+        public void setName(String name) {
+            this.name = name;
+        }
+
+        public Integer getWidth() {
+            return width;
+        }
+
+        public void setWidth(Integer width) {
+            this.width = width;
+        }
+    }
+
+    @Test
+    void roundTripKeepsAllFields() {
+        Zone decoded = codec.decode(codec.encode(zone()), Zone.class);
+        assertEquals(7, decoded.getId());
+        assertEquals("大厅", decoded.getName());
+        assertEquals(-12, decoded.getX());
+        assertNull(decoded.getWidth());
+    }
+
+    @Test
+    void differentLayoutIsRejected() {
+        byte[] data = codec.encode(zone());
+        assertThrows(IllegalStateException.class, () -> codec.decode(data, ReorderedZone.class));
+    }
+
+    @Test
+    void damagedHeaderIsRejected() {
+        byte[] data = codec.encode(zone());
+        for (int i = 0; i < 5; i++) {
+            byte[] damaged = Arrays.copyOf(data, data.length);
+            damaged[i] ^= 0x10;
+            assertThrows(IllegalStateException.class, () -> codec.decode(damaged, Zone.class), "header byte " + i);
+        }
+        assertThrows(IllegalStateException.class, () -> codec.decode(Arrays.copyOf(data, 5), Zone.class));
+        assertThrows(IllegalStateException.class, () -> codec.decode(new byte[0], Zone.class));
+    }
+
+    @Test
+    void headerIsStablePerType() {
+        byte[] first = codec.encode(zone());
+        Zone other = zone();
+        other.setName("另一个");
+        assertArrayEquals(Arrays.copyOf(first, 5), Arrays.copyOf(codec.encode(other), 5));
+    }
+
+    @Test
+    void legacyJsonIsStillReadable() {
+        byte[] json = "{\"id\":3,\"name\":\"旧数据\",\"x\":5}".getBytes(StandardCharsets.UTF_8);
+        Zone decoded = codec.decode(json, Zone.class);
+        assertEquals(3, decoded.getId());
+        assertEquals("旧数据", decoded.getName());
+        assertEquals(5, decoded.getX());
+    }
+
+    @Test
+    void binaryIsSmallerThanJson() {
+        assertTrue(codec.encode(zone()).length < JsonEntityCodec.INSTANCE.encode(zone()).length);
+    }
+
+    private static Zone zone() {
+        Zone zone = new Zone();
+        zone.setId(7);
+        zone.setName("大厅");
+        zone.setX(-12);
+        return zone;
+    }
+}
@@ -0,0 +1,61 @@
+package top.iceclean.chatspace.cache.collection;
+
+import org.junit.jupiter.api.Test;
+
+import java.util.HashMap;
+import java.util.Map;
+import java.util.Random;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+/**
+ * IntIntMap 与 HashMap 的对照测试
+ * @author : Ice'Clean
+ * @date : 2026-10-18
+ */
+class IntIntMapTest {
+    private static final int MISSING = -1;
+
+    @Test
+    void randomOperationsMatchHashMap() {
+        Random random = new Random(20261018);
+        IntIntMap map = new IntIntMap(2);
+        Map<Integer, Integer> expected = new HashMap<>();
+        for (int step = 0; step < 20000; step++) {
+            int key = random.nextInt(300) - 150;
+            if (random.nextInt(3) == 0) {
+                assertEquals(expected.getOrDefault(key, MISSING), map.remove(key, MISSING));
+                expected.remove(key);
+            } else {
+                int value = random.nextInt(1000);
+                Integer old = expected.put(key, value);
+                assertEquals(old == null ? MISSING : old, map.put(key, value, MISSING));
+            }
+            if (step % 500 == 0) {
+                assertSameMap(expected, map);
+            }
+        }
+        assertSameMap(expected, map);
+
+        map.clear();
+        assertTrue(map.isEmpty());
+        assertEquals(MISSING, map.get(0, MISSING));
+    }
+
+    @Test
+    void freeMarkerIsNotAKey() {
+        IntIntMap map = new IntIntMap();
+        assertThrows(IllegalArgumentException.class, () -> map.put(Integer.MIN_VALUE, 1, MISSING));
+        assertFalse(map.containsKey(Integer.MIN_VALUE));
+        assertEquals(MISSING, map.get(Integer.MIN_VALUE, MISSING));
+    }
+
+    private static void assertSameMap(Map<Integer, Integer> expected, IntIntMap map) {
+        assertEquals(expected.size(), map.size());
+        for (int key = -150; key < 150; key++) {
+            Integer value = expected.get(key);
+            assertEquals(value != null, map.containsKey(key));
+            assertEquals(value == null ? MISSING : value, map.get(key, MISSING));
+        }
+    }
+}
@@ -0,0 +1,105 @@
+package top.iceclean.chatspace.cache.collection;
+
+import io.netty.buffer.ByteBuf;
+import io.netty.buffer.Unpooled;
+import org.openjdk.jmh.annotations.*;
+import org.openjdk.jmh.runner.Runner;
+import org.openjdk.jmh.runner.RunnerException;
+import org.openjdk.jmh.runner.options.OptionsBuilder;
+
+import java.io.IOException;
+import java.nio.charset.StandardCharsets;
+import java.util.HashSet;
+import java.util.Random;
+import java.util.Set;
+import java.util.StringJoiner;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * 整型集合的基准测试
+ * 解码：IntStringCodec 直接从 ByteBuf 解析到 IntSet，对比原来逐个成员转成 String 再装箱放入 HashSet；
+ * 查找：IntSet 对比 HashSet&lt;Integer&gt;
+ * 运行：在 chatspace-cache 目录下 mvn test-compile 后执行本类的 main 方法
+ * @author : Ice'Clean
+ * @date : 2026-10-18
+ */
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+@Warmup(iterations = 3, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+@State(Scope.Benchmark)
+public class IntSetBenchmark {
+    @Param({"100", "10000"})
+    private int size;
+
+    /** 脚本返回的逗号拼接成员 */
+    private ByteBuf joined;
+    private IntSet intSet;
+    private Set<Integer> hashSet;
+    private int[] probes;
+
+    @Setup
+    public void setUp() {
+        Random random = new Random(20261018);
+        StringJoiner joiner = new StringJoiner(",");
+        intSet = new IntSet(size);
+        hashSet = new HashSet<>();
+        for (int i = 0; i < size; i++) {
+            int userId = random.nextInt(size * 10);
+            joiner.add(String.valueOf(userId));
+            intSet.add(userId);
+            hashSet.add(userId);
+        }
+        joined = Unpooled.copiedBuffer(joiner.toString(), StandardCharsets.US_ASCII);
+        probes = new int[1024];
+        for (int i = 0; i < probes.length; i++) {
+            probes[i] = random.nextInt(size * 10);
+        }
+    }
+
+    @TearDown
+    public void tearDown() {
+        joined.release();
+    }
+
+    @Benchmark
+    public Object decodeIntSet() throws IOException {
+        return IntStringCodec.INSTANCE.getValueDecoder().decode(joined.duplicate(), null);
+    }
+
+    @Benchmark
+    public Object decodeBoxedSet() {
+        Set<Integer> set = new HashSet<>();
+        for (String member : joined.toString(StandardCharsets.US_ASCII).split(",")) {
+            set.add(Integer.valueOf(member));
+        }
+        return set;
+    }
+
+    @Benchmark
+    public int containsIntSet() {
+        int found = 0;
+        for (int probe : probes) {
+            if (intSet.contains(probe)) {
+                found++;
+            }
+        }
+        return found;
+    }
+
+    @Benchmark
+    public int containsHashSet() {
+        int found = 0;
+        for (int probe : probes) {
+            if (hashSet.contains(probe)) {
+                found++;
+            }
+        }
+        return found;
+    }
+
+    public static void main(String[] args) throws RunnerException {
+        new Runner(new OptionsBuilder().include(IntSetBenchmark.class.getSimpleName()).build()).run();
+    }
+}
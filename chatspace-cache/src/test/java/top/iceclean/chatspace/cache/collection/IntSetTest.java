@@ -0,0 +1,70 @@
+package top.iceclean.chatspace.cache.collection;
+
+import org.junit.jupiter.api.Test;
+
+import java.util.*;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+/**
+ * IntSet 与 HashSet 的对照测试
+ * 取值范围很小，插入和删除反复落在同一条探测链上，覆盖删除后的前移和扩容
+ * @author : Ice'Clean
+ * @date : 2026-10-18
+ */
+class IntSetTest {
+
+    @Test
+    void randomOperationsMatchHashSet() {
+        Random random = new Random(20261018);
+        IntSet set = new IntSet(2);
+        Set<Integer> expected = new HashSet<>();
+        for (int step = 0; step < 20000; step++) {
+            // 包括作为空槽位标记的 Integer.MIN_VALUE
+            int value = random.nextInt(50) == 0 ? Integer.MIN_VALUE : random.nextInt(300) - 150;
+            if (random.nextInt(3) == 0) {
+                assertEquals(expected.remove(value), set.remove(value));
+            } else {
+                assertEquals(expected.add(value), set.add(value));
+            }
+            assertEquals(expected.contains(value), set.contains(value));
+            if (step % 500 == 0) {
+                assertSameSet(expected, set);
+            }
+        }
+        assertSameSet(expected, set);
+
+        set.clear();
+        assertTrue(set.isEmpty());
+        assertFalse(set.contains(Integer.MIN_VALUE));
+    }
+
+    @Test
+    void iteratorRemovesThroughSetInterface() {
+        IntSet set = IntSet.of(1, 2, 3, Integer.MIN_VALUE);
+        set.removeIf(value -> value % 2 != 0);
+        assertEquals(new HashSet<>(Arrays.asList(2, Integer.MIN_VALUE)), set);
+    }
+
+    @Test
+    void ofKeepsExistingIntSet() {
+        IntSet set = IntSet.of(1, 2);
+        assertSame(set, IntSet.of((Collection<Integer>) set));
+        assertEquals(set, IntSet.of(Arrays.asList(2, 1, 2)));
+    }
+
+    private static void assertSameSet(Set<Integer> expected, IntSet set) {
+        assertEquals(expected.size(), set.size());
+        assertEquals(expected, set);
+        assertEquals(set, expected);
+
+        int[] values = set.toIntArray();
+        Arrays.sort(values);
+        assertArrayEquals(expected.stream().mapToInt(Integer::intValue).sorted().toArray(), values);
+
+        List<Integer> visited = new ArrayList<>();
+        set.forEachInt(visited::add);
+        assertEquals(expected.size(), visited.size());
+        assertEquals(expected, new HashSet<>(visited));
+    }
+}
@@ -0,0 +1,49 @@
+package top.iceclean.chatspace.cache.collection;
+
+import io.netty.buffer.ByteBuf;
+import io.netty.buffer.Unpooled;
+import org.junit.jupiter.api.Test;
+
+import java.nio.charset.StandardCharsets;
+import java.util.Arrays;
+import java.util.HashSet;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+/**
+ * IntStringCodec 解码脚本返回的逗号拼接成员
+ * @author : Ice'Clean
+ * @date : 2026-10-18
+ */
+class IntStringCodecTest {
+
+    @Test
+    void decodesJoinedMembers() throws Exception {
+        assertEquals(new HashSet<>(Arrays.asList(1, -23, 456, 2147483647, -2147483648)),
+                decode("1,-23,456,2147483647,-2147483648"));
+        assertEquals(new HashSet<>(Arrays.asList(7, 0)), decode("7,0,7"));
+        assertEquals(new HashSet<>(Arrays.asList(5)), decode("5"));
+    }
+
+    @Test
+    void emptyValueIsEmptySet() throws Exception {
+        assertTrue(decode("").isEmpty());
+    }
+
+    @Test
+    void consumesTheWholeBuffer() throws Exception {
+        ByteBuf buf = Unpooled.copiedBuffer("12,34", StandardCharsets.US_ASCII);
+        IntStringCodec.INSTANCE.getValueDecoder().decode(buf, null);
+        assertEquals(0, buf.readableBytes());
+        buf.release();
+    }
+
+    private static IntSet decode(String value) throws Exception {
+        ByteBuf buf = Unpooled.copiedBuffer(value, StandardCharsets.US_ASCII);
+        try {
+            return (IntSet) IntStringCodec.INSTANCE.getValueDecoder().decode(buf, null);
+        } finally {
+            buf.release();
+        }
+    }
+}
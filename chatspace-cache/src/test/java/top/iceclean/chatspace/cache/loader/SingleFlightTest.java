@@ -0,0 +1,121 @@
+package top.iceclean.chatspace.cache.loader;
+
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.Test;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.*;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.function.Supplier;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+/**
+ * SingleFlight 的并发合并测试
+ * @author : Ice'Clean
+ * @date : 2026-10-18
+ */
+class SingleFlightTest {
+    private static final int WAITERS = 8;
+
+    private final SingleFlight singleFlight = new SingleFlight();
+    private final ExecutorService pool = Executors.newCachedThreadPool();
+
+    @AfterEach
+    void tearDown() {
+        pool.shutdownNow();
+    }
+
+    @Test
+    void concurrentCallsShareOneExecution() throws Exception {
+        AtomicInteger executions = new AtomicInteger();
+        CountDownLatch started = new CountDownLatch(1);
+        CountDownLatch release = new CountDownLatch(1);
+        Future<String> leader = pool.submit(() -> singleFlight.execute("group:1", () -> {
+            executions.incrementAndGet();
+            started.countDown();
+            await(release);
+            return "value";
+        }));
+        assertTrue(started.await(5, TimeUnit.SECONDS));
+
+        List<Future<String>> waiters = startWaiters("group:1", () -> {
+            executions.incrementAndGet();
+            return "other";
+        });
+        release.countDown();
+
+        assertEquals("value", leader.get(5, TimeUnit.SECONDS));
+        for (Future<String> waiter : waiters) {
+            assertEquals("value", waiter.get(5, TimeUnit.SECONDS));
+        }
+        assertEquals(1, executions.get());
+        assertEquals(0, singleFlight.inFlight());
+
+        // 执行结束后的调用重新执行
+        assertEquals("again", singleFlight.execute("group:1", () -> "again"));
+    }
+
+    @Test
+    void waitersReceiveTheSameException() throws Exception {
+        IllegalStateException failure = new IllegalStateException("加载失败");
+        CountDownLatch started = new CountDownLatch(1);
+        CountDownLatch release = new CountDownLatch(1);
+        Future<String> leader = pool.submit(() -> singleFlight.execute("zone:1", () -> {
+            started.countDown();
+            await(release);
+            throw failure;
+        }));
+        assertTrue(started.await(5, TimeUnit.SECONDS));
+        List<Future<String>> waiters = startWaiters("zone:1", () -> "other");
+        release.countDown();
+
+        assertSame(failure, assertThrows(ExecutionException.class, () -> leader.get(5, TimeUnit.SECONDS)).getCause());
+        for (Future<String> waiter : waiters) {
+            assertSame(failure, assertThrows(ExecutionException.class, () -> waiter.get(5, TimeUnit.SECONDS)).getCause());
+        }
+        assertEquals(0, singleFlight.inFlight());
+    }
+
+    @Test
+    void differentKeysDoNotWaitForEachOther() throws Exception {
+        CountDownLatch release = new CountDownLatch(1);
+        Future<String> blocked = pool.submit(() -> singleFlight.execute("group:1", () -> {
+            await(release);
+            return "slow";
+        }));
+        assertEquals("fast", pool.submit(() -> singleFlight.execute("group:2", () -> "fast")).get(5, TimeUnit.SECONDS));
+        release.countDown();
+        assertEquals("slow", blocked.get(5, TimeUnit.SECONDS));
+    }
+
+    /** 启动多个相同键的调用，等到它们都在等待执行中的调用后返回 */
+    private List<Future<String>> startWaiters(String key, Supplier<String> supplier) throws InterruptedException {
+        List<Thread> threads = new ArrayList<>();
+        List<Future<String>> futures = new ArrayList<>();
+        for (int i = 0; i < WAITERS; i++) {
+            FutureTask<String> task = new FutureTask<>(() -> singleFlight.execute(key, supplier));
+            Thread thread = new Thread(task);
+            threads.add(thread);
+            futures.add(task);
+            thread.start();
+        }
+        long deadline = System.nanoTime() + TimeUnit.SECONDS.toNanos(5);
+        for (Thread thread : threads) {
+            while (thread.getState() != Thread.State.WAITING) {
+                assertTrue(System.nanoTime() < deadline, "调用没有进入等待");
+                Thread.sleep(1);
+            }
+        }
+        return futures;
+    }
+
+    private static void await(CountDownLatch latch) {
+        try {
+            assertTrue(latch.await(5, TimeUnit.SECONDS));
+        } catch (InterruptedException e) {
+            throw new IllegalStateException(e);
+        }
+    }
+}
@@ -71,4 +71,11 @@ public interface FriendClient {
      */
     @PutMapping("/last-msg-id")
     void updateLastMsgId(@RequestParam int friendId, @RequestParam int userId, @RequestParam int latestMsgId);
+
+    /**
+     * 批量更新用户在好友会话中最后阅读的消息 ID（只增不减）
+     * @param cursors 好友 ID、用户 ID 和消息 ID 组成的数组列表 [[friendId, userId, msgId], ...]
+     */
+    @PutMapping("/last-msg-id/list")
+    void updateLastMsgIds(@RequestBody List<int[]> cursors);
 }
@@ -45,6 +45,14 @@ public interface GroupClient {
     @GetMapping("/{groupId}")
     Group getGroupById(@PathVariable int groupId);
 
+    /**
+     * 批量通过群聊 ID 获取群聊实体
+     * @param groupIdList 群聊 ID 列表
+     * @return 群聊实体列表，与请求顺序一致，不存在的为 null
+     */
+    @PostMapping("/list")
+    List<Group> getGroupList(@RequestBody List<Integer> groupIdList);
+
     /**
      * 获取用户某条群聊记录
      * @param userId 用户 ID
@@ -62,6 +70,14 @@ public interface GroupClient {
     @GetMapping("/zone/{zoneId}")
     Zone getZoneById(@PathVariable int zoneId);
 
+    /**
+     * 批量通过区域 ID 获取区域实体
+     * @param zoneIdList 区域 ID 列表
+     * @return 区域实体列表，与请求顺序一致，不存在的为 null
+     */
+    @PostMapping("/zone/list")
+    List<Zone> getZoneListById(@RequestBody List<Integer> zoneIdList);
+
     /**
      * 获取群聊中所有用户 ID
      * @param groupId 群聊 ID
@@ -95,6 +111,13 @@ public interface GroupClient {
     @PutMapping("/last-msg-id")
     void updateLastMsgId(@RequestParam int groupId, @RequestParam int userId, @RequestParam int latestMsgId);
 
+    /**
+     * 批量更新用户在群聊会话中最后阅读的消息 ID（只增不减）
+     * @param cursors 群聊 ID、用户 ID 和消息 ID 组成的数组列表 [[groupId, userId, msgId], ...]
+     */
+    @PutMapping("/last-msg-id/list")
+    void updateLastMsgIds(@RequestBody List<int[]> cursors);
+
     /**
      * 获取指定空间中的所有区域
      * @param spaceId 空间 ID
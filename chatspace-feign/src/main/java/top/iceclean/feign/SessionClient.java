@@ -2,13 +2,13 @@ package top.iceclean.feign;
 
 import org.springframework.cloud.openfeign.FeignClient;
 import org.springframework.cloud.openfeign.SpringQueryMap;
-import org.springframework.web.bind.annotation.GetMapping;
-import org.springframework.web.bind.annotation.PutMapping;
-import org.springframework.web.bind.annotation.RequestParam;
+import org.springframework.web.bind.annotation.*;
 import top.iceclean.chatspace.infrastructure.constant.SessionType;
 import top.iceclean.chatspace.infrastructure.po.Session;
 import top.iceclean.chatspace.infrastructure.vo.SessionVO;
 
+import java.util.List;
+
 /**
  * @author : Ice'Clean
  * @date : 2022-10-09
@@ -33,6 +33,14 @@ public interface SessionClient {
     @GetMapping("/vo")
     SessionVO getSessionVO(@RequestParam int sessionId);
 
+    /**
+     * 批量通过会话 ID 获取简单的会话响应对象
+     * @param sessionIdList 会话 ID 列表
+     * @return 会话响应对象列表，与请求顺序一致，不存在的为 null
+     */
+    @PostMapping("/vo/list")
+    List<SessionVO> getSessionVOList(@RequestBody List<Integer> sessionIdList);
+
     /**
      * 通过会话 ID 和当前用户 ID 获取详细的会话响应对象
      * @param sessionId 会话 ID
@@ -51,6 +59,14 @@ public interface SessionClient {
     @GetMapping("/find/id")
     Integer findSessionId(@RequestParam int type, @RequestParam int targetId);
 
+    /**
+     * 批量寻找会话的 ID
+     * @param keys 会话类型和目标 ID 组成的数组列表 [[type, targetId], ...]
+     * @return 对应会话的 ID 列表，与请求顺序一致，不存在的为 null
+     */
+    @PostMapping("/find/id/list")
+    List<Integer> findSessionIds(@RequestBody List<int[]> keys);
+
     /**
      * 更新用户在会话中最后一条消息的 ID 为最新的
      * @param sessionId 会话 ID
@@ -58,4 +74,11 @@ public interface SessionClient {
      */
     @PutMapping("/last-msg-id")
     void updateLastMsgId(@RequestParam int sessionId, @RequestParam int userId);
+
+    /**
+     * 批量更新用户在会话中最后阅读的消息 ID（只增不减）
+     * @param cursors 会话 ID、用户 ID 和消息 ID 组成的数组列表 [[sessionId, userId, msgId], ...]
+     */
+    @PutMapping("/last-msg-id/list")
+    void updateLastMsgIds(@RequestBody List<int[]> cursors);
 }
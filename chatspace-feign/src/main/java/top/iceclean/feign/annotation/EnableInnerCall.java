@@ -1,6 +1,7 @@
 package top.iceclean.feign.annotation;
 
 import org.springframework.context.annotation.Import;
+import top.iceclean.feign.batch.BatchCallPostProcessor;
 import top.iceclean.feign.itercepter.InnerCall;
 
 import java.lang.annotation.ElementType;
@@ -9,12 +10,12 @@ import java.lang.annotation.RetentionPolicy;
 import java.lang.annotation.Target;
 
 /**
- * 允许进行内部调用（加了一个管理员的头）
+ * 允许进行内部调用（加了一个管理员的头），单个 ID 的查询会被合并成批量请求
  * @author : Ice'Clean
  * @date : 2022-12-17
  */
 @Retention(RetentionPolicy.RUNTIME)
 @Target(ElementType.TYPE)
-@Import(InnerCall.class)
+@Import({InnerCall.class, BatchCallPostProcessor.class})
 public @interface EnableInnerCall {
 }
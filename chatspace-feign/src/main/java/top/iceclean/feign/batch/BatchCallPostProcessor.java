@@ -0,0 +1,137 @@
+package top.iceclean.feign.batch;
+
+import org.springframework.beans.BeansException;
+import org.springframework.beans.factory.DisposableBean;
+import org.springframework.beans.factory.config.BeanPostProcessor;
+import org.springframework.boot.context.properties.bind.Binder;
+import org.springframework.context.EnvironmentAware;
+import org.springframework.core.env.Environment;
+import top.iceclean.chatspace.infrastructure.po.User;
+import top.iceclean.feign.GroupClient;
+import top.iceclean.feign.SessionClient;
+import top.iceclean.feign.UserClient;
+
+import java.lang.reflect.InvocationHandler;
+import java.lang.reflect.InvocationTargetException;
+import java.lang.reflect.Method;
+import java.lang.reflect.Proxy;
+import java.util.*;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.function.Function;
+
+/**
+ * 合并内部调用
+ * 将远程调用接口中按单个 ID 查询的方法替换为请求合并器，短时间内的并发查询合并为一次批量请求，
+ * 调用方不需要任何修改；其余方法原样调用
+ * @author : Ice'Clean
+ * @date : 2026-10-18
+ */
+public class BatchCallPostProcessor implements BeanPostProcessor, EnvironmentAware, DisposableBean {
+    private BatchProperties properties = new BatchProperties();
+    private ScheduledExecutorService executor;
+
+    @Override
+    public void setEnvironment(Environment environment) {
+        this.properties = Binder.get(environment).bind("chatspace.feign.batch", BatchProperties.class)
+                .orElseGet(BatchProperties::new);
+    }
+
+    @Override
+    public Object postProcessAfterInitialization(Object bean, String beanName) throws BeansException {
+        if (!properties.isEnabled() || Proxy.isProxyClass(bean.getClass())
+                && Proxy.getInvocationHandler(bean) instanceof BatchHandler) {
+            return bean;
+        }
+        if (bean instanceof UserClient) {
+            UserClient userClient = (UserClient) bean;
+            return wrap(UserClient.class, bean, Collections.singletonMap(method(UserClient.class, "getUserById"),
+                    batcher(ids -> aligned(ids, userClient.getUserList(ids), User::getId))));
+        }
+        if (bean instanceof GroupClient) {
+            GroupClient groupClient = (GroupClient) bean;
+            Map<Method, RequestBatcher<?>> batchers = new HashMap<>(4);
+            batchers.put(method(GroupClient.class, "getGroupById"), batcher(groupClient::getGroupList));
+            batchers.put(method(GroupClient.class, "getZoneById"), batcher(groupClient::getZoneListById));
+            return wrap(GroupClient.class, bean, batchers);
+        }
+        if (bean instanceof SessionClient) {
+            SessionClient sessionClient = (SessionClient) bean;
+            return wrap(SessionClient.class, bean, Collections.singletonMap(method(SessionClient.class, "getSessionVO"),
+                    batcher(sessionClient::getSessionVOList)));
+        }
+        return bean;
+    }
+
+    /** 代理远程调用接口，配置了合并器的方法走合并器 */
+    private static class BatchHandler implements InvocationHandler {
+        private final Object target;
+        private final Map<Method, RequestBatcher<?>> batchers;
+
+        BatchHandler(Object target, Map<Method, RequestBatcher<?>> batchers) {
+            this.target = target;
+            this.batchers = batchers;
+        }
+
+        @Override
+        public Object invoke(Object proxy, Method method, Object[] args) throws Throwable {
+            RequestBatcher<?> batcher = batchers.get(method);
+            if (batcher != null) {
+                return batcher.get((Integer) args[0]);
+            }
+            try {
+                return method.invoke(target, args);
+            } catch (InvocationTargetException e) {
+                throw e.getCause();
+            }
+        }
+    }
+
+    private Object wrap(Class<?> clientClass, Object bean, Map<Method, RequestBatcher<?>> batchers) {
+        return Proxy.newProxyInstance(clientClass.getClassLoader(), new Class<?>[]{clientClass},
+                new BatchHandler(bean, batchers));
+    }
+
+    private <V> RequestBatcher<V> batcher(Function<List<Integer>, List<V>> bulkLoader) {
+        return new RequestBatcher<>(bulkLoader, getExecutor(), properties.getWindowMillis(), properties.getMaxSize());
+    }
+
+    private synchronized ScheduledExecutorService getExecutor() {
+        if (executor == null) {
+            executor = Executors.newScheduledThreadPool(properties.getThreads(), r -> {
+                Thread thread = new Thread(r, "feign-batch");
+                thread.setDaemon(true);
+                return thread;
+            });
+        }
+        return executor;
+    }
+
+    /** 单个 ID 的查询方法（只有一个 int 参数） */
+    private static Method method(Class<?> clientClass, String name) {
+        try {
+            return clientClass.getMethod(name, int.class);
+        } catch (NoSuchMethodException e) {
+            throw new IllegalStateException(clientClass.getSimpleName() + " 中没有方法 " + name + "(int)", e);
+        }
+    }
+
+    /** 将不保证顺序的批量结果按 ID 列表的顺序排列，不存在的为 null */
+    private static <V> List<V> aligned(List<Integer> ids, List<V> values, Function<V, Integer> idGetter) {
+        if (values == null) {
+            return Collections.emptyList();
+        }
+        Map<Integer, V> valueMap = new HashMap<>(values.size() * 2);
+        values.forEach(value -> valueMap.put(idGetter.apply(value), value));
+        List<V> result = new ArrayList<>(ids.size());
+        ids.forEach(id -> result.add(valueMap.get(id)));
+        return result;
+    }
+
+    @Override
+    public synchronized void destroy() {
+        if (executor != null) {
+            executor.shutdown();
+        }
+    }
+}
@@ -0,0 +1,49 @@
+package top.iceclean.feign.batch;
+
+/**
+ * 内部调用合并的配置（chatspace.feign.batch）
+ * @author : Ice'Clean
+ * @date : 2026-10-18
+ */
+public class BatchProperties {
+    /** 是否合并单个 ID 的内部调用 */
+    private boolean enabled = true;
+    /** 已有查询进行中时，排队的请求最多等待的时间（毫秒） */
+    private long windowMillis = 2;
+    /** 每次批量请求最多包含的 ID 数，达到后立即发出 */
+    private int maxSize = 100;
+    /** 发出批量请求的线程数 */
+    private int threads = 4;
+
+    public boolean isEnabled() {
+        return enabled;
+    }
+
+    public void setEnabled(boolean enabled) {
+        this.enabled = enabled;
+    }
+
+    public long getWindowMillis() {
+        return windowMillis;
+    }
+
+    public void setWindowMillis(long windowMillis) {
+        this.windowMillis = windowMillis;
+    }
+
+    public int getMaxSize() {
+        return maxSize;
+    }
+
+    public void setMaxSize(int maxSize) {
+        this.maxSize = maxSize;
+    }
+
+    public int getThreads() {
+        return threads;
+    }
+
+    public void setThreads(int threads) {
+        this.threads = threads;
+    }
+}
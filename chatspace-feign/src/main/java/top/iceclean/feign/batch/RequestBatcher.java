@@ -0,0 +1,142 @@
+package top.iceclean.feign.batch;
+
+import java.util.ArrayList;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.CompletionException;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.TimeUnit;
+import java.util.function.Function;
+
+/**
+ * 请求合并器
+ * 没有进行中的查询时，单个 ID 的查询立即发出，不做任何等待；已有查询进行中时，新的查询在其后排队收集，
+ * 进行中的查询完成、等待超过时间窗口或者收集的 ID 达到上限时（以先到者为准），合并成一次批量查询发出，
+ * 再把结果按 ID 分发给各个调用方，排队中重复的 ID 只查询一次
+ * @author : Ice'Clean
+ * @date : 2026-10-18
+ */
+public class RequestBatcher<V> {
+    /** 批量查询，返回的列表与 ID 列表顺序一致，不存在的为 null */
+    private final Function<List<Integer>, List<V>> bulkLoader;
+    /** 发出批量查询的线程 */
+    private final ScheduledExecutorService executor;
+    private final long windowMillis;
+    private final int maxSize;
+    /** 排队等待查询的 ID */
+    private Map<Integer, CompletableFuture<V>> pending = new LinkedHashMap<>();
+    /** 已发出但尚未完成的查询数，为 0 时排队中一定没有 ID */
+    private int inFlight;
+
+    public RequestBatcher(Function<List<Integer>, List<V>> bulkLoader, ScheduledExecutorService executor,
+                          long windowMillis, int maxSize) {
+        this.bulkLoader = bulkLoader;
+        this.executor = executor;
+        this.windowMillis = windowMillis;
+        this.maxSize = Math.max(2, maxSize);
+    }
+
+    /**
+     * 查询单个 ID，阻塞到所在批次的查询完成
+     * @param id ID
+     * @return 查询结果，不存在时为 null
+     */
+    public V get(int id) {
+        CompletableFuture<V> future;
+        Map<Integer, CompletableFuture<V>> now = null;
+        Map<Integer, CompletableFuture<V>> full = null;
+        synchronized (this) {
+            future = pending.get(id);
+            if (future == null) {
+                future = new CompletableFuture<>();
+                if (inFlight == 0) {
+                    // 没有进行中的查询，直接在调用线程上发出
+                    now = new LinkedHashMap<>(2);
+                    now.put(id, future);
+                    inFlight++;
+                } else {
+                    pending.put(id, future);
+                    if (pending.size() == 1) {
+                        // 排队的第一个请求，进行中的查询迟迟不完成时，最多等待一个窗口
+                        executor.schedule(this::flush, windowMillis, TimeUnit.MILLISECONDS);
+                    } else if (pending.size() >= maxSize) {
+                        full = takePending();
+                    }
+                }
+            }
+        }
+        if (now != null) {
+            dispatch(now);
+        } else if (full != null) {
+            Map<Integer, CompletableFuture<V>> batch = full;
+            executor.execute(() -> dispatch(batch));
+        }
+        return await(future);
+    }
+
+    /** 窗口结束，发出当前排队的所有请求 */
+    private void flush() {
+        Map<Integer, CompletableFuture<V>> batch;
+        synchronized (this) {
+            if (pending.isEmpty()) {
+                return;
+            }
+            batch = takePending();
+        }
+        dispatch(batch);
+    }
+
+    /** 取出排队的所有请求作为一次查询，需要持有本对象锁 */
+    private Map<Integer, CompletableFuture<V>> takePending() {
+        Map<Integer, CompletableFuture<V>> batch = pending;
+        pending = new LinkedHashMap<>();
+        inFlight++;
+        return batch;
+    }
+
+    /**
+     * 发出批量查询并分发结果，失败时所有调用方都收到同一个异常
+     * 完成后若有排队的请求，立即作为下一次查询发出
+     */
+    private void dispatch(Map<Integer, CompletableFuture<V>> batch) {
+        List<Integer> ids = new ArrayList<>(batch.keySet());
+        try {
+            List<V> values = bulkLoader.apply(ids);
+            for (int i = 0; i < ids.size(); i++) {
+                batch.get(ids.get(i)).complete(values != null && i < values.size() ? values.get(i) : null);
+            }
+        } catch (Throwable e) {
+            batch.values().forEach(future -> future.completeExceptionally(e));
+        } finally {
+            Map<Integer, CompletableFuture<V>> next = null;
+            synchronized (this) {
+                inFlight--;
+                if (!pending.isEmpty()) {
+                    next = takePending();
+                }
+            }
+            if (next != null) {
+                Map<Integer, CompletableFuture<V>> nextBatch = next;
+                executor.execute(() -> dispatch(nextBatch));
+            }
+        }
+    }
+
+    private static <V> V await(CompletableFuture<V> future) {
+        try {
+            return future.join();
+        } catch (CompletionException e) {
+            // 抛出批量查询原本的异常
+            Throwable cause = e.getCause();
+            if (cause instanceof RuntimeException) {
+                throw (RuntimeException) cause;
+            }
+            if (cause instanceof Error) {
+                throw (Error) cause;
+            }
+            throw e;
+        }
+    }
+}
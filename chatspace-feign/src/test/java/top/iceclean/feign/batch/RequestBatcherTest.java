@@ -0,0 +1,169 @@
+package top.iceclean.feign.batch;
+
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.Test;
+
+import java.util.*;
+import java.util.concurrent.*;
+import java.util.stream.Collectors;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+/**
+ * RequestBatcher 的合并、时间窗口、上限和异常分发测试
+ * 批量查询返回 "v" + ID，第一次查询可以被阻塞，用来让后面的请求排队
+ * @author : Ice'Clean
+ * @date : 2026-10-18
+ */
+class RequestBatcherTest {
+    /** 足够长的时间窗口，测试中不会因为窗口结束而发出 */
+    private static final long LONG_WINDOW = 60_000;
+
+    private final ScheduledExecutorService executor = Executors.newScheduledThreadPool(2);
+    private final ExecutorService callers = Executors.newCachedThreadPool();
+    /** 每次批量查询的 ID 列表 */
+    private final List<List<Integer>> batches = new CopyOnWriteArrayList<>();
+    /** 第一次批量查询开始和放行 */
+    private final CountDownLatch firstStarted = new CountDownLatch(1);
+    private final CountDownLatch releaseFirst = new CountDownLatch(1);
+
+    @AfterEach
+    void tearDown() {
+        releaseFirst.countDown();
+        executor.shutdownNow();
+        callers.shutdownNow();
+    }
+
+    @Test
+    void idleCallIsSentAtOnce() {
+        RequestBatcher<String> batcher = new RequestBatcher<>(this::load, executor, LONG_WINDOW, 10);
+        releaseFirst.countDown();
+        long start = System.nanoTime();
+        assertEquals("v1", batcher.get(1));
+        assertTrue(TimeUnit.NANOSECONDS.toMillis(System.nanoTime() - start) < 1000);
+        assertEquals(Collections.singletonList(Collections.singletonList(1)), batches);
+    }
+
+    @Test
+    void queuedCallsAreMergedAndDeduplicated() throws Exception {
+        RequestBatcher<String> batcher = new RequestBatcher<>(this::load, executor, LONG_WINDOW, 10);
+        Future<String> first = blockFirst(batcher);
+        List<Future<String>> queued = queue(batcher, 2, 3, 2, 4);
+        releaseFirst.countDown();
+
+        assertEquals("v1", first.get(5, TimeUnit.SECONDS));
+        assertEquals(Arrays.asList("v2", "v3", "v2", "v4"), results(queued));
+        assertEquals(2, batches.size());
+        assertEquals(Arrays.asList(2, 3, 4), sorted(batches.get(1)));
+    }
+
+    @Test
+    void fullQueueIsSentWithoutWaiting() throws Exception {
+        RequestBatcher<String> batcher = new RequestBatcher<>(this::load, executor, LONG_WINDOW, 3);
+        Future<String> first = blockFirst(batcher);
+        List<Future<String>> queued = queue(batcher, 2, 3, 4);
+
+        // 第一次查询还没完成，收集满 3 个 ID 后直接发出
+        assertEquals(Arrays.asList("v2", "v3", "v4"), results(queued));
+        assertEquals(Arrays.asList(2, 3, 4), sorted(batches.get(1)));
+        assertFalse(first.isDone());
+        releaseFirst.countDown();
+        assertEquals("v1", first.get(5, TimeUnit.SECONDS));
+    }
+
+    @Test
+    void windowBoundsTheWait() throws Exception {
+        RequestBatcher<String> batcher = new RequestBatcher<>(this::load, executor, 50, 10);
+        Future<String> first = blockFirst(batcher);
+        List<Future<String>> queued = queue(batcher, 2);
+
+        // 第一次查询一直不完成，排队的请求最多等一个窗口
+        assertEquals(Collections.singletonList("v2"), results(queued));
+        assertFalse(first.isDone());
+        releaseFirst.countDown();
+        assertEquals("v1", first.get(5, TimeUnit.SECONDS));
+    }
+
+    @Test
+    void failureReachesEveryCallerOfTheBatch() throws Exception {
+        IllegalStateException failure = new IllegalStateException("查询失败");
+        Set<Integer> failing = Collections.newSetFromMap(new ConcurrentHashMap<>());
+        RequestBatcher<String> batcher = new RequestBatcher<>(ids -> {
+            if (ids.stream().anyMatch(failing::contains)) {
+                batches.add(ids);
+                throw failure;
+            }
+            return load(ids);
+        }, executor, LONG_WINDOW, 10);
+        failing.add(2);
+        Future<String> first = blockFirst(batcher);
+        List<Future<String>> queued = queue(batcher, 2, 3);
+        releaseFirst.countDown();
+
+        assertEquals("v1", first.get(5, TimeUnit.SECONDS));
+        for (Future<String> future : queued) {
+            assertSame(failure, assertThrows(ExecutionException.class, () -> future.get(5, TimeUnit.SECONDS)).getCause());
+        }
+        // 失败不影响之后的查询
+        failing.clear();
+        assertEquals("v3", batcher.get(3));
+    }
+
+    @Test
+    void missingValuesAreNull() {
+        RequestBatcher<String> batcher = new RequestBatcher<>(ids -> Collections.emptyList(), executor, LONG_WINDOW, 10);
+        assertNull(batcher.get(1));
+    }
+
+    /** 批量查询，第一次查询阻塞到放行 */
+    private List<String> load(List<Integer> ids) {
+        batches.add(ids);
+        if (batches.size() == 1) {
+            firstStarted.countDown();
+            try {
+                assertTrue(releaseFirst.await(5, TimeUnit.SECONDS));
+            } catch (InterruptedException e) {
+                throw new IllegalStateException(e);
+            }
+        }
+        return ids.stream().map(id -> "v" + id).collect(Collectors.toList());
+    }
+
+    /** 发出第一次查询（ID 为 1），等到它阻塞在批量查询中 */
+    private Future<String> blockFirst(RequestBatcher<String> batcher) throws InterruptedException {
+        Future<String> first = callers.submit(() -> batcher.get(1));
+        assertTrue(firstStarted.await(5, TimeUnit.SECONDS));
+        return first;
+    }
+
+    /** 依次发出查询，每个都等到它开始等待结果后再发下一个，保证排队顺序 */
+    private List<Future<String>> queue(RequestBatcher<String> batcher, int... ids) throws InterruptedException {
+        List<Future<String>> futures = new ArrayList<>();
+        for (int id : ids) {
+            FutureTask<String> task = new FutureTask<>(() -> batcher.get(id));
+            Thread thread = new Thread(task);
+            thread.start();
+            long deadline = System.nanoTime() + TimeUnit.SECONDS.toNanos(5);
+            while (thread.getState() != Thread.State.WAITING && !task.isDone()) {
+                assertTrue(System.nanoTime() < deadline, "查询没有进入等待");
+                Thread.sleep(1);
+            }
+            futures.add(task);
+        }
+        return futures;
+    }
+
+    private static List<String> results(List<Future<String>> futures) throws Exception {
+        List<String> results = new ArrayList<>();
+        for (Future<String> future : futures) {
+            results.add(future.get(5, TimeUnit.SECONDS));
+        }
+        return results;
+    }
+
+    private static List<Integer> sorted(List<Integer> ids) {
+        List<Integer> result = new ArrayList<>(ids);
+        Collections.sort(result);
+        return result;
+    }
+}
@@ -91,4 +91,13 @@ public class FriendInnerController {
     public void updateLastMsgId(int sessionId, int userId, int latestMsgId) {
         friendService.updateLastMsgId(sessionId, userId, latestMsgId);
     }
+
+    /**
+     * 批量更新用户在好友会话中最后阅读的消息 ID（只增不减）
+     * @param cursors 好友 ID、用户 ID 和消息 ID 组成的数组列表 [[friendId, userId, msgId], ...]
+     */
+    @PutMapping("/last-msg-id/list")
+    public void updateLastMsgIds(@RequestBody List<int[]> cursors) {
+        friendService.updateLastMsgIds(cursors);
+    }
 }
@@ -82,6 +82,12 @@ public interface FriendService {
      */
     void updateLastMsgId(int friendId, int userId, int latestMsgId);
 
+    /**
+     * 在一个事务中批量更新用户在好友会话中最后阅读的消息 ID（只增不减）
+     * @param cursors 好友 ID、用户 ID 和消息 ID 组成的数组列表 [[friendId, userId, msgId], ...]
+     */
+    void updateLastMsgIds(List<int[]> cursors);
+
     /**
      * 获取用户好友列表
      * @param userId 用户 ID
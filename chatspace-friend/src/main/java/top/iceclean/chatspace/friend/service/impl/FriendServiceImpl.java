@@ -1,11 +1,17 @@
 package top.iceclean.chatspace.friend.service.impl;
 
 import com.baomidou.mybatisplus.core.conditions.query.LambdaQueryWrapper;
+import com.baomidou.mybatisplus.core.conditions.update.LambdaUpdateWrapper;
 import lombok.extern.slf4j.Slf4j;
 import org.springframework.beans.factory.annotation.Autowired;
 import org.springframework.context.annotation.Lazy;
 import org.springframework.stereotype.Service;
 import org.springframework.transaction.annotation.Transactional;
+import org.springframework.transaction.support.TransactionSynchronization;
+import org.springframework.transaction.support.TransactionSynchronizationManager;
+import top.iceclean.chatspace.cache.FriendCache;
+import top.iceclean.chatspace.cache.ReadCursorCache;
+import top.iceclean.chatspace.cache.SocialGraphCache;
 import top.iceclean.chatspace.cache.UserCache;
 import top.iceclean.chatspace.friend.mapper.FriendMapper;
 import top.iceclean.chatspace.friend.service.FriendService;
@@ -18,12 +24,11 @@ import top.iceclean.chatspace.infrastructure.po.User;
 import top.iceclean.chatspace.infrastructure.pojo.Response;
 import top.iceclean.chatspace.infrastructure.utils.DateUtils;
 import top.iceclean.chatspace.infrastructure.vo.FriendVO;
+import top.iceclean.chatspace.infrastructure.vo.UserVO;
 import top.iceclean.feign.SessionClient;
 import top.iceclean.feign.UserClient;
 
-import java.util.Arrays;
-import java.util.Date;
-import java.util.List;
+import java.util.*;
 import java.util.stream.Collectors;
 
 /**
@@ -43,9 +48,19 @@ public class FriendServiceImpl implements FriendService {
 
     /** 用户缓存服务 */
     private final UserCache userCache;
-
-    public FriendServiceImpl(UserCache userCache) {
+    /** 阅读位置缓存 */
+    private final ReadCursorCache readCursorCache;
+    /** 好友缓存 */
+    private final FriendCache friendCache;
+    /** 社交关系邻接缓存 */
+    private final SocialGraphCache socialGraphCache;
+
+    public FriendServiceImpl(UserCache userCache, ReadCursorCache readCursorCache,
+                             FriendCache friendCache, SocialGraphCache socialGraphCache) {
         this.userCache = userCache;
+        this.readCursorCache = readCursorCache;
+        this.friendCache = friendCache;
+        this.socialGraphCache = socialGraphCache;
     }
 
     @Override
@@ -61,9 +76,28 @@ public class FriendServiceImpl implements FriendService {
         // 建立双向的映射关系，并返回是否执行成功
         friendMapper.insert(new Friend(session.getId(), userId, toUserId));
         friendMapper.insert(new Friend(session.getId(), toUserId, userId));
+        // 事务提交后再清除好友列表缓存和加入好友关系，避免提交前旧列表被重新缓存或回滚后留下不存在的好友
+        afterCommit(() -> {
+            friendCache.removeFriendList(userId, toUserId);
+            socialGraphCache.addFriend(userId, toUserId);
+        });
         return true;
     }
 
+    /** 在当前事务提交后执行，没有事务时立即执行 */
+    private static void afterCommit(Runnable action) {
+        if (!TransactionSynchronizationManager.isSynchronizationActive()) {
+            action.run();
+            return;
+        }
+        TransactionSynchronizationManager.registerSynchronization(new TransactionSynchronization() {
+            @Override
+            public void afterCommit() {
+                action.run();
+            }
+        });
+    }
+
     @Override
     public Friend getFriend(int friendId, int userId) {
         return friendMapper.selectOne(new LambdaQueryWrapper<Friend>()
@@ -82,8 +116,13 @@ public class FriendServiceImpl implements FriendService {
 
     @Override
     public FriendVO getFriendVO(int friendId, int userId) {
-        // 获取用户在该会话中的好友关系
+        // 获取用户在该会话中的好友关系，阅读位置以缓存中尚未写回的为准
         Friend friend = getFriend(friendId, userId);
+        Integer lastMsgId = readCursorCache.get(friendId, userId);
+        Integer storedMsgId = friend.getLastMsgId();
+        if (lastMsgId != null && (storedMsgId == null || lastMsgId > storedMsgId)) {
+            friend.setLastMsgId(lastMsgId);
+        }
         // 获取好友的用户对象
         User friendUser = userClient.getUserById(friend.getToUserId());
         // 构造好友的响应对象
@@ -128,18 +167,51 @@ public class FriendServiceImpl implements FriendService {
 
     @Override
     public void updateLastMsgId(int friendId, int userId, int latestMsgId) {
-        // 先获得好友映射，更新完最新消息 ID 再持久化
-        Friend friend = getFriend(friendId, userId);
-        friend.setLastMsgId(latestMsgId);
-        friendMapper.updateById(friend);
+        // 一条条件更新语句完成，阅读位置只增不减
+        friendMapper.update(null, new LambdaUpdateWrapper<Friend>()
+                .set(Friend::getLastMsgId, latestMsgId)
+                .isNull(Friend::getDeleteTime)
+                .eq(Friend::getFriendId, friendId)
+                .eq(Friend::getUserId, userId)
+                .and(wrapper -> wrapper.isNull(Friend::getLastMsgId).or().lt(Friend::getLastMsgId, latestMsgId)));
+    }
+
+    @Override
+    @Transactional
+    public void updateLastMsgIds(List<int[]> cursors) {
+        cursors.forEach(cursor -> updateLastMsgId(cursor[0], cursor[1], cursor[2]));
     }
 
     @Override
     public Response getFriendList(int userId) {
-        // 获取该用户所有的好友会话
-        List<Integer> friendIdList = getFriendIdList(userId);
-        List<FriendVO> friendList = friendIdList.stream().map(friendId ->
-                getFriendVO(friendId, userId)).collect(Collectors.toList());
+        // 先从缓存获取，没有的话一次性查询出所有好友关系和好友用户
+        FriendCache.FriendList cache = friendCache.getFriendList(userId);
+        if (cache == null) {
+            List<Friend> friends = friendMapper.selectList(new LambdaQueryWrapper<Friend>()
+                    .isNull(Friend::getDeleteTime)
+                    .eq(Friend::getUserId, userId));
+            List<User> users = friends.isEmpty() ? new ArrayList<>() :
+                    userClient.getUserList(friends.stream().map(Friend::getToUserId).collect(Collectors.toList()));
+            cache = new FriendCache.FriendList(friends, users);
+            friendCache.cachedFriendList(userId, cache);
+        }
+
+        // 一次性读取所有好友的在线状态和阅读位置，然后在内存中组装
+        Map<Integer, UserVO> userMap = userCache.wrapUsers(cache.getUsers());
+        Map<Integer, Integer> cursorMap = readCursorCache.get(userId,
+                cache.getFriends().stream().map(Friend::getFriendId).collect(Collectors.toList()));
+        List<FriendVO> friendList = new ArrayList<>(cache.getFriends().size());
+        for (Friend friend : cache.getFriends()) {
+            Integer lastMsgId = cursorMap.get(friend.getFriendId());
+            Integer storedMsgId = friend.getLastMsgId();
+            if (lastMsgId != null && (storedMsgId == null || lastMsgId > storedMsgId)) {
+                friend.setLastMsgId(lastMsgId);
+            }
+            UserVO userVO = userMap.get(friend.getToUserId());
+            if (userVO != null) {
+                friendList.add(new FriendVO(userVO, friend));
+            }
+        }
         return new Response(ResponseStatusEnum.OK).addData("friendList", friendList);
     }
 
@@ -159,6 +231,8 @@ public class FriendServiceImpl implements FriendService {
             friend = getFriendByUser(toUserId, userId);
             friend.setDeleteTime(deleteTime);
             friendMapper.updateById(friend);
+            friendCache.removeFriendList(userId, toUserId);
+            socialGraphCache.removeFriend(userId, toUserId);
             // 返回删除成功
             return new Response(ResponseStatusEnum.OK).setMsg("删除好友成功");
         }
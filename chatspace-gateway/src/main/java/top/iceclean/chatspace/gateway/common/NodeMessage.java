@@ -15,8 +15,12 @@ public class NodeMessage {
     public enum Type {
         /** 用户连接重置 */
         USER_RESET,
+        /** 批量用户连接重置（数据实体为用户 ID 数组） */
+        USER_RESET_BATCH,
         /** 用户跨节点消息 */
-        USER_MESSAGE
+        USER_MESSAGE,
+        /** 批量用户跨节点消息（数据实体为 NodeCast 数组） */
+        USER_MESSAGE_BATCH
     }
     /** 消息类型 */
     Type type;
@@ -1,43 +1,98 @@
 package top.iceclean.chatspace.gateway.loadbalance;
 
-import com.alibaba.fastjson.JSON;
 import com.alibaba.nacos.api.naming.pojo.Instance;
+import io.micrometer.core.instrument.Gauge;
+import io.micrometer.core.instrument.MeterRegistry;
 import lombok.extern.slf4j.Slf4j;
-import org.springframework.amqp.core.AmqpTemplate;
 import org.springframework.cloud.client.ServiceInstance;
 import org.springframework.lang.NonNull;
 import org.springframework.stereotype.Component;
-import top.iceclean.chatspace.gateway.common.NodeMessage;
+import top.iceclean.chatspace.gateway.constant.NettyServerConst;
 
 import java.util.*;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentMap;
+import java.util.concurrent.ConcurrentNavigableMap;
+import java.util.concurrent.ConcurrentSkipListMap;
+import java.util.concurrent.atomic.AtomicInteger;
 import java.util.function.Predicate;
+import java.util.stream.Collectors;
 
 /**
- * 为 websocket 实现的一致性哈希算法
- * 哈希环目前使用红黑树实现，后续可以使用 Redis zset 实现（Gateway 集群）
+ * 为 websocket 实现的一致性哈希算法（带负载上限）
+ * 节点哈希环为不可变的有序数组，节点变更时写时复制并整体替换，路由查找无锁
+ * 每个节点的连接数不超过 max-user-num 和平均连接数乘以负载因子，满载的节点沿环跳过
+ * 后续可以使用 Redis zset 实现（Gateway 集群）
  * @author : Ice'Clean
  * @date : 2023-01-22
  */
 @Slf4j
 @Component
 public class ConsistentHashing {
-    /** 节点哈希环 (hash -> serverId) */
-    private final NavigableMap<Integer, String> serverRing;
+    /** 节点哈希环 (hash -> serverId)，只在持有本对象锁时替换 */
+    private volatile HashRing serverRing;
     /** 用户哈希环 (hash -> userEntry) */
-    private final NavigableMap<Integer, UserEntry> userRing;
+    private final ConcurrentNavigableMap<Integer, UserEntry> userRing;
+    /** 用户在用户哈希环上的位置 (userId -> hash) */
+    private final ConcurrentMap<Integer, Integer> userHashMap;
+    /** 各节点上连接的用户在用户哈希环上的位置 (serverId -> hash 集合)，负载上限会让用户落在哈希区间之外的节点 */
+    private final ConcurrentMap<String, Set<Integer>> serverUserMap;
     /** 服务实例 (serverId -> serverEntry) */
-    private final Map<String, ServerEntry> serverMap;
+    private final ConcurrentMap<String, ServerEntry> serverMap;
+    /** 节点负载 (serverId -> serverLoad) */
+    private final ConcurrentMap<String, ServerLoad> loadMap;
+    /** 所有节点的连接总数 */
+    private final AtomicInteger totalLoad = new AtomicInteger();
+
+    /** 节点负载 */
+    private static class ServerLoad {
+        /** 当前连接数 */
+        private final AtomicInteger count = new AtomicInteger();
+        /** 节点元数据中的最大连接数，不大于 0 时不限制 */
+        private volatile int maxUserNum;
+        /** 连接数指标 */
+        private Gauge gauge;
+
+        private ServerLoad(Map<String, String> metadata) {
+            updateMetadata(metadata);
+        }
+
+        private void updateMetadata(Map<String, String> metadata) {
+            String maxUserNum = metadata == null ? null : metadata.get(NettyServerConst.MAX_USER_NUM);
+            try {
+                this.maxUserNum = maxUserNum == null ? 0 : Integer.parseInt(maxUserNum.trim());
+            } catch (NumberFormatException e) {
+                log.error("节点元数据 {} 格式错误：{}", NettyServerConst.MAX_USER_NUM, maxUserNum);
+                this.maxUserNum = 0;
+            }
+        }
+
+        /** 是否还能在指定上限内受理新连接 */
+        private boolean available(int capacity) {
+            int load = count.get();
+            return (maxUserNum <= 0 || load < maxUserNum) && load < capacity;
+        }
+    }
 
     /** 虚拟节点个数 */
     private static final int VIRTUAL_NODES = 100;
-    /** RabbitMQ 用于发送用户连接重置消息 */
-    private final AmqpTemplate amqpTemplate;
+    /** 用户连接重置消息的分发器 */
+    private final UserResetDispatcher userResetDispatcher;
+    private final ConsistentHashingProperties properties;
+    private final MeterRegistry meterRegistry;
 
-    public ConsistentHashing(AmqpTemplate amqpTemplate) {
-        serverRing = new TreeMap<>();
-        userRing = new TreeMap<>();
-        serverMap = new HashMap<>();
-        this.amqpTemplate = amqpTemplate;
+    public ConsistentHashing(UserResetDispatcher userResetDispatcher, ConsistentHashingProperties properties,
+                             MeterRegistry meterRegistry) {
+        serverRing = HashRing.EMPTY;
+        userRing = new ConcurrentSkipListMap<>();
+        userHashMap = new ConcurrentHashMap<>();
+        serverUserMap = new ConcurrentHashMap<>();
+        serverMap = new ConcurrentHashMap<>();
+        loadMap = new ConcurrentHashMap<>();
+        this.userResetDispatcher = userResetDispatcher;
+        this.properties = properties;
+        this.meterRegistry = meterRegistry;
+        Gauge.builder("chatspace.gateway.connections", totalLoad, AtomicInteger::get).register(meterRegistry);
     }
 
     /**
@@ -54,33 +109,39 @@ public class ConsistentHashing {
         int uId = Integer.parseInt(userId);
         int sId = Integer.parseInt(spaceId);
 
-        // 把遍历到的节点存储起来，防止重复遍历虚拟节点
-        Set<String> visited = new HashSet<>(serverMap.size());
-        // 遍历节点哈希环，找到第一个能受理所请求空间的
-        Map.Entry<Integer, String> ringEntry = serverRing.higherEntry(userHash);
-        while (ringEntry != null) {
-            // 获取虚拟节点对应的服务节点 ID
-            String serverId = ringEntry.getValue();
-            if (!visited.contains(serverId)) {
-                visited.add(serverId);
-                // 找到能受理的节点则退出
-                ServerEntry serverEntry = serverMap.get(serverId);
-                if (serverEntry != null && serverEntry.access(sId)) {
-                    userRing.put(userHash, new UserEntry(uId, sId, serverEntry.getServerId()));
+        // 取当前哈希环的快照，从用户哈希之后开始绕环一圈，找到第一个能受理所请求空间且未满载的
+        HashRing ring = serverRing;
+        int size = ring.size();
+        int start = ring.higherIndex(userHash);
+        int capacity = capacity();
+        String rejected = null;
+        // 能受理但超过平均负载上限的第一个节点，所有节点都超过时退而使用它
+        ServerEntry overloaded = null;
+        for (int i = 0; i < size; i++) {
+            // 获取虚拟节点对应的服务节点 ID，相邻的同一节点不重复判断
+            String serverId = ring.serverIdAt((start + i) % size);
+            if (serverId.equals(rejected)) {
+                continue;
+            }
+            // 找到能受理的节点则退出
+            ServerEntry serverEntry = serverMap.get(serverId);
+            ServerLoad load = loadMap.get(serverId);
+            if (serverEntry != null && load != null && serverEntry.access(sId)) {
+                if (load.available(capacity)) {
+                    userPut(userHash, new UserEntry(uId, sId, serverEntry.getServerId()));
                     return getInstance(instances, serverEntry);
                 }
-                log.info("{} 无法受理，继续寻找下一个", serverId);
+                if (overloaded == null && load.available(Integer.MAX_VALUE)) {
+                    overloaded = serverEntry;
+                }
             }
-            // 否则继续寻找下一个节点
-            ringEntry = serverRing.higherEntry(ringEntry.getKey());
+            log.info("{} 无法受理，继续寻找下一个", serverId);
+            rejected = serverId;
         }
-
-        // 没找到的话，则尝试寻找第一个（环的概念）
-        log.info("哈希环遍历到末尾，尝试寻找第一个");
-        ServerEntry serverEntry = serverMap.get(serverRing.firstEntry().getValue());
-        if (serverEntry != null && serverEntry.access(sId)) {
-            userRing.put(userHash, new UserEntry(uId, sId, serverEntry.getServerId()));
-            return getInstance(instances, serverEntry);
+        if (overloaded != null) {
+            log.info("所有可受理节点都超过负载上限，使用 {}", overloaded.getServerId());
+            userPut(userHash, new UserEntry(uId, sId, overloaded.getServerId()));
+            return getInstance(instances, overloaded);
         }
 
         // 否则说明没有任何节点可以受理这个空间，返回空
@@ -113,7 +174,7 @@ public class ConsistentHashing {
      * Netty 节点增加
      * @param newInstances 新增的节点实例列表
      */
-    public void serverAdd(List<Instance> newInstances) {
+    public synchronized void serverAdd(List<Instance> newInstances) {
         if (newInstances.isEmpty()) {
             return;
         }
@@ -126,6 +187,11 @@ public class ConsistentHashing {
             }
             ServerEntry newEntry = new ServerEntry(instance);
             serverMap.put(id, newEntry);
+            ServerLoad load = new ServerLoad(instance.getMetadata());
+            load.gauge = Gauge.builder("chatspace.gateway.node.connections", load.count, AtomicInteger::get)
+                    .tag("server", id).register(meterRegistry);
+            loadMap.put(id, load);
+            serverUserMap.put(id, ConcurrentHashMap.newKeySet());
 
             // 节点创建成功，往哈希环中插入虚拟节点并保存他们的哈希值
             newEntry.setNodeHashList(addVirtualNode(id));
@@ -144,10 +210,9 @@ public class ConsistentHashing {
     private List<Integer> addVirtualNode(String serverId) {
         List<Integer> nodeHashList = new ArrayList<>(VIRTUAL_NODES);
         for (int i = 0; i < VIRTUAL_NODES; i++) {
-            int hash = getHash(serverId + "#" + i);
-            nodeHashList.add(hash);
-            serverRing.put(hash, serverId);
+            nodeHashList.add(getHash(serverId + "#" + i));
         }
+        serverRing = serverRing.add(serverId, nodeHashList);
         return nodeHashList;
     }
 
@@ -155,7 +220,7 @@ public class ConsistentHashing {
      * Netty 节点移除
      * @param removeInstances 移除的节点实例列表
      */
-    public void serverRemove(List<Instance> removeInstances) {
+    public synchronized void serverRemove(List<Instance> removeInstances) {
         if (removeInstances.isEmpty()) {
             return;
         }
@@ -168,12 +233,18 @@ public class ConsistentHashing {
      * @param ip 节点 IP 地址
      * @param port 节点端口号
      */
-    private void serverRemove(String ip, int port) {
+    private synchronized void serverRemove(String ip, int port) {
         String id = ip + ":" + port;
         ServerEntry entry = serverMap.remove(id);
         if (entry != null) {
             // 从哈希环上移除掉该节点的所有虚拟节点
-            serverRing.keySet().removeAll(entry.getNodeHashList());
+            serverRing = serverRing.remove(id, entry.getNodeHashList());
+            ServerLoad load = loadMap.remove(id);
+            if (load != null) {
+                totalLoad.addAndGet(-load.count.get());
+                meterRegistry.remove(load.gauge);
+            }
+            serverUserMap.remove(id);
             log.info("成功移除节点：{}", id);
         } else {
             // 没有可移除的
@@ -185,7 +256,7 @@ public class ConsistentHashing {
      * Netty 节点元数据发生改变
      * @param metadataUpdates 元数据发生改变的节点实例列表
      */
-    public void serverMetadataUpdate(List<Instance> metadataUpdates) {
+    public synchronized void serverMetadataUpdate(List<Instance> metadataUpdates) {
         if (metadataUpdates.isEmpty()) {
             return;
         }
@@ -196,14 +267,18 @@ public class ConsistentHashing {
                 log.error("更新配置的服务节点不存在：{}", id);
                 continue;
             }
+            ServerLoad load = loadMap.get(id);
+            if (load != null) {
+                load.updateMetadata(instance.getMetadata());
+            }
             // 受理空间发生改变，需要更改用户连接
             if (serverEntry.updateMetadata(instance.getMetadata())) {
                 // 处理移除的受理空间
                 Set<Integer> removeSpaces = serverEntry.getRemoveSpaces();
                 if (!removeSpaces.isEmpty()) {
                     log.info("{} 移除受理空间：{}", serverEntry.getServerId(), removeSpaces);
-                    // 若用户连接的空间从本节点移除掉了，则该用户连接需要重置
-                    userResetHandle(serverEntry, userEntry ->
+                    // 若用户连接的空间从本节点移除掉了，则该用户连接需要重置（只看连接在本节点上的用户）
+                    userResetOnServer(serverEntry, userEntry ->
                             removeSpaces.contains(userEntry.getSpaceId()));
                 }
                 // 处理新增的受理空间
@@ -221,44 +296,161 @@ public class ConsistentHashing {
     /**
      * 扫描指定节点的所有需要重置连接的候选用户
      * 即所有虚拟节点到前一个结点的所有用户
-     * 并按提供的断言筛选出需要处理的用户（新增结点、元数据更改）
+     * 并按提供的断言筛选出需要处理的用户（新增结点、新增受理空间）
      * @param server 目标服务结点
      * @param removeRule 断言规则
      */
     public void userResetHandle(@NonNull ServerEntry server, Predicate<UserEntry> removeRule) {
         // 收集需要更改的用户实体
         List<UserEntry> resetUserList = new ArrayList<>();
+        HashRing ring = serverRing;
         server.getNodeHashList().forEach(hash -> {
             // 找到该虚拟节点的前一个结点
-            Integer beforeHash = serverRing.lowerKey(hash);
-            // 收集要移除的用户连接
-            SortedMap<Integer, UserEntry> removeHash;
-            if (beforeHash == null) {
-                // 如果前一个结点为 null，则说明该结点处在最开始的那段，最后一个键的尾部和到该键的头部是需要搜索的范围
-                removeHash = userRing.tailMap(serverRing.lastKey());
-                removeHash.putAll(userRing.headMap(hash));
+            int beforeIndex = ring.lowerIndex(hash);
+            if (beforeIndex < 0) {
+                // 如果前一个结点不存在，则说明该结点处在最开始的那段，最后一个键的尾部和到该键的头部是需要搜索的范围
+                resetUsers(userRing.tailMap(ring.hashAt(ring.size() - 1)), removeRule, resetUserList);
+                resetUsers(userRing.headMap(hash), removeRule, resetUserList);
             } else {
                 // 否则，beforeHash 和 hash 为要搜索的范围
-                removeHash = userRing.subMap(beforeHash, hash);
+                resetUsers(userRing.subMap(ring.hashAt(beforeIndex), hash), removeRule, resetUserList);
             }
-            // 移除掉不需要更改的
-            removeHash.entrySet().removeIf(entry -> !removeRule.test(entry.getValue()));
-            // 收集起来准备通知，并从用户环中移除这些用户
-            resetUserList.addAll(removeHash.values());
-            userRing.keySet().removeAll(removeHash.keySet());
         });
-        // 发送用户连接更变消息到消息队列，由各个节点自行处理
-        log.info("需要更改连接的用户：{}", resetUserList);
-        for (UserEntry userEntry : resetUserList) {
-            amqpTemplate.convertAndSend("node-consumer-" + userEntry.getServerId(),
-                    JSON.toJSONString(new NodeMessage(NodeMessage.Type.USER_RESET, userEntry.getUserId(), null)));
+        dispatchReset(resetUserList);
+    }
+
+    /**
+     * 筛选出连接在指定节点上的所有需要重置连接的用户（节点移除受理空间）
+     * 通过节点的用户索引查找，包括因为负载上限落在该节点哈希区间之外的用户
+     * @param server 目标服务结点
+     * @param removeRule 断言规则
+     */
+    public void userResetOnServer(@NonNull ServerEntry server, Predicate<UserEntry> removeRule) {
+        List<UserEntry> resetUserList = new ArrayList<>();
+        Set<Integer> userHashSet = serverUserMap.get(server.getServerId());
+        if (userHashSet != null) {
+            for (Integer userHash : userHashSet) {
+                userRing.computeIfPresent(userHash, (hash, userEntry) -> {
+                    if (!userEntry.getServerId().equals(server.getServerId()) || !removeRule.test(userEntry)) {
+                        return userEntry;
+                    }
+                    userHashMap.remove(userEntry.getUserId(), hash);
+                    detach(userEntry.getServerId(), hash);
+                    resetUserList.add(userEntry);
+                    return null;
+                });
+            }
+        }
+        dispatchReset(resetUserList);
+    }
+
+    /** 按所在节点合并后交给分发器，限速分批发送到消息队列，由各个节点自行处理 */
+    private void dispatchReset(List<UserEntry> resetUserList) {
+        log.info("需要更改连接的用户：{} 个", resetUserList.size());
+        resetUserList.stream()
+                .collect(Collectors.groupingBy(UserEntry::getServerId,
+                        Collectors.mapping(UserEntry::getUserId, Collectors.toList())))
+                .forEach(userResetDispatcher::submit);
+    }
+
+    /**
+     * 将一段用户哈希环中符合规则的用户收集起来，并从用户环中移除
+     * @param range 用户哈希环的视图
+     * @param removeRule 断言规则
+     * @param resetUserList 收集结果
+     */
+    private void resetUsers(Map<Integer, UserEntry> range, Predicate<UserEntry> removeRule, List<UserEntry> resetUserList) {
+        Iterator<Map.Entry<Integer, UserEntry>> iterator = range.entrySet().iterator();
+        while (iterator.hasNext()) {
+            Map.Entry<Integer, UserEntry> entry = iterator.next();
+            UserEntry userEntry = entry.getValue();
+            if (removeRule.test(userEntry)) {
+                iterator.remove();
+                userHashMap.remove(userEntry.getUserId(), entry.getKey());
+                detach(userEntry.getServerId(), entry.getKey());
+                resetUserList.add(userEntry);
+            }
+        }
+    }
+
+    /** 记录用户的连接，用户之前在其他位置的连接记录一并清除 */
+    private void userPut(int userHash, UserEntry userEntry) {
+        UserEntry replaced = userRing.put(userHash, userEntry);
+        if (replaced != null) {
+            detach(replaced.getServerId(), userHash);
+        }
+        attach(userEntry.getServerId(), userHash);
+        Integer oldHash = userHashMap.put(userEntry.getUserId(), userHash);
+        if (oldHash != null && oldHash != userHash) {
+            userRing.computeIfPresent(oldHash, (hash, old) -> {
+                if (old.getUserId() != userEntry.getUserId()) {
+                    return old;
+                }
+                detach(old.getServerId(), hash);
+                return null;
+            });
         }
     }
 
     public void userRemove(int userId) {
-        UserEntry remove = userRing.remove(userId);
-        if (remove != null) {
-            serverMap.get(remove.getServerId()).userRemove();
+        Integer userHash = userHashMap.remove(userId);
+        if (userHash == null) {
+            return;
+        }
+        // 只移除属于该用户的连接，防止误删哈希冲突的其他用户
+        UserEntry[] removed = new UserEntry[1];
+        userRing.computeIfPresent(userHash, (hash, entry) -> {
+            if (entry.getUserId() != userId) {
+                return entry;
+            }
+            removed[0] = entry;
+            return null;
+        });
+        if (removed[0] != null) {
+            detach(removed[0].getServerId(), userHash);
+            ServerEntry serverEntry = serverMap.get(removed[0].getServerId());
+            if (serverEntry != null) {
+                serverEntry.userRemove();
+            }
+        }
+    }
+
+    /**
+     * 计算当前每个节点的连接数上限：ceil(负载因子 * (连接总数 + 1) / 节点数)
+     * 负载因子不大于 0 时不限制
+     */
+    private int capacity() {
+        double loadFactor = properties.getLoadFactor();
+        int serverNum = loadMap.size();
+        if (loadFactor <= 0 || serverNum == 0) {
+            return Integer.MAX_VALUE;
+        }
+        return (int) Math.ceil(loadFactor * (totalLoad.get() + 1) / serverNum);
+    }
+
+    /** 用户连接到节点，增加节点负载并记入节点的用户索引 */
+    private void attach(String serverId, int userHash) {
+        ServerLoad load = loadMap.get(serverId);
+        if (load != null) {
+            load.count.incrementAndGet();
+            totalLoad.incrementAndGet();
+        }
+        Set<Integer> userHashSet = serverUserMap.get(serverId);
+        if (userHashSet != null) {
+            userHashSet.add(userHash);
+        }
+    }
+
+    /** 用户从节点断开，减少节点负载并从节点的用户索引中移除 */
+    private void detach(String serverId, int userHash) {
+        ServerLoad load = loadMap.get(serverId);
+        if (load != null) {
+            load.count.decrementAndGet();
+            totalLoad.decrementAndGet();
+        }
+        Set<Integer> userHashSet = serverUserMap.get(serverId);
+        if (userHashSet != null) {
+            userHashSet.remove(userHash);
         }
     }
 
@@ -17,6 +17,12 @@ public class ConsistentHashingProperties {
     /** 需要使用一致性哈希负载算法分配服务节点的请求 */
     private List<String> websocketUrls = new ArrayList<>();
     private List<String> httpUrls = new ArrayList<>();
+    /** 单条连接重置消息最多携带的用户数 */
+    private int resetBatchSize = 200;
+    /** 每个节点每秒最多重置的用户数 */
+    private int resetRate = 1000;
+    /** 负载因子，节点连接数上限为平均连接数的该倍数，不大于 0 时不限制 */
+    private double loadFactor = 1.25;
 
     public List<String> getWebsocketUrls() {
         return websocketUrls;
@@ -33,4 +39,28 @@ public class ConsistentHashingProperties {
     public void setHttpUrls(List<String> httpUrls) {
         this.httpUrls = httpUrls;
     }
+
+    public int getResetBatchSize() {
+        return resetBatchSize;
+    }
+
+    public void setResetBatchSize(int resetBatchSize) {
+        this.resetBatchSize = resetBatchSize;
+    }
+
+    public int getResetRate() {
+        return resetRate;
+    }
+
+    public void setResetRate(int resetRate) {
+        this.resetRate = resetRate;
+    }
+
+    public double getLoadFactor() {
+        return loadFactor;
+    }
+
+    public void setLoadFactor(double loadFactor) {
+        this.loadFactor = loadFactor;
+    }
 }
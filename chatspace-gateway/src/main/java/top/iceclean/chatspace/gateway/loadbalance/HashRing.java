@@ -0,0 +1,111 @@
+package top.iceclean.chatspace.gateway.loadbalance;
+
+import java.util.*;
+
+/**
+ * 不可变的节点哈希环
+ * 虚拟节点哈希值按升序存放在 int 数组中，查找使用二分，不产生任何对象
+ * 节点变更时复制出新的哈希环，由持有方通过 volatile 引用整体替换
+ * @author : Ice'Clean
+ * @date : 2026-10-18
+ */
+final class HashRing {
+    static final HashRing EMPTY = new HashRing(new int[0], new String[0]);
+
+    /** 虚拟节点哈希值（升序） */
+    private final int[] hashes;
+    /** 虚拟节点对应的服务节点 ID，与 hashes 一一对应 */
+    private final String[] serverIds;
+
+    private HashRing(int[] hashes, String[] serverIds) {
+        this.hashes = hashes;
+        this.serverIds = serverIds;
+    }
+
+    int size() {
+        return hashes.length;
+    }
+
+    int hashAt(int index) {
+        return hashes[index];
+    }
+
+    String serverIdAt(int index) {
+        return serverIds[index];
+    }
+
+    /**
+     * 获取第一个哈希值大于指定值的虚拟节点下标
+     * @return 下标，不存在则返回 size()
+     */
+    int higherIndex(int hash) {
+        int low = 0;
+        int high = hashes.length;
+        while (low < high) {
+            int mid = (low + high) >>> 1;
+            if (hashes[mid] <= hash) {
+                low = mid + 1;
+            } else {
+                high = mid;
+            }
+        }
+        return low;
+    }
+
+    /**
+     * 获取最后一个哈希值小于指定值的虚拟节点下标
+     * @return 下标，不存在则返回 -1
+     */
+    int lowerIndex(int hash) {
+        int low = 0;
+        int high = hashes.length;
+        while (low < high) {
+            int mid = (low + high) >>> 1;
+            if (hashes[mid] < hash) {
+                low = mid + 1;
+            } else {
+                high = mid;
+            }
+        }
+        return low - 1;
+    }
+
+    /**
+     * 加入节点的虚拟节点，哈希值冲突时后加入的覆盖先加入的
+     * @return 新的哈希环
+     */
+    HashRing add(String serverId, Collection<Integer> nodeHashes) {
+        NavigableMap<Integer, String> ring = toMap();
+        nodeHashes.forEach(hash -> ring.put(hash, serverId));
+        return of(ring);
+    }
+
+    /**
+     * 移除节点的虚拟节点，已经被其他节点覆盖的哈希值不会被移除
+     * @return 新的哈希环
+     */
+    HashRing remove(String serverId, Collection<Integer> nodeHashes) {
+        NavigableMap<Integer, String> ring = toMap();
+        nodeHashes.forEach(hash -> ring.remove(hash, serverId));
+        return of(ring);
+    }
+
+    private NavigableMap<Integer, String> toMap() {
+        NavigableMap<Integer, String> ring = new TreeMap<>();
+        for (int i = 0; i < hashes.length; i++) {
+            ring.put(hashes[i], serverIds[i]);
+        }
+        return ring;
+    }
+
+    private static HashRing of(NavigableMap<Integer, String> ring) {
+        int[] hashes = new int[ring.size()];
+        String[] serverIds = new String[ring.size()];
+        int i = 0;
+        for (Map.Entry<Integer, String> entry : ring.entrySet()) {
+            hashes[i] = entry.getKey();
+            serverIds[i++] = entry.getValue();
+        }
+        return new HashRing(hashes, serverIds);
+    }
+}
@@ -0,0 +1,104 @@
+package top.iceclean.chatspace.gateway.loadbalance;
+
+import com.alibaba.fastjson.JSON;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.amqp.core.AmqpTemplate;
+import org.springframework.stereotype.Component;
+import top.iceclean.chatspace.gateway.common.NodeMessage;
+
+import javax.annotation.PreDestroy;
+import java.util.*;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentMap;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * 用户连接重置消息的分发器
+ * 需要重置的用户按所在节点合并去重，定时按限速分批取出，每个节点每批只发送一条消息，
+ * 避免节点上下线时瞬间发出大量消息并让大量用户同时重连；发送失败的批次放回待重置集合，下次分发时重试
+ * @author : Ice'Clean
+ * @date : 2026-10-18
+ */
+@Slf4j
+@Component
+public class UserResetDispatcher {
+    /** 分发间隔（毫秒） */
+    private static final long DRAIN_INTERVAL = 100;
+
+    private final AmqpTemplate amqpTemplate;
+    private final ConsistentHashingProperties properties;
+    /** 各节点待重置的用户 (serverId -> userIds) */
+    private final ConcurrentMap<String, Set<Integer>> pendingMap = new ConcurrentHashMap<>();
+    private final ScheduledExecutorService scheduler;
+
+    public UserResetDispatcher(AmqpTemplate amqpTemplate, ConsistentHashingProperties properties) {
+        this.amqpTemplate = amqpTemplate;
+        this.properties = properties;
+        this.scheduler = Executors.newSingleThreadScheduledExecutor(r -> {
+            Thread thread = new Thread(r, "user-reset-dispatcher");
+            thread.setDaemon(true);
+            return thread;
+        });
+        scheduler.scheduleWithFixedDelay(this::drain, DRAIN_INTERVAL, DRAIN_INTERVAL, TimeUnit.MILLISECONDS);
+    }
+
+    /**
+     * 提交需要重置连接的用户，同一用户重复提交只会重置一次
+     * @param serverId 用户当前所在的节点
+     * @param userIds 用户 ID 集合
+     */
+    public void submit(String serverId, Collection<Integer> userIds) {
+        if (userIds.isEmpty()) {
+            return;
+        }
+        pendingMap.compute(serverId, (id, pending) -> {
+            if (pending == null) {
+                pending = ConcurrentHashMap.newKeySet();
+            }
+            pending.addAll(userIds);
+            return pending;
+        });
+    }
+
+    /** 按限速从每个节点取出一批用户并发送 */
+    private void drain() {
+        int quota = Math.max(1, (int) (properties.getResetRate() * DRAIN_INTERVAL / 1000));
+        int batchSize = Math.max(1, properties.getResetBatchSize());
+        pendingMap.forEach((serverId, pending) -> {
+            List<Integer> batch = new ArrayList<>(Math.min(quota, batchSize));
+            Iterator<Integer> iterator = pending.iterator();
+            int sent = 0;
+            while (sent < quota && iterator.hasNext()) {
+                batch.add(iterator.next());
+                iterator.remove();
+                sent++;
+                if (batch.size() == batchSize || sent == quota || !iterator.hasNext()) {
+                    try {
+                        send(serverId, batch);
+                    } catch (RuntimeException e) {
+                        // 放回待重置集合，这个节点本轮不再发送，下次分发时重试
+                        log.error("发送连接重置消息到 {} 失败，{} 个用户稍后重试：{}", serverId, batch.size(), e.getMessage());
+                        submit(serverId, batch);
+                        return;
+                    }
+                    batch.clear();
+                }
+            }
+            // 与 submit 互斥地移除已经清空的节点
+            pendingMap.computeIfPresent(serverId, (id, set) -> set.isEmpty() ? null : set);
+        });
+    }
+
+    private void send(String serverId, List<Integer> userIds) {
+        log.info("通知 {} 重置用户连接：{}", serverId, userIds);
+        amqpTemplate.convertAndSend("node-consumer-" + serverId,
+                JSON.toJSONString(new NodeMessage(NodeMessage.Type.USER_RESET_BATCH, 0, JSON.toJSONString(userIds))));
+    }
+
+    @PreDestroy
+    public void shutdown() {
+        scheduler.shutdown();
+    }
+}
@@ -0,0 +1,82 @@
+package top.iceclean.chatspace.gateway.loadbalance;
+
+import org.openjdk.jmh.annotations.*;
+import org.openjdk.jmh.runner.Runner;
+import org.openjdk.jmh.runner.RunnerException;
+import org.openjdk.jmh.runner.options.OptionsBuilder;
+
+import java.util.*;
+import java.util.concurrent.ThreadLocalRandom;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * 哈希环查找的基准测试：不可变快照（HashRing）对比原来加锁访问的 TreeMap
+ * 多个线程同时查找，模拟网关并发路由；另外测量节点变更时复制快照的开销
+ * 运行：在 chatspace-gateway 目录下 mvn test-compile 后执行本类的 main 方法
+ * @author : Ice'Clean
+ * @date : 2026-10-18
+ */
+@BenchmarkMode(Mode.Throughput)
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+@Warmup(iterations = 3, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+@State(Scope.Benchmark)
+public class HashRingBenchmark {
+    /** 每个节点的虚拟节点数 */
+    private static final int VIRTUAL_NODES = 100;
+
+    @Param({"4", "32"})
+    private int servers;
+
+    private volatile HashRing ring;
+    private final NavigableMap<Integer, String> treeRing = new TreeMap<>();
+    private List<Integer> newServerHashes;
+
+    @Setup
+    public void setUp() {
+        Random random = new Random(20261018);
+        HashRing snapshot = HashRing.EMPTY;
+        for (int server = 0; server < servers; server++) {
+            String serverId = "10.0.0." + server + ":8080";
+            List<Integer> hashes = new ArrayList<>(VIRTUAL_NODES);
+            for (int i = 0; i < VIRTUAL_NODES; i++) {
+                hashes.add(random.nextInt());
+            }
+            snapshot = snapshot.add(serverId, hashes);
+            hashes.forEach(hash -> treeRing.put(hash, serverId));
+        }
+        ring = snapshot;
+        newServerHashes = new ArrayList<>(VIRTUAL_NODES);
+        for (int i = 0; i < VIRTUAL_NODES; i++) {
+            newServerHashes.add(random.nextInt());
+        }
+    }
+
+    @Benchmark
+    @Threads(4)
+    public String snapshotLookup() {
+        HashRing snapshot = ring;
+        int index = snapshot.higherIndex(ThreadLocalRandom.current().nextInt());
+        return snapshot.serverIdAt(index == snapshot.size() ? 0 : index);
+    }
+
+    @Benchmark
+    @Threads(4)
+    public String lockedTreeMapLookup() {
+        int hash = ThreadLocalRandom.current().nextInt();
+        synchronized (treeRing) {
+            Map.Entry<Integer, String> entry = treeRing.higherEntry(hash);
+            return (entry == null ? treeRing.firstEntry() : entry).getValue();
+        }
+    }
+
+    @Benchmark
+    public HashRing snapshotAddServer() {
+        return ring.add("10.0.1.0:8080", newServerHashes);
+    }
+
+    public static void main(String[] args) throws RunnerException {
+        new Runner(new OptionsBuilder().include(HashRingBenchmark.class.getSimpleName()).build()).run();
+    }
+}
@@ -0,0 +1,103 @@
+package top.iceclean.chatspace.gateway.loadbalance;
+
+import org.junit.jupiter.api.Test;
+
+import java.util.*;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+/**
+ * HashRing 与 TreeMap 的对照测试
+ * @author : Ice'Clean
+ * @date : 2026-10-18
+ */
+class HashRingTest {
+
+    @Test
+    void emptyRingHasNoNodes() {
+        assertEquals(0, HashRing.EMPTY.size());
+        assertEquals(0, HashRing.EMPTY.higherIndex(0));
+        assertEquals(-1, HashRing.EMPTY.lowerIndex(0));
+    }
+
+    @Test
+    void lookupsMatchTreeMap() {
+        Random random = new Random(20261018);
+        HashRing ring = HashRing.EMPTY;
+        NavigableMap<Integer, String> expected = new TreeMap<>();
+        for (int server = 0; server < 8; server++) {
+            String serverId = "10.0.0." + server + ":8080";
+            List<Integer> hashes = new ArrayList<>();
+            for (int i = 0; i < 100; i++) {
+                // 取值范围较小，让不同节点的虚拟节点发生冲突
+                hashes.add(random.nextInt(2000) - 1000);
+            }
+            ring = ring.add(serverId, hashes);
+            hashes.forEach(hash -> expected.put(hash, serverId));
+            if (server % 3 == 2) {
+                String removed = "10.0.0." + (server - 1) + ":8080";
+                List<Integer> removedHashes = new ArrayList<>();
+                expected.forEach((hash, id) -> {
+                    if (id.equals(removed)) {
+                        removedHashes.add(hash);
+                    }
+                });
+                ring = ring.remove(removed, removedHashes);
+                removedHashes.forEach(expected::remove);
+            }
+            assertSameRing(expected, ring, random);
+        }
+    }
+
+    @Test
+    void laterServerOwnsCollidingHash() {
+        HashRing ring = HashRing.EMPTY.add("a", Arrays.asList(1, 2, 3)).add("b", Arrays.asList(3, 4));
+        assertEquals(4, ring.size());
+        assertEquals("b", ring.serverIdAt(ring.higherIndex(2)));
+
+        // 被覆盖的哈希值不随原来的节点一起移除
+        ring = ring.remove("a", Arrays.asList(1, 2, 3));
+        assertEquals(2, ring.size());
+        assertEquals(3, ring.hashAt(0));
+        assertEquals("b", ring.serverIdAt(0));
+    }
+
+    @Test
+    void snapshotsAreNotModified() {
+        HashRing before = HashRing.EMPTY.add("a", Arrays.asList(10, 20));
+        HashRing after = before.add("b", Arrays.asList(15)).remove("a", Collections.singletonList(10));
+        assertEquals(2, before.size());
+        assertEquals(10, before.hashAt(0));
+        assertEquals(20, before.hashAt(1));
+        assertEquals(2, after.size());
+        assertEquals(15, after.hashAt(0));
+        assertEquals(0, HashRing.EMPTY.size());
+    }
+
+    private static void assertSameRing(NavigableMap<Integer, String> expected, HashRing ring, Random random) {
+        assertEquals(expected.size(), ring.size());
+        int index = 0;
+        for (Map.Entry<Integer, String> entry : expected.entrySet()) {
+            assertEquals(entry.getKey(), ring.hashAt(index));
+            assertEquals(entry.getValue(), ring.serverIdAt(index++));
+        }
+        for (int i = 0; i < 500; i++) {
+            // 包括已有的哈希值、两端之外和 int 边界
+            int hash = i < 4 ? new int[]{Integer.MIN_VALUE, Integer.MAX_VALUE, -1001, 1001}[i] : random.nextInt(2100) - 1050;
+            Integer higher = expected.higherKey(hash);
+            int higherIndex = ring.higherIndex(hash);
+            if (higher == null) {
+                assertEquals(ring.size(), higherIndex);
+            } else {
+                assertEquals(higher, ring.hashAt(higherIndex));
+            }
+            Integer lower = expected.lowerKey(hash);
+            int lowerIndex = ring.lowerIndex(hash);
+            if (lower == null) {
+                assertEquals(-1, lowerIndex);
+            } else {
+                assertEquals(lower, ring.hashAt(lowerIndex));
+            }
+        }
+    }
+}
@@ -3,9 +3,14 @@ package top.iceclean.chatspace.group.controller;
 import lombok.Data;
 import org.springframework.beans.factory.annotation.Autowired;
 import org.springframework.web.bind.annotation.*;
+import top.iceclean.chatspace.cache.SocialGraphCache;
 import top.iceclean.chatspace.group.server.GroupService;
+import top.iceclean.chatspace.infrastructure.auth.UserAuth;
+import top.iceclean.chatspace.infrastructure.constant.ResponseStatusEnum;
 import top.iceclean.chatspace.infrastructure.pojo.Response;
 
+import java.util.Objects;
+
 /**
  * @author : Ice'Clean
  * @date : 2022-06-09
@@ -16,6 +21,8 @@ public class GroupController {
 
     @Autowired
     private GroupService groupService;
+    @Autowired
+    private SocialGraphCache socialGraphCache;
 
     @Data
     private static class GroupNameBody {
@@ -29,7 +36,12 @@ public class GroupController {
      */
     @PostMapping("")
     public Response createGroup(GroupNameBody groupBody) {
-        return groupService.createGroup(groupBody.getGroupName());
+        Response response = groupService.createGroup(groupBody.getGroupName());
+        // 创建成功后，创建者加入了新群聊，群聊集合需要重新加载
+        if (response != null && Objects.equals(response.getStatus(), ResponseStatusEnum.OK.value())) {
+            socialGraphCache.createGroup(UserAuth.getUserId());
+        }
+        return response;
     }
 
     /**
@@ -39,6 +51,7 @@ public class GroupController {
      */
     @DeleteMapping("")
     public Response deleteGroup(int groupId) {
+        // 群组删除还未实现；实现后在鉴权通过且删除成功之后，用删除前的成员调用 socialGraphCache.dissolveGroup
         return null;
     }
 
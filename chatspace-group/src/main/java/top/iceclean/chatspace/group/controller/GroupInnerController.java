@@ -1,7 +1,9 @@
 package top.iceclean.chatspace.group.controller;
 
+import lombok.extern.slf4j.Slf4j;
 import org.springframework.beans.factory.annotation.Autowired;
 import org.springframework.web.bind.annotation.*;
+import top.iceclean.chatspace.cache.SocialGraphCache;
 import top.iceclean.chatspace.group.server.GroupService;
 import top.iceclean.chatspace.group.server.SpaceService;
 import top.iceclean.chatspace.group.server.ZoneService;
@@ -11,25 +13,31 @@ import top.iceclean.chatspace.infrastructure.po.UserGroup;
 import top.iceclean.chatspace.infrastructure.po.Zone;
 import top.iceclean.chatspace.infrastructure.vo.ZoneVO;
 
+import java.util.ArrayList;
 import java.util.List;
 import java.util.Set;
+import java.util.function.IntFunction;
 
 /**
  * 内部调用的群组服务
  * @author : Ice'Clean
  * @date : 2022-10-09
  */
+@Slf4j
 @RestController
 public class GroupInnerController {
 
     private final GroupService groupService;
     private final ZoneService zoneService;
     private final SpaceService spaceService;
+    private final SocialGraphCache socialGraphCache;
 
-    public GroupInnerController(GroupService groupService, ZoneService zoneService, SpaceService spaceService) {
+    public GroupInnerController(GroupService groupService, ZoneService zoneService,
+                                SpaceService spaceService, SocialGraphCache socialGraphCache) {
         this.groupService = groupService;
         this.zoneService = zoneService;
         this.spaceService = spaceService;
+        this.socialGraphCache = socialGraphCache;
     }
 
     /**
@@ -40,7 +48,11 @@ public class GroupInnerController {
      */
     @PutMapping("/join")
     public Boolean joinGroup(int userId, int groupId) {
-        return groupService.joinGroup(userId, groupId);
+        boolean success = groupService.joinGroup(userId, groupId);
+        if (success) {
+            socialGraphCache.joinGroup(userId, groupId);
+        }
+        return success;
     }
 
     /**
@@ -51,7 +63,11 @@ public class GroupInnerController {
      */
     @PutMapping("/exit")
     public Boolean exitGroup(int userId, int groupId) {
-        return groupService.exitGroup(userId, groupId);
+        boolean success = groupService.exitGroup(userId, groupId);
+        if (success) {
+            socialGraphCache.exitGroup(userId, groupId);
+        }
+        return success;
     }
 
     /**
@@ -64,6 +80,16 @@ public class GroupInnerController {
         return groupService.getGroupById(groupId);
     }
 
+    /**
+     * 批量通过群聊 ID 获取群聊实体
+     * @param groupIdList 群聊 ID 列表
+     * @return 群聊实体列表，与请求顺序一致，不存在的为 null
+     */
+    @PostMapping("/list")
+    public List<Group> getGroupList(@RequestBody List<Integer> groupIdList) {
+        return getEach(groupIdList, groupService::getGroupById);
+    }
+
     /**
      * 获取用户某条群聊记录
      * @param userId 用户 ID
@@ -85,6 +111,16 @@ public class GroupInnerController {
         return zoneService.getZoneById(zoneId);
     }
 
+    /**
+     * 批量通过区域 ID 获取区域实体
+     * @param zoneIdList 区域 ID 列表
+     * @return 区域实体列表，与请求顺序一致，不存在的为 null
+     */
+    @PostMapping("/zone/list")
+    public List<Zone> getZoneListById(@RequestBody List<Integer> zoneIdList) {
+        return getEach(zoneIdList, zoneService::getZoneById);
+    }
+
     /**
      * 获取所有用户管理的群聊
      * @param userId 用户 ID
@@ -126,6 +162,15 @@ public class GroupInnerController {
         groupService.updateLastMsgId(groupId, userId, latestMsgId);
     }
 
+    /**
+     * 批量更新用户在群聊会话中最后阅读的消息 ID（只增不减）
+     * @param cursors 群聊 ID、用户 ID 和消息 ID 组成的数组列表 [[groupId, userId, msgId], ...]
+     */
+    @PutMapping("/last-msg-id/list")
+    public void updateLastMsgIds(@RequestBody List<int[]> cursors) {
+        groupService.updateLastMsgIds(cursors);
+    }
+
     /**
      * 获取指定空间中指定嵌套区域的所有区域
      * @param spaceId 空间 ID
@@ -175,4 +220,18 @@ public class GroupInnerController {
     public Space getSpaceData(@PathVariable int spaceId) {
         return spaceService.getSpaceData(spaceId);
     }
+
+    /** 逐个 ID 查询，单个 ID 查询失败时该位置为 null，不影响同一批中的其他 ID */
+    private static <T> List<T> getEach(List<Integer> idList, IntFunction<T> getter) {
+        List<T> list = new ArrayList<>(idList.size());
+        for (Integer id : idList) {
+            try {
+                list.add(getter.apply(id));
+            } catch (RuntimeException e) {
+                log.warn("批量查询中 ID {} 查询失败：{}", id, e.getMessage());
+                list.add(null);
+            }
+        }
+        return list;
+    }
 }
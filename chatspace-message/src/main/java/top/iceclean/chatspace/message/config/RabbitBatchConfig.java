@@ -0,0 +1,48 @@
+package top.iceclean.chatspace.message.config;
+
+import org.springframework.amqp.core.AcknowledgeMode;
+import org.springframework.amqp.core.Queue;
+import org.springframework.amqp.rabbit.config.SimpleRabbitListenerContainerFactory;
+import org.springframework.amqp.rabbit.connection.ConnectionFactory;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.boot.autoconfigure.amqp.SimpleRabbitListenerContainerFactoryConfigurer;
+import org.springframework.context.annotation.Bean;
+import org.springframework.context.annotation.Configuration;
+
+/**
+ * RabbitMQ 批量消费配置
+ * 消费者攒够 batch-size 条消息，或者等待 batch-timeout 毫秒没有新消息时，整批交给监听方法
+ * 监听方法逐条手动确认，一条坏消息不会导致整批重新投递；无法保存的消息转入死信队列保留，由人工排查后重新投递
+ * @author : Ice'Clean
+ * @date : 2026-10-18
+ */
+@Configuration
+public class RabbitBatchConfig {
+    /** 批量监听容器工厂的名称 */
+    public static final String BATCH_LISTENER_FACTORY = "batchListenerFactory";
+    /** 聊天消息的死信队列，存放无法解析或无法保存的消息 */
+    public static final String NEW_MESSAGE_DLQ = "new-message.dlq";
+
+    @Bean
+    public Queue newMessageDeadLetterQueue() {
+        return new Queue(NEW_MESSAGE_DLQ, true);
+    }
+
+    @Bean(BATCH_LISTENER_FACTORY)
+    public SimpleRabbitListenerContainerFactory batchListenerFactory(
+            SimpleRabbitListenerContainerFactoryConfigurer configurer, ConnectionFactory connectionFactory,
+            @Value("${chatspace.message.batch-size:200}") int batchSize,
+            @Value("${chatspace.message.batch-timeout:100}") long batchTimeout) {
+        SimpleRabbitListenerContainerFactory factory = new SimpleRabbitListenerContainerFactory();
+        configurer.configure(factory, connectionFactory);
+        factory.setBatchListener(true);
+        factory.setConsumerBatchEnabled(true);
+        factory.setBatchSize(batchSize);
+        factory.setReceiveTimeout(batchTimeout);
+        // 预取数量至少要能装下一整批
+        factory.setPrefetchCount(batchSize);
+        // 由监听方法在事务提交后逐条确认或拒绝
+        factory.setAcknowledgeMode(AcknowledgeMode.MANUAL);
+        return factory;
+    }
+}
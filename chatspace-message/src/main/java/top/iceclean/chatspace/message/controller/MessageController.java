@@ -16,6 +16,10 @@ import top.iceclean.chatspace.message.service.MessageService;
 @RequestMapping("/session")
 public class MessageController {
 
+    /** 游标方式默认和最多获取的历史消息条数 */
+    private static final int HISTORY_LIMIT = 20;
+    private static final int MAX_HISTORY_LIMIT = 100;
+
     @Autowired
     private MessageService messageService;
 
@@ -23,11 +27,16 @@ public class MessageController {
      * 获取用户在某个会话的历史消息
      * @param userId 用户 ID
      * @param sessionId 会话 ID
-     * @param page 聊天记录的页数
+     * @param page 聊天记录的页数，不传时使用游标方式获取
+     * @param before 游标方式：只获取消息 ID 小于该值的消息，不传时获取最新的消息
+     * @param limit 游标方式：获取的条数
      * @return 历史消息列表
      */
     @GetMapping("/history")
-    public Object getChatHistory(int userId, int sessionId, int page) {
-        return messageService.getChatHistory(userId, sessionId, page);
+    public Object getChatHistory(int userId, int sessionId, Integer page, Integer before, Integer limit) {
+        if (page != null) {
+            return messageService.getChatHistory(userId, sessionId, page);
+        }
+        return messageService.getChatHistory(userId, sessionId, before, limit == null ? HISTORY_LIMIT : Math.max(1, Math.min(limit, MAX_HISTORY_LIMIT)));
     }
 }
@@ -0,0 +1,77 @@
+package top.iceclean.chatspace.message.cursor;
+
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.stereotype.Component;
+import top.iceclean.chatspace.cache.ReadCursorCache;
+import top.iceclean.feign.SessionClient;
+
+import javax.annotation.PreDestroy;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * 阅读位置的后台写回任务
+ * 定期从阅读位置缓存中取出被推进过的位置，同一位置在两次写回之间无论推进多少次都只写回一次；
+ * 每次取出的一批位置连同取出时的消息 ID 通过一次请求写回，数据库中的位置只增不减
+ * @author : Ice'Clean
+ * @date : 2026-10-18
+ */
+@Slf4j
+@Component
+public class ReadCursorFlusher {
+    /** 每次取出的最大位置个数 */
+    private static final int FLUSH_BATCH = 500;
+
+    private final ReadCursorCache readCursorCache;
+    private final SessionClient sessionClient;
+    private final ScheduledExecutorService scheduler;
+
+    public ReadCursorFlusher(ReadCursorCache readCursorCache, SessionClient sessionClient,
+                             @Value("${chatspace.message.cursor-flush-interval:1000}") long flushInterval) {
+        this.readCursorCache = readCursorCache;
+        this.sessionClient = sessionClient;
+        this.scheduler = Executors.newSingleThreadScheduledExecutor(r -> {
+            Thread thread = new Thread(r, "read-cursor-flusher");
+            thread.setDaemon(true);
+            return thread;
+        });
+        scheduler.scheduleWithFixedDelay(this::flush, flushInterval, flushInterval, TimeUnit.MILLISECONDS);
+    }
+
+    /** 写回所有脏的阅读位置 */
+    private void flush() {
+        try {
+            List<ReadCursorCache.Cursor> cursors;
+            do {
+                cursors = readCursorCache.pollDirty(FLUSH_BATCH);
+                if (cursors.isEmpty()) {
+                    return;
+                }
+                List<int[]> cursorList = new ArrayList<>(cursors.size());
+                cursors.forEach(cursor -> cursorList.add(
+                        new int[]{cursor.getSessionId(), cursor.getUserId(), cursor.getMsgId()}));
+                try {
+                    sessionClient.updateLastMsgIds(cursorList);
+                } catch (RuntimeException e) {
+                    // 留到下一轮再写回
+                    log.error("{} 个阅读位置写回失败，等待下一轮重试：{}", cursors.size(), e.getMessage());
+                    readCursorCache.markDirty(cursors);
+                    return;
+                }
+            } while (cursors.size() == FLUSH_BATCH);
+        } catch (RuntimeException e) {
+            log.error("阅读位置写回异常：{}", e.getMessage());
+        }
+    }
+
+    @PreDestroy
+    public void shutdown() {
+        scheduler.shutdown();
+        // 关闭前尽量把剩余的位置写回
+        flush();
+    }
+}
@@ -4,11 +4,18 @@ import com.baomidou.mybatisplus.core.mapper.BaseMapper;
 import org.apache.ibatis.annotations.Mapper;
 import top.iceclean.chatspace.infrastructure.po.Message;
 
+import java.util.List;
+
 /**
  * @author : Ice'Clean
  * @date : 2022-05-25
  */
 @Mapper
 public interface MessageMapper extends BaseMapper<Message> {
-
+    /**
+     * 使用一条多行 INSERT 批量插入消息
+     * @param entityList 消息列表
+     * @return 插入的行数
+     */
+    int insertBatchSomeColumn(List<Message> entityList);
 }
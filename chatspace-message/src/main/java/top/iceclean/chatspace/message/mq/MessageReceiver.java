@@ -1,31 +1,138 @@
 package top.iceclean.chatspace.message.mq;
 
 import com.alibaba.fastjson.JSON;
+import com.rabbitmq.client.Channel;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.amqp.AmqpException;
+import org.springframework.amqp.core.AmqpTemplate;
+import org.springframework.amqp.core.Message;
 import org.springframework.amqp.rabbit.annotation.Queue;
 import org.springframework.amqp.rabbit.annotation.RabbitListener;
+import org.springframework.dao.DataIntegrityViolationException;
 import org.springframework.stereotype.Component;
 import top.iceclean.chatspace.infrastructure.dto.MessageDTO;
+import top.iceclean.chatspace.message.config.RabbitBatchConfig;
 import top.iceclean.chatspace.message.service.MessageService;
 
+import java.io.IOException;
+import java.nio.charset.StandardCharsets;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
+
 /**
  * 消息队列的消息接收者器
  * @author : Ice'Clean
  * @date : 2022-12-3
  */
+@Slf4j
 @Component
 public class MessageReceiver {
 
+    /** 转入死信队列时记录原因的消息头 */
+    private static final String REJECT_REASON_HEADER = "x-reject-reason";
+
     private final MessageService messageService;
+    private final AmqpTemplate amqpTemplate;
 
-    public MessageReceiver(MessageService messageService) {
+    public MessageReceiver(MessageService messageService, AmqpTemplate amqpTemplate) {
         this.messageService = messageService;
+        this.amqpTemplate = amqpTemplate;
     }
     /**
-     * 聊天消息保存消息
-     * @param msg 消息
+     * 聊天消息批量保存
+     * 每条消息单独解析，无法解析的消息转入死信队列；
+     * 其余消息在同一个事务中写入，提交后逐条确认；整批写入失败时逐条重新写入，自身有问题的消息转入死信队列，
+     * 遇到数据库不可用之类的临时故障时，剩下的消息重新投递
+     * @param msgList 消息列表
+     * @param channel 用于手动确认的通道
+     */
+    @RabbitListener(queuesToDeclare = @Queue("new-message"), containerFactory = RabbitBatchConfig.BATCH_LISTENER_FACTORY)
+    public void saveMessages(List<Message> msgList, Channel channel) throws IOException {
+        List<Message> validList = new ArrayList<>(msgList.size());
+        List<MessageDTO> messageDTOList = new ArrayList<>(msgList.size());
+        for (Message msg : msgList) {
+            MessageDTO messageDTO = parse(msg);
+            if (messageDTO == null) {
+                reject(msg, channel, "无法解析");
+                continue;
+            }
+            validList.add(msg);
+            messageDTOList.add(messageDTO);
+        }
+        if (messageDTOList.isEmpty()) {
+            return;
+        }
+
+        try {
+            messageService.saveMessages(messageDTOList);
+        } catch (RuntimeException e) {
+            log.warn("{} 条消息批量写入失败，改为逐条写入：{}", messageDTOList.size(), e.getMessage());
+            saveOneByOne(messageDTOList, validList, channel);
+            return;
+        }
+        for (Message msg : validList) {
+            channel.basicAck(msg.getMessageProperties().getDeliveryTag(), false);
+        }
+    }
+
+    /** 逐条写入，每条消息在自己的事务中提交后确认 */
+    private void saveOneByOne(List<MessageDTO> messageDTOList, List<Message> msgList, Channel channel) throws IOException {
+        for (int i = 0; i < messageDTOList.size(); i++) {
+            MessageDTO messageDTO = messageDTOList.get(i);
+            Message msg = msgList.get(i);
+            try {
+                messageService.saveMessages(Collections.singletonList(messageDTO));
+                channel.basicAck(msg.getMessageProperties().getDeliveryTag(), false);
+            } catch (DataIntegrityViolationException | NullPointerException | IllegalArgumentException e) {
+                // 消息自身的数据有问题，重新投递也不会成功，转入死信队列保留
+                log.warn("消息 {} 写入失败，转入死信队列：{}", messageDTO, e.getMessage());
+                reject(msg, channel, e.getClass().getSimpleName() + ": " + e.getMessage());
+            } catch (RuntimeException e) {
+                // 临时故障，剩下的消息全部重新投递
+                log.error("消息写入失败，剩余 {} 条消息重新投递：{}", messageDTOList.size() - i, e.getMessage());
+                for (int j = i; j < msgList.size(); j++) {
+                    channel.basicNack(msgList.get(j).getMessageProperties().getDeliveryTag(), false, true);
+                }
+                return;
+            }
+        }
+    }
+
+    /**
+     * 将消息转入死信队列后确认，转入失败时重新投递，消息不会丢失
+     * @param msg 原始消息
+     * @param channel 用于手动确认的通道
+     * @param reason 拒绝的原因，记录在消息头中
+     */
+    private void reject(Message msg, Channel channel, String reason) throws IOException {
+        long tag = msg.getMessageProperties().getDeliveryTag();
+        try {
+            msg.getMessageProperties().setHeader(REJECT_REASON_HEADER, reason);
+            amqpTemplate.send(RabbitBatchConfig.NEW_MESSAGE_DLQ, msg);
+        } catch (AmqpException e) {
+            log.error("消息转入死信队列失败，重新投递：{}", e.getMessage());
+            channel.basicNack(tag, false, true);
+            return;
+        }
+        channel.basicAck(tag, false);
+    }
+
+    /**
+     * 解析一条消息
+     * @return 消息接收对象，无法解析或缺少会话信息时返回 null
      */
-    @RabbitListener(queuesToDeclare = @Queue("new-message"))
-    public void saveMessage(String msg) {
-        messageService.saveMessage(JSON.parseObject(msg, MessageDTO.class));
+    private MessageDTO parse(Message msg) {
+        String body = new String(msg.getBody(), StandardCharsets.UTF_8);
+        try {
+            MessageDTO messageDTO = JSON.parseObject(body, MessageDTO.class);
+            if (messageDTO != null && messageDTO.getSessionType() != null) {
+                return messageDTO;
+            }
+        } catch (RuntimeException e) {
+            log.warn("消息解析失败：{}", e.getMessage());
+        }
+        log.warn("无效的消息：{}", body);
+        return null;
     }
 }
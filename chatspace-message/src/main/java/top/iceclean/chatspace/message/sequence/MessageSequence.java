@@ -0,0 +1,99 @@
+package top.iceclean.chatspace.message.sequence;
+
+import com.baomidou.mybatisplus.core.conditions.query.QueryWrapper;
+import lombok.extern.slf4j.Slf4j;
+import org.redisson.api.RScript;
+import org.redisson.api.RedissonClient;
+import org.redisson.client.codec.StringCodec;
+import org.springframework.stereotype.Component;
+import top.iceclean.chatspace.infrastructure.po.Message;
+import top.iceclean.chatspace.message.mapper.MessageMapper;
+
+import java.util.Collections;
+
+/**
+ * 会话消息 ID 分配器
+ * 每个会话在 Redis 中维护一个自增序列，首次使用时用数据库中的最大消息 ID 加上一段安全间隔初始化，
+ * 之后分配 ID 只需要一次 INCRBY，不再先查后写，多个消费者并发保存消息也不会重复；
+ * 序列丢失（过期、清除或 Redis 故障）后，已经分配给还未提交的批次的 ID 不在数据库中，
+ * 跳过一段间隔再继续分配，保证不会与这些 ID 重复（消息 ID 因此可能不连续）
+ * @author : Ice'Clean
+ * @date : 2026-10-18
+ */
+@Slf4j
+@Component
+public class MessageSequence {
+    /** 会话消息序列，后接会话 ID */
+    private static final String MESSAGE_SEQ = "message-seq:";
+    /** 序列存在时自增并返回，不存在时返回 -1（需要先初始化） */
+    private static final String INCR_IF_EXISTS =
+            "if redis.call('exists', KEYS[1]) == 0 then return -1 end " +
+            "return redis.call('incrby', KEYS[1], ARGV[1])";
+    /** 初始化时在数据库最大消息 ID 之上跳过的间隔，需要远大于同一会话同时在途（已分配未提交）的消息数 */
+    private static final int RESEED_GAP = 10000;
+
+    private final RedissonClient redissonClient;
+    private final MessageMapper messageMapper;
+
+    public MessageSequence(RedissonClient redissonClient, MessageMapper messageMapper) {
+        this.redissonClient = redissonClient;
+        this.messageMapper = messageMapper;
+    }
+
+    /**
+     * 为会话分配下一个消息 ID
+     * @param sessionId 会话 ID
+     * @return 新的消息 ID
+     */
+    public int next(int sessionId) {
+        return next(sessionId, 1);
+    }
+
+    /**
+     * 为会话一次性分配连续的一段消息 ID
+     * @param sessionId 会话 ID
+     * @param count 分配的个数
+     * @return 这一段中的第一个消息 ID
+     */
+    public int next(int sessionId, int count) {
+        String key = MESSAGE_SEQ + sessionId;
+        Long last = incrIfExists(key, count);
+        if (last < 0) {
+            // 序列还不存在，用数据库中的最大值初始化，并发初始化时只有一个会成功
+            redissonClient.getAtomicLong(key).compareAndSet(0, reseedValue(sessionId));
+            last = redissonClient.getAtomicLong(key).addAndGet(count);
+        }
+        return (int) (last - count + 1);
+    }
+
+    /**
+     * 获取会话当前已分配的最后一个消息 ID
+     * @param sessionId 会话 ID
+     * @return 最后一个消息 ID，没有消息时为 0
+     */
+    public int current(int sessionId) {
+        String key = MESSAGE_SEQ + sessionId;
+        Long last = incrIfExists(key, 0);
+        if (last < 0) {
+            redissonClient.getAtomicLong(key).compareAndSet(0, reseedValue(sessionId));
+            last = redissonClient.getAtomicLong(key).get();
+        }
+        return last.intValue();
+    }
+
+    private Long incrIfExists(String key, int count) {
+        return redissonClient.getScript(StringCodec.INSTANCE).eval(RScript.Mode.READ_WRITE, INCR_IF_EXISTS,
+                RScript.ReturnType.INTEGER, Collections.singletonList(key), String.valueOf(count));
+    }
+
+    /** 序列的初始值：数据库中的最大消息 ID 加上安全间隔，会话还没有消息时从 0 开始 */
+    private int reseedValue(int sessionId) {
+        Message message = messageMapper.selectOne(new QueryWrapper<Message>()
+                .select("max(msg_id) as msg_id")
+                .eq("session_id", sessionId));
+        int maxMsgId = message == null || message.getMsgId() == null ? 0 : message.getMsgId();
+        int reseed = maxMsgId == 0 ? 0 : maxMsgId + RESEED_GAP;
+        log.info("初始化会话 {} 的消息序列：{}（数据库中最大为 {}）", sessionId, reseed, maxMsgId);
+        return reseed;
+    }
+}
@@ -6,6 +6,8 @@ import top.iceclean.chatspace.infrastructure.pojo.Response;
 import top.iceclean.chatspace.infrastructure.vo.MessageVO;
 import top.iceclean.feign.MessageClient;
 
+import java.util.List;
+
 /**
  * @author : Ice'Clean
  * @date : 2022-05-25
@@ -21,6 +23,16 @@ public interface MessageService extends MessageClient {
      */
     Response getChatHistory(int userId, int sessionId, int page);
 
+    /**
+     * 使用游标获取用户在某个接收域的历史消息
+     * @param userId 用户 ID
+     * @param sessionId 会话 ID
+     * @param before 只获取消息 ID 小于该值的消息，为空时获取最新的消息
+     * @param limit 获取的条数
+     * @return 历史消息列表，以及下一页的游标
+     */
+    Response getChatHistory(int userId, int sessionId, Integer before, int limit);
+
     /**
      * 将消息对象转化成消息响应对象
      * @param message 消息对象
@@ -37,6 +49,12 @@ public interface MessageService extends MessageClient {
      */
     void saveMessage(MessageDTO messageDTO);
 
+    /**
+     * 将一批消息接收对象在一个事务中持久化
+     * @param messageDTOList 消息接收对象列表
+     */
+    void saveMessages(List<MessageDTO> messageDTOList);
+
     /**
      * 获取指定会话最后一条消息的 ID
      * @param sessionId 会话 ID
@@ -1,11 +1,16 @@
 package top.iceclean.chatspace.message.service.impl;
 
 import com.baomidou.mybatisplus.core.conditions.query.LambdaQueryWrapper;
-import com.baomidou.mybatisplus.core.conditions.query.QueryWrapper;
 import com.baomidou.mybatisplus.extension.plugins.pagination.Page;
+import lombok.extern.slf4j.Slf4j;
 import org.springframework.transaction.annotation.Transactional;
+import org.springframework.transaction.support.TransactionSynchronization;
+import org.springframework.transaction.support.TransactionSynchronizationManager;
+import top.iceclean.chatspace.cache.MessageCache;
+import top.iceclean.chatspace.cache.ReadCursorCache;
 import top.iceclean.chatspace.cache.UserCache;
 import top.iceclean.chatspace.message.mapper.MessageMapper;
+import top.iceclean.chatspace.message.sequence.MessageSequence;
 import org.springframework.beans.factory.annotation.Autowired;
 import org.springframework.stereotype.Service;
 import top.iceclean.chatspace.message.service.MessageService;
@@ -20,16 +25,14 @@ import top.iceclean.chatspace.infrastructure.vo.UserVO;
 import top.iceclean.feign.SessionClient;
 import top.iceclean.feign.UserClient;
 
-import java.util.ArrayList;
-import java.util.Collections;
-import java.util.List;
-import java.util.PriorityQueue;
+import java.util.*;
 import java.util.stream.Collectors;
 
 /**
  * @author : Ice'Clean
  * @date : 2022-05-25
  */
+@Slf4j
 @Service
 public class MessageServiceImpl implements MessageService {
     @Autowired
@@ -40,9 +43,16 @@ public class MessageServiceImpl implements MessageService {
     private SessionClient sessionClient;
 
     private final UserCache userCache;
+    private final MessageCache messageCache;
+    private final ReadCursorCache readCursorCache;
+    private final MessageSequence messageSequence;
 
-    public MessageServiceImpl(UserCache userCache) {
+    public MessageServiceImpl(UserCache userCache, MessageCache messageCache,
+                              ReadCursorCache readCursorCache, MessageSequence messageSequence) {
         this.userCache = userCache;
+        this.messageCache = messageCache;
+        this.readCursorCache = readCursorCache;
+        this.messageSequence = messageSequence;
     }
 
     @Override
@@ -56,8 +66,8 @@ public class MessageServiceImpl implements MessageService {
         ).getRecords();
         // 这里按时间倒序差，但是前端是顺序插，所以还得翻转一下
         Collections.reverse(messageList);
-        // 将用户在该会话中的最后阅读消息 ID 更新为最新的
-        sessionClient.updateLastMsgId(sessionId, userId);
+        // 将用户在该会话中的最后阅读消息 ID 推进到本页最新的消息，由后台合并写回
+        advanceReadCursor(sessionId, userId, messageList);
 
         // 将历史信息封装成响应对象并返回
         List<MessageVO> historyList = toListMessageVO(messageList, userId, false);
@@ -65,6 +75,35 @@ public class MessageServiceImpl implements MessageService {
                 .addData("historyList", historyList);
     }
 
+    @Override
+    public Response getChatHistory(int userId, int sessionId, Integer before, int limit) {
+        // 获取最新的消息时，先尝试从会话的最近消息缓存中获取
+        List<Message> messageList = before == null ? messageCache.getHotMessages(sessionId, limit) : null;
+        if (messageList == null) {
+            // 按 (session_id, msg_id) 索引向前查找，不需要偏移和总数统计
+            messageList = messageMapper.selectList(new LambdaQueryWrapper<Message>()
+                    .eq(Message::getSessionId, sessionId)
+                    .lt(before != null, Message::getMsgId, before)
+                    .orderByDesc(Message::getMsgId)
+                    .last("limit " + limit));
+        }
+        // 下一页的游标为本页最小的消息 ID，不足一页说明没有更早的消息了
+        Integer nextBefore = messageList.isEmpty() ? null : messageList.get(messageList.size() - 1).getMsgId();
+        boolean hasMore = messageList.size() == limit;
+        // 这里按消息 ID 倒序查，但是前端是顺序插，所以还得翻转一下
+        messageList = new ArrayList<>(messageList);
+        Collections.reverse(messageList);
+        // 将用户在该会话中的最后阅读消息 ID 推进到本页最新的消息，由后台合并写回
+        advanceReadCursor(sessionId, userId, messageList);
+
+        // 将历史信息封装成响应对象并返回
+        List<MessageVO> historyList = toListMessageVO(messageList, userId, false);
+        return new Response(ResponseStatusEnum.OK)
+                .addData("historyList", historyList)
+                .addData("before", nextBefore)
+                .addData("hasMore", hasMore);
+    }
+
     @Override
     public MessageVO toMessageVO(Message message, int userId, boolean info) {
         // 获取会话响应对象（根据是否需要详细信息获取会话响应对象）
@@ -90,22 +129,90 @@ public class MessageServiceImpl implements MessageService {
         }
         // 将 DTO 对象转化为实体类
         Message message = new Message(messageDTO, sessionId);
-        // 设置该消息的 ID 和创建时间，消息 ID 为当前会话最大的 ID 自增 1
-        message.setMsgId(getLastMsgId(sessionId) + 1);
+        // 设置该消息的 ID 和创建时间，消息 ID 由会话的消息序列分配
+        message.setMsgId(messageSequence.next(sessionId));
         message.setCreateTime(DateUtils.getDateTime());
         messageMapper.insert(message);
+        pushHotMessagesAfterCommit(Collections.singletonList(message));
     }
 
     @Override
-    public int getLastMsgId(int sessionId) {
-        // TODO 考虑先从缓存拿
-        Message message = messageMapper.selectOne(new QueryWrapper<Message>()
-                .select("max(msg_id) as msg_id")
-                .eq("session_id", sessionId));
-        if (message == null) {
-            return 0;
+    @Transactional
+    public void saveMessages(List<MessageDTO> messageDTOList) {
+        if (messageDTOList.isEmpty()) {
+            return;
+        }
+        // 一次性查询出所有消息所在的会话（相同会话只查一次）
+        Map<String, int[]> keyMap = new LinkedHashMap<>();
+        messageDTOList.forEach(dto -> keyMap.putIfAbsent(sessionKey(dto),
+                new int[]{dto.getSessionType().value(), dto.getTargetId()}));
+        List<Integer> sessionIds = sessionClient.findSessionIds(new ArrayList<>(keyMap.values()));
+        Map<String, Integer> sessionIdMap = new HashMap<>(keyMap.size() * 2);
+        int index = 0;
+        for (String key : keyMap.keySet()) {
+            sessionIdMap.put(key, sessionIds.get(index++));
+        }
+
+        // 将 DTO 对象转化为实体类，按会话分组（保持到达顺序）
+        Map<Integer, List<Message>> sessionMessageMap = new LinkedHashMap<>();
+        for (MessageDTO messageDTO : messageDTOList) {
+            Integer sessionId = sessionIdMap.get(sessionKey(messageDTO));
+            if (sessionId == null) {
+                log.warn("{} 消息对应的会话不存在！", messageDTO);
+                continue;
+            }
+            Message message = new Message(messageDTO, sessionId);
+            message.setCreateTime(DateUtils.getDateTime());
+            sessionMessageMap.computeIfAbsent(sessionId, id -> new ArrayList<>()).add(message);
+        }
+        if (sessionMessageMap.isEmpty()) {
+            return;
+        }
+
+        // 每个会话一次性分配一段连续的消息 ID，然后一条语句全部写入
+        List<Message> messageList = new ArrayList<>(messageDTOList.size());
+        sessionMessageMap.forEach((sessionId, messages) -> {
+            int msgId = messageSequence.next(sessionId, messages.size());
+            for (Message message : messages) {
+                message.setMsgId(msgId++);
+            }
+            messageList.addAll(messages);
+        });
+        messageMapper.insertBatchSomeColumn(messageList);
+        pushHotMessagesAfterCommit(messageList);
+    }
+
+    /**
+     * 将阅读位置推进到本页中最大的消息 ID
+     * 只推进到用户真正收到的消息，不使用序列当前分配到的 ID（其中可能有还在批次中或未提交的消息）
+     */
+    private void advanceReadCursor(int sessionId, int userId, List<Message> messageList) {
+        messageList.stream().mapToInt(Message::getMsgId).max()
+                .ifPresent(msgId -> readCursorCache.advance(sessionId, userId, msgId));
+    }
+
+    /** 事务提交后再将消息放入会话的最近消息缓存，避免缓存中出现回滚掉的消息 */
+    private void pushHotMessagesAfterCommit(List<Message> messageList) {
+        if (!TransactionSynchronizationManager.isSynchronizationActive()) {
+            messageCache.pushHotMessages(messageList);
+            return;
         }
-        return message.getMsgId();
+        TransactionSynchronizationManager.registerSynchronization(new TransactionSynchronization() {
+            @Override
+            public void afterCommit() {
+                messageCache.pushHotMessages(messageList);
+            }
+        });
+    }
+
+    /** 会话的唯一标识（type-targetId） */
+    private static String sessionKey(MessageDTO messageDTO) {
+        return messageDTO.getSessionType().value() + "-" + messageDTO.getTargetId();
+    }
+
+    @Override
+    public int getLastMsgId(int sessionId) {
+        return messageSequence.current(sessionId);
     }
 
     /**
@@ -116,8 +223,25 @@ public class MessageServiceImpl implements MessageService {
      * @return 消息响应实体列表
      */
     public List<MessageVO> toListMessageVO(List<Message> messageList, int userId, boolean info) {
+        if (messageList.isEmpty()) {
+            return new ArrayList<>();
+        }
+        // 每个会话只获取一次会话响应对象（历史消息都属于同一个会话）
+        Map<Integer, SessionVO> sessionMap = new HashMap<>(4);
+        messageList.forEach(message -> sessionMap.computeIfAbsent(message.getSessionId(), sessionId ->
+                info ? sessionClient.getSessionVO(sessionId, userId) : sessionClient.getSessionVO(sessionId)));
+
+        // 所有发送者一次性获取，并一次性读取在线状态
+        List<Integer> senderIds = messageList.stream().map(Message::getSenderId).distinct().collect(Collectors.toList());
+        Map<Integer, UserVO> userMap = userCache.wrapUsers(userClient.getUserList(senderIds));
+
+        // 使用查询好的会话和用户构建消息响应对象
         List<MessageVO> list = new ArrayList<>(messageList.size());
-        messageList.forEach(message -> list.add(toMessageVO(message, userId, info)));
+        for (Message message : messageList) {
+            MessageVO messageVO = new MessageVO(message, sessionMap.get(message.getSessionId()),
+                    userMap.get(message.getSenderId()), userId == message.getSenderId());
+            list.add(messageVO.shortTime(false));
+        }
         return list;
     }
 }
@@ -4,6 +4,7 @@ import lombok.AllArgsConstructor;
 import org.springframework.beans.factory.annotation.Autowired;
 import org.springframework.stereotype.Component;
 import top.iceclean.chatspace.cache.*;
+import top.iceclean.chatspace.cache.collection.IntSet;
 import top.iceclean.chatspace.infrastructure.constant.MessageType;
 import top.iceclean.chatspace.infrastructure.constant.SessionType;
 import top.iceclean.chatspace.infrastructure.dto.MessageDTO;
@@ -25,9 +26,9 @@ public class DataGenerator {
     public interface Generator {
         /**
          * 获取该消息的目标用户 ID
-         * @return 用户 ID 集合
+         * @return 用户 ID 集合（基本类型集合，遍历时不装箱）
          */
-        Set<Integer> target();
+        IntSet target();
 
         /**
          * 生成发送消息所需的对象数据
@@ -35,11 +36,26 @@ public class DataGenerator {
          * @return 消息对象数据
          */
         Object exec(int toUserId);
+
+        /**
+         * 消息内容是否只区分“自己”和“他人”两种（与具体的目标用户无关）
+         * 是的话广播时最多只需要编码两次
+         * @return 默认为 false，需要逐个目标用户生成
+         */
+        default boolean shared() {
+            return false;
+        }
+
+        /**
+         * 获取“自己”对应的用户 ID（一般为发送者），仅在 shared 为 true 时有意义
+         * @return 没有发送者时返回 -1
+         */
+        default int selfId() {
+            return -1;
+        }
     }
 
     private static UserClient userClient;
-    private static FriendClient friendClient;
-    private static GroupClient groupClient;
 
     /** 会话缓存 */
     private static SessionCache sessionCache;
@@ -47,6 +63,7 @@ public class DataGenerator {
     private static UserCache userCache;
     private static SpaceCache spaceCache;
     private static ZoneCache zoneCache;
+    private static SocialGraphCache socialGraphCache;
 
     /** 注入用户服务 */
     @Autowired
@@ -54,18 +71,6 @@ public class DataGenerator {
         DataGenerator.userClient = userClient;
     }
 
-    /** 注入朋友服务 */
-    @Autowired
-    public void setFriendService(FriendClient friendClient) {
-        DataGenerator.friendClient = friendClient;
-    }
-
-    /** 注入群聊服务 */
-    @Autowired
-    public void setGroupService(GroupClient groupClient) {
-        DataGenerator.groupClient = groupClient;
-    }
-
     /** 注入会话缓存服务 */
     @Autowired
     public void setSessionCache(SessionCache sessionCache) {
@@ -94,19 +99,28 @@ public class DataGenerator {
         DataGenerator.zoneCache = zoneCache;
     }
 
+    /** 注入社交关系缓存 */
+    @Autowired
+    public void setSocialGraphCache(SocialGraphCache socialGraphCache) {
+        DataGenerator.socialGraphCache = socialGraphCache;
+    }
+
     /** 聊天消息生成器 */
     public static class ChatMessage implements Generator {
         /** 要发送的消息 */
         private final MessageVO messageVO;
+        /** 发送者 ID */
+        private final int senderId;
 
         public ChatMessage(MessageDTO messageDTO) {
             // 获取发送的用户
             UserVO sender = userCache.wrapUser(userClient.getUserById(messageDTO.getSenderId()));
             this.messageVO = new MessageVO(messageDTO, sender);
+            this.senderId = messageDTO.getSenderId();
         }
 
         @Override
-        public Set<Integer> target() {
+        public IntSet target() {
             // 会话中的所有在线的用户 ID，就是目标通知用户 ID
             return sessionCache.getSessionUsers(messageVO.sessionType(), messageVO.getTargetId());
         }
@@ -115,6 +129,16 @@ public class DataGenerator {
         public MessageVO exec(int toUserId) {
             return messageVO.setSelf(toUserId);
         }
+
+        @Override
+        public boolean shared() {
+            return true;
+        }
+
+        @Override
+        public int selfId() {
+            return senderId;
+        }
     }
 
     /** 用户上线状态消息生成器 */
@@ -131,22 +155,20 @@ public class DataGenerator {
         }
 
         @Override
-        public Set<Integer> target() {
-            // 初始化目标集合，首先找到的是该用户所有的好友
-            Set<Integer>  targetUserIdSet = new HashSet<>(friendClient.getFriendUserIdList(userId));
-            // 然后找到所有和该用户在同一个群聊中的用户 ID
-            for (Integer groupKey : groupClient.getGroupIdList(userId)) {
-                targetUserIdSet.addAll(groupClient.getUserIdList(groupKey));
-            }
-            // 最后除去本身，即使所有需要通知的对象
-            targetUserIdSet.remove(userId);
-            return targetUserIdSet;
+        public IntSet target() {
+            // 该用户所有的好友，以及所有和该用户在同一个群聊中的用户（除去本身），直接从邻接缓存中合并
+            return socialGraphCache.getRelatedUserIds(userId);
         }
 
         @Override
         public UserOnlineVO exec(int toUserId) {
             return userOnlineVO;
         }
+
+        @Override
+        public boolean shared() {
+            return true;
+        }
     }
 
     /** 会话请求消息生成器 */
@@ -169,13 +191,10 @@ public class DataGenerator {
         }
 
         @Override
-        public Set<Integer> target() {
-            Set<Integer> targetUserIdSet = new HashSet<>();
+        public IntSet target() {
             // 如果是群聊的话，需要发送给群主（或管理员，待增加）,否则，直接发送给指定的用户
-            targetUserIdSet.add(
-                    request.getType() == SessionType.GROUP.value() ?
+            return IntSet.of(request.getType() == SessionType.GROUP.value() ?
                     group.getCreatorId() : request.getTargetId());
-            return targetUserIdSet;
         }
 
         @Override
@@ -192,11 +211,9 @@ public class DataGenerator {
         private final Integer userId;
 
         @Override
-        public Set<Integer> target() {
+        public IntSet target() {
             // 发送给用户自己
-            HashSet<Integer> targetId = new HashSet<>(1);
-            targetId.add(userId);
-            return targetId;
+            return IntSet.of(userId);
         }
 
         @Override
@@ -208,14 +225,13 @@ public class DataGenerator {
     /** 位置状态更改消息生成器（用户的发现、消失和更新） */
     public static class SiteChange implements Generator {
         /** 消息的目标用户集合 */
-        private final Set<Integer> targetSet;
+        private final IntSet targetSet;
         /** 消息内容中的用户 */
         private final Set<SiteVO> infoSet;
 
         public SiteChange(int userId, Set<Integer> userIdSet) {
             // 当前用户单独为目标用户
-            targetSet = new HashSet<>(1);
-            targetSet.add(userId);
+            targetSet = IntSet.of(userId);
 
             // 而消息的内容是集合中用户对位置信息
             infoSet = new HashSet<>(userIdSet.size());
@@ -224,7 +240,7 @@ public class DataGenerator {
 
         public SiteChange(Set<Integer> userIdSet, int userId) {
             // 消息的目标用户是集合中的每一个用户
-            targetSet = userIdSet;
+            targetSet = IntSet.of(userIdSet);
 
             // 而消息的内容则是当前用户的位置信息（先设为空，需要动态添加
             infoSet = new HashSet<>(1);
@@ -232,7 +248,7 @@ public class DataGenerator {
         }
 
         @Override
-        public Set<Integer> target() {
+        public IntSet target() {
             return targetSet;
         }
 
@@ -240,12 +256,17 @@ public class DataGenerator {
         public Object exec(int toUserId) {
             return infoSet;
         }
+
+        @Override
+        public boolean shared() {
+            return true;
+        }
     }
 
     /** 空间广播消息生成器 */
     public static class SpaceCast implements Generator {
         /** 消息的目标用户集合 */
-        private final Set<Integer> targetSet;
+        private final IntSet targetSet;
         /** 要发送的消息 */
         private final MessageVO messageVO = new MessageVO();
 
@@ -274,7 +295,7 @@ public class DataGenerator {
         }
 
         @Override
-        public Set<Integer> target() {
+        public IntSet target() {
             return targetSet;
         }
 
@@ -282,12 +303,23 @@ public class DataGenerator {
         public Object exec(int toUserId) {
             return messageVO.setSelf(toUserId);
         }
+
+        @Override
+        public boolean shared() {
+            return true;
+        }
+
+        @Override
+        public int selfId() {
+            // 系统广播没有发送者
+            return messageVO.getSender() == null ? -1 : messageVO.getSender().getUserId();
+        }
     }
 
     /** 世界广播消息生成器 */
     public static class UniverseCast implements Generator {
         /** 消息的目标用户集合 */
-        private final Set<Integer> targetSet;
+        private final IntSet targetSet;
         /** 要发送的消息 */
         private final MessageVO messageVO = new MessageVO();
 
@@ -314,7 +346,7 @@ public class DataGenerator {
         }
 
         @Override
-        public Set<Integer> target() {
+        public IntSet target() {
             return targetSet;
         }
 
@@ -322,6 +354,17 @@ public class DataGenerator {
         public Object exec(int toUserId) {
             return messageVO.setSelf(toUserId);
         }
+
+        @Override
+        public boolean shared() {
+            return true;
+        }
+
+        @Override
+        public int selfId() {
+            // 系统广播没有发送者
+            return messageVO.getSender() == null ? -1 : messageVO.getSender().getUserId();
+        }
     }
 
     @AllArgsConstructor
@@ -329,7 +372,7 @@ public class DataGenerator {
         private final ZoneVO zoneVO;
 
         @Override
-        public Set<Integer> target() {
+        public IntSet target() {
             // 父级 ID 为 0，则获取空间中的所有用户
             if (zoneVO.getZonePid() == 0) {
                 return spaceCache.getSpaceUsers(zoneVO.getSpaceId());
@@ -342,5 +385,10 @@ public class DataGenerator {
         public Object exec(int toUserId) {
             return zoneVO;
         }
+
+        @Override
+        public boolean shared() {
+            return true;
+        }
     }
 }
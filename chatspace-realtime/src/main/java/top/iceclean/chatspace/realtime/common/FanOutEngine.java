@@ -0,0 +1,209 @@
+package top.iceclean.chatspace.realtime.common;
+
+import io.netty.buffer.ByteBuf;
+import io.netty.buffer.ByteBufAllocator;
+import io.netty.buffer.ByteBufUtil;
+import io.netty.channel.Channel;
+import io.netty.channel.EventLoop;
+import io.netty.handler.codec.http.websocketx.TextWebSocketFrame;
+import lombok.extern.slf4j.Slf4j;
+import top.iceclean.chatspace.cache.collection.IntSet;
+import top.iceclean.chatspace.realtime.share.ServerSession;
+
+import java.util.*;
+import java.util.function.Function;
+
+/**
+ * 广播消息的扇出引擎
+ * 内容只区分“自己”和“他人”的消息最多只编码两次，编码结果放在引用计数的 ByteBuf 中，
+ * 再按目标通道所属的 EventLoop 分片，由各个 EventLoop 批量写入后统一 flush
+ * @author : Ice'Clean
+ * @date : 2026-10-18
+ */
+@Slf4j
+public class FanOutEngine {
+    /** 单个 EventLoop 任务最多处理的通道数，避免长时间占用 IO 线程 */
+    private static final int BATCH_SIZE = 512;
+    /** 生成“他人”消息时使用的用户 ID，不会与任何真实用户相等 */
+    public static final int OTHER_USER_ID = -1;
+
+    /** 同一个 EventLoop 下的目标通道 */
+    private static class Shard {
+        /** 接收“他人”消息的通道 */
+        private final List<Channel> channels = new ArrayList<>();
+        /** 接收“自己”消息的通道（发送者本人），没有则为 null */
+        private Channel self;
+    }
+
+    private FanOutEngine() {
+
+    }
+
+    /**
+     * 向生成器的所有目标用户广播消息（只投递到连接在本节点的用户）
+     * @param generator 消息生成器
+     * @param encoder 将消息对象数据编码为 websocket 文本帧内容
+     * @return 本节点实际投递的用户数
+     */
+    public static int cast(DataGenerator.Generator generator, Function<Object, String> encoder) {
+        return cast(generator, generator.target(), encoder);
+    }
+
+    /**
+     * 向指定的目标用户广播消息（只投递到连接在本节点的用户）
+     * @param generator 消息生成器
+     * @param targetSet 目标用户 ID 集合
+     * @param encoder 将消息对象数据编码为 websocket 文本帧内容
+     * @return 本节点实际投递的用户数
+     */
+    public static int cast(DataGenerator.Generator generator, IntSet targetSet, Function<Object, String> encoder) {
+        if (targetSet.isEmpty()) {
+            return 0;
+        }
+        // 内容与目标用户有关的，只能逐个编码
+        if (!generator.shared()) {
+            return castEach(generator, targetSet, encoder);
+        }
+
+        // 按通道所属的 EventLoop 分片，发送者本人单独记录
+        int selfId = generator.selfId();
+        Map<EventLoop, Shard> shardMap = new HashMap<>();
+        int count = 0;
+        for (int userId : targetSet.toIntArray()) {
+            Channel channel = localChannel(userId);
+            if (channel == null) {
+                continue;
+            }
+            Shard shard = shardMap.computeIfAbsent(channel.eventLoop(), loop -> new Shard());
+            if (userId == selfId) {
+                shard.self = channel;
+            } else {
+                shard.channels.add(channel);
+            }
+            count++;
+        }
+        if (count == 0) {
+            return 0;
+        }
+
+        // 每种内容只编码一次，自己的那份只在发送者在本节点时才编码
+        boolean hasSelf = selfId != OTHER_USER_ID && shardMap.values().stream().anyMatch(shard -> shard.self != null);
+        ByteBuf otherBuf = encode(generator.exec(OTHER_USER_ID), encoder);
+        ByteBuf selfBuf = hasSelf ? encode(generator.exec(selfId), encoder) : null;
+        try {
+            shardMap.forEach((loop, shard) -> {
+                if (shard.self != null) {
+                    submit(loop, Collections.singletonList(shard.self), selfBuf);
+                }
+                List<Channel> channels = shard.channels;
+                for (int from = 0; from < channels.size(); from += BATCH_SIZE) {
+                    submit(loop, channels.subList(from, Math.min(from + BATCH_SIZE, channels.size())), otherBuf);
+                }
+            });
+        } finally {
+            // 各个分片持有自己的引用，这里释放掉编码时的那一份
+            otherBuf.release();
+            if (selfBuf != null) {
+                selfBuf.release();
+            }
+        }
+        return count;
+    }
+
+    /**
+     * 逐个目标用户编码并发送，用于内容与目标用户有关的消息
+     * @return 本节点实际投递的用户数
+     */
+    private static int castEach(DataGenerator.Generator generator, IntSet targetSet, Function<Object, String> encoder) {
+        int count = 0;
+        for (int userId : targetSet.toIntArray()) {
+            Channel channel = localChannel(userId);
+            if (channel == null) {
+                continue;
+            }
+            ByteBuf buf = encode(generator.exec(userId), encoder);
+            try {
+                submit(channel.eventLoop(), Collections.singletonList(channel), buf);
+            } finally {
+                buf.release();
+            }
+            count++;
+        }
+        return count;
+    }
+
+    /**
+     * 将已经编码好的内容投递给连接在本节点的指定用户，用于其他节点转发过来的消息
+     * @param content websocket 文本帧内容
+     * @param userIds 目标用户 ID 集合
+     * @return 本节点实际投递的用户数
+     */
+    public static int deliver(String content, Collection<Integer> userIds) {
+        Map<EventLoop, List<Channel>> shardMap = new HashMap<>();
+        int count = 0;
+        for (Integer userId : userIds) {
+            Channel channel = localChannel(userId);
+            if (channel != null) {
+                shardMap.computeIfAbsent(channel.eventLoop(), loop -> new ArrayList<>()).add(channel);
+                count++;
+            }
+        }
+        if (count == 0) {
+            return 0;
+        }
+        ByteBuf buf = ByteBufUtil.writeUtf8(ByteBufAllocator.DEFAULT, content);
+        try {
+            shardMap.forEach((loop, channels) -> {
+                for (int from = 0; from < channels.size(); from += BATCH_SIZE) {
+                    submit(loop, channels.subList(from, Math.min(from + BATCH_SIZE, channels.size())), buf);
+                }
+            });
+        } finally {
+            buf.release();
+        }
+        return count;
+    }
+
+    /**
+     * 将一批通道的写入提交到它们所属的 EventLoop，写完后统一 flush
+     * @param loop 通道所属的 EventLoop
+     * @param channels 目标通道（必须都属于该 EventLoop）
+     * @param buf 已编码的消息内容，方法内部会保留自己的引用
+     */
+    private static void submit(EventLoop loop, List<Channel> channels, ByteBuf buf) {
+        // subList 是视图，需要拷贝一份交给其他线程
+        List<Channel> batch = new ArrayList<>(channels);
+        ByteBuf shardBuf = buf.retainedDuplicate();
+        try {
+            loop.execute(() -> {
+                try {
+                    for (Channel channel : batch) {
+                        if (channel.isActive()) {
+                            channel.write(new TextWebSocketFrame(shardBuf.retainedDuplicate()), channel.voidPromise());
+                        }
+                    }
+                    for (Channel channel : batch) {
+                        channel.flush();
+                    }
+                } finally {
+                    shardBuf.release();
+                }
+            });
+        } catch (RuntimeException e) {
+            // EventLoop 已经关闭，任务不会执行，需要自行释放
+            shardBuf.release();
+            log.warn("提交广播任务失败：{}", e.getMessage());
+        }
+    }
+
+    /** 将消息对象数据编码到 ByteBuf 中 */
+    private static ByteBuf encode(Object data, Function<Object, String> encoder) {
+        return ByteBufUtil.writeUtf8(ByteBufAllocator.DEFAULT, encoder.apply(data));
+    }
+
+    /** 获取连接在本节点上的用户通道，不在本节点的返回 null */
+    private static Channel localChannel(int userId) {
+        ServerSession serverSession = SessionRepository.get(userId);
+        return serverSession == null ? null : serverSession.getChannel();
+    }
+}
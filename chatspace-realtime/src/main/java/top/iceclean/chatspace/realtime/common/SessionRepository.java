@@ -10,6 +10,7 @@ import top.iceclean.chatspace.infrastructure.vo.UserVO;
 import top.iceclean.chatspace.realtime.constant.ChannelKey;
 import top.iceclean.chatspace.realtime.service.SiteService;
 import top.iceclean.chatspace.realtime.share.ServerSession;
+import top.iceclean.chatspace.realtime.space.SiteBroadcaster;
 
 import java.util.concurrent.ConcurrentHashMap;
 import java.util.concurrent.ConcurrentMap;
@@ -29,12 +30,18 @@ public class SessionRepository {
     private static final ConcurrentMap<Integer, ServerSession> USER_SESSION_MAP = new ConcurrentHashMap<>();
 
     private static SiteService siteService;
+    private static SiteBroadcaster siteBroadcaster;
 
     @Autowired
     public void setSiteService(SiteService siteService) {
         SessionRepository.siteService = siteService;
     }
 
+    @Autowired
+    public void setSiteBroadcaster(SiteBroadcaster siteBroadcaster) {
+        SessionRepository.siteBroadcaster = siteBroadcaster;
+    }
+
     public static ServerSession bind(Channel channel, User user, Site site) {
         // 将用户 ID 绑定到当前线程
         USER_ID_THREAD_LOCAL.set(user.getId());
@@ -42,6 +49,9 @@ public class SessionRepository {
         ServerSession serverSession = new ServerSession(channel, user, site);
         channel.attr(ChannelKey.SESSION_KEY).set(serverSession);
         USER_SESSION_MAP.put(user.getId(), serverSession);
+        // 用户进入空间的位置存储和视野
+        SiteVO siteVO = serverSession.getSite();
+        siteBroadcaster.move(siteVO.getSpaceId(), user.getId(), siteVO.getX(), siteVO.getY());
         return serverSession;
     }
 
@@ -52,8 +62,13 @@ public class SessionRepository {
 
     public static void remove() {
         // 移除用户会话并将用户从线程中移除
-        USER_SESSION_MAP.remove(USER_ID_THREAD_LOCAL.get());
+        Integer userId = USER_ID_THREAD_LOCAL.get();
+        ServerSession serverSession = USER_SESSION_MAP.remove(userId);
         USER_ID_THREAD_LOCAL.remove();
+        if (serverSession != null) {
+            // 用户离开空间的位置存储和视野
+            siteBroadcaster.leave(serverSession.getSite().getSpaceId(), userId);
+        }
     }
 
     /**
@@ -69,9 +84,11 @@ public class SessionRepository {
         return null;
     }
 
-    /** 通过用户 ID 获取会话 */
+    /**
+     * 通过用户 ID 获取会话
+     * 只能获取连接在本节点的用户，连接在其他节点的用户返回 null，向他们发送消息需要经过 NodeRouter
+     */
     public static ServerSession get(int userId) {
-        // TODO 在多机情况下可能会出问题
         return USER_SESSION_MAP.get(userId);
     }
 
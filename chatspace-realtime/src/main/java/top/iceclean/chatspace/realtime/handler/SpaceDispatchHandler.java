@@ -0,0 +1,72 @@
+package top.iceclean.chatspace.realtime.handler;
+
+import io.netty.channel.ChannelHandler;
+import io.netty.channel.ChannelHandlerContext;
+import io.netty.channel.ChannelInboundHandlerAdapter;
+import io.netty.channel.ChannelPipeline;
+import io.netty.util.ReferenceCountUtil;
+import io.netty.util.concurrent.EventExecutor;
+import lombok.extern.slf4j.Slf4j;
+import top.iceclean.chatspace.realtime.constant.ChannelKey;
+import top.iceclean.chatspace.realtime.space.SpaceExecutor;
+
+import java.util.LinkedHashMap;
+import java.util.Map;
+
+/**
+ * 空间分派处理器，每个通道一个实例，放在 WebSocket 协议处理器之后，代替原来直接加入管道的业务处理器：
+ * 构建管道时把业务处理器交给它，收到第一条消息时（此时 SPACE_ID_KEY 已在权限校验时设置）
+ * 才把这些处理器以该空间的事件循环加入到自己之后，之后这个通道的消息都由空间的事件循环串行处理；
+ * 业务处理器只在这时加入一次，不会在已经工作的管道中移除再加入
+ * 自己留在 IO 线程中检查空间是否变化：业务处理器已经绑定在原空间的事件循环上，空间变化后关闭通道，由客户端重新连接到新的空间
+ * @author : Ice'Clean
+ * @date : 2026-10-18
+ */
+@Slf4j
+public class SpaceDispatchHandler extends ChannelInboundHandlerAdapter {
+    private final SpaceExecutor spaceExecutor;
+    /** 需要绑定到空间事件循环的业务处理器 (名称 -> 处理器)，按加入管道的顺序 */
+    private final Map<String, ChannelHandler> handlerMap;
+    /** 业务处理器绑定的空间，还没绑定时为空 */
+    private Integer boundSpaceId;
+
+    public SpaceDispatchHandler(SpaceExecutor spaceExecutor, LinkedHashMap<String, ChannelHandler> handlerMap) {
+        this.spaceExecutor = spaceExecutor;
+        this.handlerMap = handlerMap;
+    }
+
+    @Override
+    public void channelRead(ChannelHandlerContext ctx, Object msg) {
+        Integer spaceId = ctx.channel().attr(ChannelKey.SPACE_ID_KEY).get();
+        if (spaceId == null) {
+            // 还没有选择空间，没有可以处理的业务处理器
+            log.warn("通道 {} 没有选择空间，丢弃消息", ctx.channel().id());
+            ReferenceCountUtil.release(msg);
+            return;
+        }
+        if (boundSpaceId == null) {
+            bind(ctx, spaceId);
+        } else if (!boundSpaceId.equals(spaceId)) {
+            // 业务处理器已经在原空间的事件循环上，不能再移动，让客户端重新连接
+            log.warn("通道 {} 的空间从 {} 变为 {}，关闭连接", ctx.channel().id(), boundSpaceId, spaceId);
+            ReferenceCountUtil.release(msg);
+            ctx.close();
+            return;
+        }
+        // 下一个处理器在空间的事件循环上，Netty 会把消息提交过去并保持通道内的顺序
+        ctx.fireChannelRead(msg);
+    }
+
+    /** 把业务处理器以空间的事件循环依次加入到自己之后 */
+    private void bind(ChannelHandlerContext ctx, int spaceId) {
+        ChannelPipeline pipeline = ctx.pipeline();
+        EventExecutor executor = spaceExecutor.executor(spaceId);
+        String last = ctx.name();
+        for (Map.Entry<String, ChannelHandler> entry : handlerMap.entrySet()) {
+            pipeline.addAfter(executor, last, entry.getKey(), entry.getValue());
+            last = entry.getKey();
+        }
+        boundSpaceId = spaceId;
+        log.debug("通道 {} 绑定到空间 {} 的事件循环", ctx.channel().id(), spaceId);
+    }
+}
@@ -0,0 +1,22 @@
+package top.iceclean.chatspace.realtime.node;
+
+import lombok.AllArgsConstructor;
+import lombok.Data;
+import lombok.NoArgsConstructor;
+
+import java.util.List;
+
+/**
+ * 转发到其他节点的一份已编码消息，以及接收这份消息的用户
+ * @author : Ice'Clean
+ * @date : 2026-10-18
+ */
+@Data
+@NoArgsConstructor
+@AllArgsConstructor
+public class NodeCast {
+    /** websocket 文本帧内容 */
+    private String content;
+    /** 目标用户 ID */
+    private List<Integer> userIds;
+}
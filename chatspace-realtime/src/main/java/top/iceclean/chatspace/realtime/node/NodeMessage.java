@@ -0,0 +1,37 @@
+package top.iceclean.chatspace.realtime.node;
+
+import lombok.AllArgsConstructor;
+import lombok.Data;
+import lombok.NoArgsConstructor;
+
+/**
+ * 节点之间传递的消息（与网关中的定义保持一致，发送节点和发送时间只在节点之间转发时携带）
+ * @author : Ice'Clean
+ * @date : 2026-10-18
+ */
+@Data
+@NoArgsConstructor
+@AllArgsConstructor
+public class NodeMessage {
+    /** 消息类型枚举 */
+    public enum Type {
+        /** 用户连接重置 */
+        USER_RESET,
+        /** 批量用户连接重置（数据实体为用户 ID 数组） */
+        USER_RESET_BATCH,
+        /** 用户跨节点消息 */
+        USER_MESSAGE,
+        /** 批量用户跨节点消息（数据实体为 NodeCast 数组） */
+        USER_MESSAGE_BATCH
+    }
+    /** 消息类型 */
+    private Type type;
+    /** 目标用户 */
+    private int userId;
+    /** 数据实体（序列化后） */
+    private String data;
+    /** 发送节点 ID，网关发出的为 null */
+    private String source;
+    /** 发送时间（毫秒时间戳），网关发出的为 0 */
+    private long sendTime;
+}
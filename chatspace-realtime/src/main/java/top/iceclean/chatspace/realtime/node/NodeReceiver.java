@@ -0,0 +1,87 @@
+package top.iceclean.chatspace.realtime.node;
+
+import com.alibaba.fastjson.JSON;
+import io.micrometer.core.instrument.MeterRegistry;
+import io.micrometer.core.instrument.Timer;
+import io.netty.channel.Channel;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.amqp.rabbit.annotation.Queue;
+import org.springframework.amqp.rabbit.annotation.RabbitListener;
+import org.springframework.stereotype.Component;
+import top.iceclean.chatspace.realtime.common.FanOutEngine;
+import top.iceclean.chatspace.realtime.common.SessionRepository;
+import top.iceclean.chatspace.realtime.share.ServerSession;
+
+import java.util.Collections;
+import java.util.List;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentMap;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * 接收发往本节点的消息
+ * 本节点队列 node-consumer-{SERVER_ID} 唯一的消费者，负责用户消息转发和连接重置；以独占方式消费，
+ * 若还有其他监听器在消费同一个队列，后启动的一方会启动失败，而不是与之轮流分摊消息
+ * 其他节点转发的消息按路由（发送节点 -> 本节点）记录从发出到本地投递完成的延迟，
+ * 延迟依赖各节点的时钟同步，只作为趋势参考
+ * @author : Ice'Clean
+ * @date : 2026-10-18
+ */
+@Slf4j
+@Component
+public class NodeReceiver {
+    private final MeterRegistry meterRegistry;
+    private final String serverId;
+    /** 各条路由的投递延迟 (发送节点 -> 计时器) */
+    private final ConcurrentMap<String, Timer> latencyTimerMap = new ConcurrentHashMap<>();
+
+    public NodeReceiver(MeterRegistry meterRegistry, NodeRouter nodeRouter) {
+        this.meterRegistry = meterRegistry;
+        this.serverId = nodeRouter.getServerId();
+    }
+
+    @RabbitListener(queuesToDeclare = @Queue(value = NodeRouter.QUEUE_PREFIX + NodeRouter.SERVER_ID, autoDelete = "true"),
+            exclusive = "true")
+    public void receive(String msg) {
+        NodeMessage nodeMessage = JSON.parseObject(msg, NodeMessage.class);
+        switch (nodeMessage.getType()) {
+            case USER_MESSAGE_BATCH:
+                // 其他节点转发过来的消息，直接投递给本地的用户
+                for (NodeCast cast : JSON.parseArray(nodeMessage.getData(), NodeCast.class)) {
+                    FanOutEngine.deliver(cast.getContent(), cast.getUserIds());
+                }
+                recordLatency(nodeMessage);
+                break;
+            case USER_RESET:
+                reset(Collections.singletonList(nodeMessage.getUserId()));
+                break;
+            case USER_RESET_BATCH:
+                reset(JSON.parseArray(nodeMessage.getData(), Integer.class));
+                break;
+            default:
+                log.warn("未处理的节点消息：{}", msg);
+        }
+    }
+
+    private void recordLatency(NodeMessage nodeMessage) {
+        if (nodeMessage.getSource() == null || nodeMessage.getSendTime() <= 0) {
+            return;
+        }
+        long latency = Math.max(0, System.currentTimeMillis() - nodeMessage.getSendTime());
+        latencyTimerMap.computeIfAbsent(nodeMessage.getSource(), from -> Timer.builder("chatspace.node.route.latency")
+                .tag("from", from).tag("to", serverId).publishPercentileHistogram().register(meterRegistry))
+                .record(latency, TimeUnit.MILLISECONDS);
+    }
+
+    /** 断开用户的连接，让用户重新连接到网关为其分配的新节点 */
+    private void reset(List<Integer> userIds) {
+        for (Integer userId : userIds) {
+            ServerSession serverSession = SessionRepository.get(userId);
+            Channel channel = serverSession == null ? null : serverSession.getChannel();
+            if (channel != null) {
+                channel.close();
+            }
+        }
+        log.info("重置用户连接：{}", userIds);
+    }
+}
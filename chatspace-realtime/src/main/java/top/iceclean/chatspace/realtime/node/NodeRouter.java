@@ -0,0 +1,201 @@
+package top.iceclean.chatspace.realtime.node;
+
+import com.alibaba.fastjson.JSON;
+import io.micrometer.core.instrument.DistributionSummary;
+import io.micrometer.core.instrument.MeterRegistry;
+import io.micrometer.core.instrument.Timer;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.amqp.core.AmqpTemplate;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.stereotype.Component;
+import top.iceclean.chatspace.cache.UserCache;
+import top.iceclean.chatspace.cache.collection.IntSet;
+import top.iceclean.chatspace.realtime.common.DataGenerator;
+import top.iceclean.chatspace.realtime.common.FanOutEngine;
+import top.iceclean.chatspace.realtime.common.SessionRepository;
+
+import javax.annotation.PreDestroy;
+import java.util.*;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentMap;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.TimeUnit;
+import java.util.function.Function;
+
+/**
+ * 跨节点消息路由
+ * 目标用户中连接在本节点的直接投递，其余的先按在线状态过滤，再按所在节点分组，
+ * 每个远程节点只发送一条合并后的消息，由该节点的 NodeReceiver 在本地投递
+ * 每条路由（本节点 -> 目标节点）记录发送耗时和每条消息携带的用户数
+ * @author : Ice'Clean
+ * @date : 2026-10-18
+ */
+@Slf4j
+@Component
+public class NodeRouter {
+    /** 节点消息队列前缀，后接节点 ID */
+    public static final String QUEUE_PREFIX = "node-consumer-";
+    /**
+     * 本节点 ID，沿用节点已有的身份：与 ServerProperties 相同的 SERVER_ID 环境变量（Dockerfile 传入），
+     * 网关的 ServerEntry、用户所在节点（SERVER_NODE）和 node-consumer 队列都以它标识节点；没有配置时启动失败，不另造一个 ID
+     */
+    public static final String SERVER_ID = "${SERVER_ID}";
+
+    private final AmqpTemplate amqpTemplate;
+    private final UserCache userCache;
+    private final String serverId;
+    private final MeterRegistry meterRegistry;
+    /** 各条路由的发送耗时 (目标节点 -> 计时器) */
+    private final ConcurrentMap<String, Timer> publishTimerMap = new ConcurrentHashMap<>();
+    /** 各条路由每条消息携带的用户数 (目标节点 -> 统计) */
+    private final ConcurrentMap<String, DistributionSummary> batchSummaryMap = new ConcurrentHashMap<>();
+    /** 异步路由到远程节点的线程，单线程保证同一调用者提交的消息按顺序路由 */
+    private final ExecutorService routeExecutor = Executors.newSingleThreadExecutor(r -> {
+        Thread thread = new Thread(r, "node-route");
+        thread.setDaemon(true);
+        return thread;
+    });
+
+    public NodeRouter(AmqpTemplate amqpTemplate, UserCache userCache,
+                      @Value(SERVER_ID) String serverId, MeterRegistry meterRegistry) {
+        this.amqpTemplate = amqpTemplate;
+        this.userCache = userCache;
+        this.serverId = serverId;
+        this.meterRegistry = meterRegistry;
+    }
+
+    /**
+     * 向生成器的所有目标用户广播消息（包括连接在其他节点的用户）
+     * @param generator 消息生成器
+     * @param encoder 将消息对象数据编码为 websocket 文本帧内容
+     * @return 本节点实际投递的用户数
+     */
+    public int cast(DataGenerator.Generator generator, Function<Object, String> encoder) {
+        IntSet remoteSet = new IntSet();
+        int count = castLocal(generator, remoteSet, encoder);
+        if (!remoteSet.isEmpty()) {
+            route(generator, remoteSet, encoder);
+        }
+        return count;
+    }
+
+    /**
+     * 与 cast 相同，但发往其他节点的部分（需要读取 Redis）交给路由线程异步执行，
+     * 用于空间事件循环等不能阻塞的线程；调用之后生成器不能再修改
+     * @param generator 消息生成器
+     * @param encoder 将消息对象数据编码为 websocket 文本帧内容
+     * @return 本节点实际投递的用户数
+     */
+    public int castAsync(DataGenerator.Generator generator, Function<Object, String> encoder) {
+        IntSet remoteSet = new IntSet();
+        int count = castLocal(generator, remoteSet, encoder);
+        if (!remoteSet.isEmpty()) {
+            routeExecutor.execute(() -> {
+                try {
+                    route(generator, remoteSet, encoder);
+                } catch (RuntimeException e) {
+                    log.error("路由消息到其他节点失败：{}", e.getMessage());
+                }
+            });
+        }
+        return count;
+    }
+
+    /**
+     * 向连接在本节点的目标用户直接投递
+     * @param remoteSet 用来收集不在本节点的目标用户
+     * @return 本节点实际投递的用户数
+     */
+    private int castLocal(DataGenerator.Generator generator, IntSet remoteSet, Function<Object, String> encoder) {
+        IntSet targetSet = generator.target();
+        if (targetSet.isEmpty()) {
+            return 0;
+        }
+        IntSet localSet = new IntSet(targetSet.size());
+        targetSet.forEachInt(userId -> (SessionRepository.get(userId) != null ? localSet : remoteSet).add(userId));
+        return FanOutEngine.cast(generator, localSet, encoder);
+    }
+
+    /** 将不在本节点的目标用户路由到所在的节点 */
+    private void route(DataGenerator.Generator generator, IntSet remoteSet, Function<Object, String> encoder) {
+        // 只保留在线的用户（Redis 在线位图），并按所在节点分组（各一次管道读取）
+        Map<String, List<Integer>> nodeUserMap = new HashMap<>();
+        userCache.getServerNodes(userCache.filterOnline(remoteSet)).forEach((userId, node) -> {
+            if (!serverId.equals(node)) {
+                nodeUserMap.computeIfAbsent(node, id -> new ArrayList<>()).add(userId);
+            }
+        });
+        if (nodeUserMap.isEmpty()) {
+            return;
+        }
+
+        // 每个节点发送一条消息，内容相同的部分只编码一次
+        Map<Integer, String> contentMap = new HashMap<>(4);
+        nodeUserMap.forEach((node, userIds) -> {
+            send(node, toNodeCasts(generator, userIds, encoder, contentMap));
+            batchSummary(node).record(userIds.size());
+        });
+    }
+
+    /**
+     * 将发往某个节点的用户按消息内容分组
+     * @param contentMap 已编码的内容 (生成时使用的用户 ID -> 内容)，在多个节点之间复用
+     */
+    private List<NodeCast> toNodeCasts(DataGenerator.Generator generator, List<Integer> userIds,
+                                       Function<Object, String> encoder, Map<Integer, String> contentMap) {
+        List<NodeCast> casts = new ArrayList<>();
+        if (!generator.shared()) {
+            // 内容与目标用户有关的，只能逐个编码
+            userIds.forEach(userId -> casts.add(new NodeCast(encoder.apply(generator.exec(userId)),
+                    Collections.singletonList(userId))));
+            return casts;
+        }
+        int selfId = generator.selfId();
+        List<Integer> otherList = new ArrayList<>(userIds.size());
+        for (Integer userId : userIds) {
+            if (userId == selfId) {
+                casts.add(new NodeCast(contentMap.computeIfAbsent(selfId, id -> encoder.apply(generator.exec(id))),
+                        Collections.singletonList(userId)));
+            } else {
+                otherList.add(userId);
+            }
+        }
+        if (!otherList.isEmpty()) {
+            casts.add(new NodeCast(contentMap.computeIfAbsent(FanOutEngine.OTHER_USER_ID,
+                    id -> encoder.apply(generator.exec(id))), otherList));
+        }
+        return casts;
+    }
+
+    private void send(String node, List<NodeCast> casts) {
+        long start = System.nanoTime();
+        try {
+            amqpTemplate.convertAndSend(QUEUE_PREFIX + node, JSON.toJSONString(new NodeMessage(
+                    NodeMessage.Type.USER_MESSAGE_BATCH, 0, JSON.toJSONString(casts), serverId, System.currentTimeMillis())));
+        } catch (RuntimeException e) {
+            log.error("转发消息到节点 {} 失败：{}", node, e.getMessage());
+        } finally {
+            publishTimer(node).record(System.nanoTime() - start, TimeUnit.NANOSECONDS);
+        }
+    }
+
+    private Timer publishTimer(String node) {
+        return publishTimerMap.computeIfAbsent(node, to -> Timer.builder("chatspace.node.route.publish")
+                .tag("from", serverId).tag("to", to).publishPercentileHistogram().register(meterRegistry));
+    }
+
+    private DistributionSummary batchSummary(String node) {
+        return batchSummaryMap.computeIfAbsent(node, to -> DistributionSummary.builder("chatspace.node.route.batch.users")
+                .tag("from", serverId).tag("to", to).register(meterRegistry));
+    }
+
+    public String getServerId() {
+        return serverId;
+    }
+
+    @PreDestroy
+    public void shutdown() {
+        routeExecutor.shutdown();
+    }
+}
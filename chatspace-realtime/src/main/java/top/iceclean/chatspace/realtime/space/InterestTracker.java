@@ -0,0 +1,257 @@
+package top.iceclean.chatspace.realtime.space;
+
+import top.iceclean.chatspace.cache.collection.IntIntMap;
+import top.iceclean.chatspace.cache.collection.IntSet;
+import top.iceclean.chatspace.realtime.common.DataGenerator;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+
+/**
+ * 增量的视野（兴趣区域）管理
+ * 每个用户保存自己当前能看到的用户（visible）和能看到自己的用户（watchers），两者随每次移动增量维护：
+ * 移动时只检查新旧位置视野所覆盖网格中的用户，算出进入和离开视野的差量，不再每一步重新查询完整的范围集合；
+ * 只能在空间的事件循环中访问
+ * @author : Ice'Clean
+ * @date : 2026-10-18
+ */
+public class InterestTracker {
+    private static final int NONE = -1;
+
+    /** 一次移动或离开产生的视野变化 */
+    public static class Delta {
+        /** 移动的用户 */
+        private final int userId;
+        /** 新进入该用户视野的用户 */
+        private final IntSet entered = new IntSet();
+        /** 离开该用户视野的用户 */
+        private final IntSet left = new IntSet();
+        /** 新能看到该用户的用户 */
+        private final IntSet enteredWatchers = new IntSet();
+        /** 不再能看到该用户的用户 */
+        private final IntSet leftWatchers = new IntSet();
+        /** 移动前后都能看到该用户的用户（只需要更新位置） */
+        private final IntSet watchers = new IntSet();
+        /** 用户是否已经离开空间 */
+        private boolean gone;
+
+        Delta(int userId) {
+            this.userId = userId;
+        }
+
+        /**
+         * 生成位置状态更改消息，只包含变化的部分，位置取自空间的位置存储：
+         * 移动的用户收到进入其视野的用户位置和离开其视野的用户的离开标记（已离开空间时不再发给它），
+         * 能看到该用户的用户收到它的新位置，不再能看到它的用户收到它的离开标记
+         * @param context 空间上下文
+         * @return 消息生成器列表，没有变化时为空
+         */
+        public List<DataGenerator.Generator> toSiteChanges(SpaceContext context) {
+            int spaceId = context.getSpaceId();
+            PositionStore positionStore = context.positions();
+            List<DataGenerator.Generator> generators = new ArrayList<>(3);
+            if (!gone && (!entered.isEmpty() || !left.isEmpty())) {
+                SiteFrame frame = new SiteFrame(spaceId, positionStore, IntSet.of(userId), entered.size() + left.size());
+                entered.forEachInt(frame::site);
+                left.forEachInt(frame::leave);
+                generators.add(frame);
+            }
+            IntSet targets = new IntSet(watchers.size() + enteredWatchers.size());
+            targets.addAll(watchers);
+            targets.addAll(enteredWatchers);
+            if (!targets.isEmpty()) {
+                generators.add(new SiteFrame(spaceId, positionStore, targets, 1).site(userId));
+            }
+            if (!leftWatchers.isEmpty()) {
+                generators.add(new SiteFrame(spaceId, positionStore, leftWatchers, 1).leave(userId));
+            }
+            return generators;
+        }
+
+        public int getUserId() {
+            return userId;
+        }
+
+        public IntSet getEntered() {
+            return entered;
+        }
+
+        public IntSet getLeft() {
+            return left;
+        }
+
+        public IntSet getEnteredWatchers() {
+            return enteredWatchers;
+        }
+
+        public IntSet getLeftWatchers() {
+            return leftWatchers;
+        }
+
+        public IntSet getWatchers() {
+            return watchers;
+        }
+
+        public boolean isGone() {
+            return gone;
+        }
+    }
+
+    private final PositionStore positionStore;
+    /** 默认视野半径 */
+    private final int defaultRange;
+    /** 所有用户中最大的视野半径（只增不减），决定移动时需要检查的网格范围 */
+    private int maxRange;
+
+    /** 用户 ID 到下标的映射，以下列表和数组按下标存放 */
+    private final IntIntMap indexMap = new IntIntMap();
+    private final List<IntSet> visibleList = new ArrayList<>();
+    private final List<IntSet> watcherList = new ArrayList<>();
+    private int[] ranges = new int[64];
+    /** 空闲的下标（栈） */
+    private int[] freeIndexes = new int[16];
+    private int freeCount;
+
+    public InterestTracker(PositionStore positionStore, int defaultRange) {
+        this.positionStore = positionStore;
+        this.defaultRange = defaultRange;
+        this.maxRange = defaultRange;
+    }
+
+    /**
+     * 设置用户的视野半径，用户已在空间中时立即按新的半径更新视野
+     * @param userId 用户 ID
+     * @param range 视野半径
+     * @return 视野变化，用户还不在空间中时返回 null
+     */
+    public Delta setRange(int userId, int range) {
+        ranges[index(userId)] = range;
+        maxRange = Math.max(maxRange, range);
+        int[] site = positionStore.get(userId);
+        return site == null ? null : move(userId, site[0], site[1]);
+    }
+
+    /**
+     * 用户进入空间或移动到新位置，同时更新位置存储
+     * @param userId 用户 ID
+     * @param x 新的虚拟坐标 x
+     * @param y 新的虚拟坐标 y
+     * @return 视野变化
+     */
+    public Delta move(int userId, int x, int y) {
+        int[] old = positionStore.get(userId);
+        positionStore.put(userId, x, y);
+        int index = index(userId);
+        IntSet visible = visibleList.get(index);
+        IntSet watchers = watcherList.get(index);
+        long range = ranges[index];
+
+        // 关系发生变化的用户一定在旧位置或新位置的最大视野范围内
+        int reach = maxRange;
+        int minX = (old == null ? x : Math.min(old[0], x)) - reach;
+        int maxX = (old == null ? x : Math.max(old[0], x)) + reach;
+        int minY = (old == null ? y : Math.min(old[1], y)) - reach;
+        int maxY = (old == null ? y : Math.max(old[1], y)) + reach;
+        Delta delta = new Delta(userId);
+        positionStore.candidates(minX, minY, maxX, maxY).forEachInt(other -> {
+            if (other == userId) {
+                return;
+            }
+            long distance = positionStore.distanceSquared(userId, other);
+            int otherIndex = index(other);
+            // 自己能否看到对方
+            boolean sees = distance <= range * range;
+            if (sees != visible.contains(other)) {
+                if (sees) {
+                    visible.add(other);
+                    watcherList.get(otherIndex).add(userId);
+                    delta.entered.add(other);
+                } else {
+                    visible.remove(other);
+                    watcherList.get(otherIndex).remove(userId);
+                    delta.left.add(other);
+                }
+            }
+            // 对方能否看到自己
+            long otherRange = ranges[otherIndex];
+            boolean seen = distance <= otherRange * otherRange;
+            if (seen != watchers.contains(other)) {
+                if (seen) {
+                    watchers.add(other);
+                    visibleList.get(otherIndex).add(userId);
+                    delta.enteredWatchers.add(other);
+                } else {
+                    watchers.remove(other);
+                    visibleList.get(otherIndex).remove(userId);
+                    delta.leftWatchers.add(other);
+                }
+            } else if (seen) {
+                delta.watchers.add(other);
+            }
+        });
+        return delta;
+    }
+
+    /**
+     * 用户离开空间，同时从位置存储中移除
+     * @param userId 用户 ID
+     * @return 视野变化（原来能看到该用户的用户都在 leftWatchers 中），用户不在空间中时返回 null
+     */
+    public Delta leave(int userId) {
+        boolean present = positionStore.remove(userId);
+        // 只设置过视野半径而没有进入空间的用户也要释放下标
+        int index = indexMap.remove(userId, NONE);
+        if (index == NONE) {
+            return null;
+        }
+        Delta delta = new Delta(userId);
+        delta.gone = true;
+        IntSet visible = visibleList.get(index);
+        IntSet watchers = watcherList.get(index);
+        visible.forEachInt(other -> watcherList.get(indexMap.get(other, NONE)).remove(userId));
+        watchers.forEachInt(other -> visibleList.get(indexMap.get(other, NONE)).remove(userId));
+        delta.left.addAll(visible);
+        delta.leftWatchers.addAll(watchers);
+        visible.clear();
+        watchers.clear();
+        if (freeCount == freeIndexes.length) {
+            freeIndexes = Arrays.copyOf(freeIndexes, freeCount << 1);
+        }
+        freeIndexes[freeCount++] = index;
+        return present ? delta : null;
+    }
+
+    /** 用户当前能看到的用户（内部状态，只读） */
+    public IntSet visible(int userId) {
+        int index = indexMap.get(userId, NONE);
+        return index == NONE ? new IntSet(0) : visibleList.get(index);
+    }
+
+    /** 当前能看到该用户的用户（内部状态，只读） */
+    public IntSet watchers(int userId) {
+        int index = indexMap.get(userId, NONE);
+        return index == NONE ? new IntSet(0) : watcherList.get(index);
+    }
+
+    /** 获取用户的下标，没有则分配 */
+    private int index(int userId) {
+        int index = indexMap.get(userId, NONE);
+        if (index != NONE) {
+            return index;
+        }
+        if (freeCount > 0) {
+            index = freeIndexes[--freeCount];
+        } else {
+            index = visibleList.size();
+            visibleList.add(new IntSet());
+            watcherList.add(new IntSet());
+            if (index == ranges.length) {
+                ranges = Arrays.copyOf(ranges, index << 1);
+            }
+        }
+        ranges[index] = defaultRange;
+        indexMap.put(userId, index, NONE);
+        return index;
+    }
+}
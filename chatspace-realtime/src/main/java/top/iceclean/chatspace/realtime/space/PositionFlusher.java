@@ -0,0 +1,100 @@
+package top.iceclean.chatspace.realtime.space;
+
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.stereotype.Component;
+import top.iceclean.chatspace.cache.GeoCache;
+
+import javax.annotation.PreDestroy;
+import java.util.Set;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicBoolean;
+
+/**
+ * 用户位置的延迟写回
+ * 本节点空间内的位置以 PositionStore 为准，这里定期取出各空间变化过的位置，
+ * 每个空间合并成一次管道写入 Redis GEO，供其他节点读取；写入失败的位置重新标记，下次再写
+ * 同一空间上一次写入完成之前不会取出新的变化，保证旧的位置不会晚于新的位置写入而覆盖它
+ * 定时写入在第一次有位置写入本地存储时（start）才开始，没有使用空间的节点不会启动
+ * @author : Ice'Clean
+ * @date : 2026-10-18
+ */
+@Slf4j
+@Component
+public class PositionFlusher {
+    private final SpaceExecutor spaceExecutor;
+    private final GeoCache geoCache;
+    private final long flushMillis;
+    private final ScheduledExecutorService scheduler;
+    /** 定时写入是否已经开始 */
+    private final AtomicBoolean started = new AtomicBoolean();
+    /** 正在写入的空间 */
+    private final Set<Integer> flushingSet = ConcurrentHashMap.newKeySet();
+
+    public PositionFlusher(SpaceExecutor spaceExecutor, GeoCache geoCache,
+                           @Value("${chatspace.realtime.position.flush-millis:200}") long flushMillis) {
+        this.spaceExecutor = spaceExecutor;
+        this.geoCache = geoCache;
+        this.flushMillis = flushMillis;
+        this.scheduler = Executors.newSingleThreadScheduledExecutor(r -> {
+            Thread thread = new Thread(r, "position-flusher");
+            thread.setDaemon(true);
+            return thread;
+        });
+    }
+
+    /** 开始定时写入，重复调用无影响 */
+    public void start() {
+        if (started.compareAndSet(false, true)) {
+            scheduler.scheduleWithFixedDelay(this::flush, flushMillis, flushMillis, TimeUnit.MILLISECONDS);
+        }
+    }
+
+    /** 在各个空间的事件循环中取出变化的位置并写入，上一次写入还没完成的空间留到下一轮 */
+    private void flush() {
+        for (SpaceContext context : spaceExecutor.contexts()) {
+            int spaceId = context.getSpaceId();
+            if (flushingSet.add(spaceId)) {
+                context.executor().execute(() -> flush(context));
+            }
+        }
+    }
+
+    /** 取出一个空间变化的位置并写入，写入完成（包括失败后重新标记）后才允许下一次写入 */
+    private void flush(SpaceContext context) {
+        int spaceId = context.getSpaceId();
+        boolean[] started = {false};
+        try {
+            context.positions().drainChanges((userIds, xs, ys, removedUserIds) -> {
+                try {
+                    geoCache.syncUsers(spaceId, userIds, xs, ys, removedUserIds).whenComplete((result, e) -> {
+                        if (e != null) {
+                            log.error("空间 {} 的位置写入失败：{}", spaceId, e.getMessage());
+                            // 重新标记先于下一次取出在事件循环中执行
+                            context.executor().execute(() -> context.positions().markChanged(userIds, removedUserIds));
+                        }
+                        flushingSet.remove(spaceId);
+                    });
+                    started[0] = true;
+                } catch (RuntimeException e) {
+                    log.error("空间 {} 的位置写入失败：{}", spaceId, e.getMessage());
+                    context.positions().markChanged(userIds, removedUserIds);
+                }
+            });
+        } finally {
+            if (!started[0]) {
+                flushingSet.remove(spaceId);
+            }
+        }
+    }
+
+    /** 关闭前把剩余的位置写入 */
+    @PreDestroy
+    public void shutdown() {
+        scheduler.shutdown();
+        flush();
+    }
+}
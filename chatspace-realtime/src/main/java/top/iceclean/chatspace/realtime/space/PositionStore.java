@@ -0,0 +1,343 @@
+package top.iceclean.chatspace.realtime.space;
+
+import top.iceclean.chatspace.cache.collection.IntIntMap;
+import top.iceclean.chatspace.cache.collection.IntSet;
+
+import java.util.Arrays;
+
+/**
+ * 空间内用户位置的内存存储（均匀网格）
+ * 直接使用虚拟整数坐标，按固定边长划分网格，网格坐标散列到固定数量的桶中，桶内的用户以数组下标串成双向链表；
+ * 范围查询只遍历覆盖到的网格，再按精确距离过滤，不需要任何坐标转换
+ * 所有数据存放在基本类型数组中，移动位置不产生对象；位置变化会被记录下来，由 PositionFlusher 合并写入 Redis GEO；
+ * 只能在空间的事件循环中访问
+ * @author : Ice'Clean
+ * @date : 2026-10-18
+ */
+public class PositionStore {
+    /** 空链接 */
+    private static final int NONE = -1;
+
+    /** 网格边长 */
+    private final int cellSize;
+    /** 各个桶中第一个用户的下标 */
+    private final int[] bucketHead;
+    private final int bucketMask;
+    /** 用户 ID 到下标的映射 */
+    private final IntIntMap slotMap = new IntIntMap();
+
+    /** 以下数组按下标存放每个用户的数据 */
+    private int[] userIds;
+    private int[] xs;
+    private int[] ys;
+    /** 所在的桶 */
+    private int[] buckets;
+    /** 桶内链表的前后链接，空闲下标通过 next 串成空闲链表 */
+    private int[] next;
+    private int[] prev;
+    /** 已使用过的下标数 */
+    private int used;
+    /** 空闲链表头 */
+    private int freeHead = NONE;
+
+    /** 上次写入 Redis 后移动过的用户 */
+    private IntSet dirtySet = new IntSet();
+    /** 上次写入 Redis 后离开的用户 */
+    private IntSet removedSet = new IntSet();
+
+    /**
+     * @param cellSize 网格边长，一般取常用的视野半径
+     * @param bucketCount 桶的数量（会向上取整为 2 的幂）
+     */
+    public PositionStore(int cellSize, int bucketCount) {
+        this.cellSize = Math.max(1, cellSize);
+        int size = Math.max(16, Integer.highestOneBit(Math.max(1, bucketCount - 1)) << 1);
+        this.bucketHead = new int[size];
+        this.bucketMask = size - 1;
+        Arrays.fill(bucketHead, NONE);
+        allocate(64);
+    }
+
+    /**
+     * 放入或移动用户
+     * @param userId 用户 ID
+     * @param x 虚拟坐标 x
+     * @param y 虚拟坐标 y
+     * @return 用户原来不在空间中返回 true
+     */
+    public boolean put(int userId, int x, int y) {
+        int bucket = bucket(x, y);
+        int slot = slotMap.get(userId, NONE);
+        boolean added = slot == NONE;
+        if (added) {
+            slot = allocateSlot();
+            userIds[slot] = userId;
+            slotMap.put(userId, slot, NONE);
+            link(slot, bucket);
+        } else if (buckets[slot] != bucket) {
+            unlink(slot);
+            link(slot, bucket);
+        }
+        xs[slot] = x;
+        ys[slot] = y;
+        dirtySet.add(userId);
+        removedSet.remove(userId);
+        return added;
+    }
+
+    /**
+     * 移除用户
+     * @param userId 用户 ID
+     * @return 用户原来在空间中返回 true
+     */
+    public boolean remove(int userId) {
+        int slot = slotMap.remove(userId, NONE);
+        if (slot == NONE) {
+            return false;
+        }
+        unlink(slot);
+        next[slot] = freeHead;
+        freeHead = slot;
+        dirtySet.remove(userId);
+        removedSet.add(userId);
+        return true;
+    }
+
+    /** 用户是否在空间中 */
+    public boolean contains(int userId) {
+        return slotMap.containsKey(userId);
+    }
+
+    /**
+     * 获取用户的虚拟坐标
+     * @return [x, y]，用户不在空间中时返回 null
+     */
+    public int[] get(int userId) {
+        int slot = slotMap.get(userId, NONE);
+        return slot == NONE ? null : new int[]{xs[slot], ys[slot]};
+    }
+
+    /**
+     * 获取指定用户范围内的所有用户（包括自己）
+     * @param userId 中心用户 ID
+     * @param range 范围半径
+     * @return 用户 ID 集合，中心用户不在空间中时为空
+     */
+    public IntSet radius(int userId, double range) {
+        int slot = slotMap.get(userId, NONE);
+        return slot == NONE ? new IntSet(0) : radius(xs[slot], ys[slot], range);
+    }
+
+    /**
+     * 获取指定坐标范围内的所有用户
+     * @param x 中心虚拟坐标 x
+     * @param y 中心虚拟坐标 y
+     * @param range 范围半径
+     * @return 用户 ID 集合
+     */
+    public IntSet radius(int x, int y, double range) {
+        IntSet result = new IntSet();
+        double squared = range * range;
+        int reach = (int) Math.ceil(range);
+        int minCx = Math.floorDiv(x - reach, cellSize);
+        int maxCx = Math.floorDiv(x + reach, cellSize);
+        int minCy = Math.floorDiv(y - reach, cellSize);
+        int maxCy = Math.floorDiv(y + reach, cellSize);
+        if ((long) (maxCx - minCx + 1) * (maxCy - minCy + 1) >= bucketHead.length) {
+            // 覆盖的网格比桶还多时，直接遍历所有用户
+            for (int slot = 0; slot < used; slot++) {
+                if (buckets[slot] != NONE && within(slot, x, y, squared)) {
+                    result.add(userIds[slot]);
+                }
+            }
+            return result;
+        }
+        for (int cx = minCx; cx <= maxCx; cx++) {
+            for (int cy = minCy; cy <= maxCy; cy++) {
+                // 不同网格可能散列到同一个桶，结果集合自动去重，精确距离过滤掉其他网格的用户
+                for (int slot = bucketHead[hash(cx, cy)]; slot != NONE; slot = next[slot]) {
+                    if (within(slot, x, y, squared)) {
+                        result.add(userIds[slot]);
+                    }
+                }
+            }
+        }
+        return result;
+    }
+
+    /**
+     * 获取矩形区域覆盖到的网格中的所有用户（不按距离过滤，可能包含区域外但在同一网格或同一桶中的用户）
+     * @param minX 区域最小虚拟坐标 x
+     * @param minY 区域最小虚拟坐标 y
+     * @param maxX 区域最大虚拟坐标 x
+     * @param maxY 区域最大虚拟坐标 y
+     * @return 候选用户 ID 集合
+     */
+    public IntSet candidates(int minX, int minY, int maxX, int maxY) {
+        IntSet result = new IntSet();
+        int minCx = Math.floorDiv(minX, cellSize);
+        int maxCx = Math.floorDiv(maxX, cellSize);
+        int minCy = Math.floorDiv(minY, cellSize);
+        int maxCy = Math.floorDiv(maxY, cellSize);
+        if ((long) (maxCx - minCx + 1) * (maxCy - minCy + 1) >= bucketHead.length) {
+            for (int slot = 0; slot < used; slot++) {
+                if (buckets[slot] != NONE) {
+                    result.add(userIds[slot]);
+                }
+            }
+            return result;
+        }
+        for (int cx = minCx; cx <= maxCx; cx++) {
+            for (int cy = minCy; cy <= maxCy; cy++) {
+                for (int slot = bucketHead[hash(cx, cy)]; slot != NONE; slot = next[slot]) {
+                    result.add(userIds[slot]);
+                }
+            }
+        }
+        return result;
+    }
+
+    /**
+     * 两个用户距离的平方
+     * @return 有用户不在空间中时返回 -1
+     */
+    public long distanceSquared(int user1, int user2) {
+        int slot1 = slotMap.get(user1, NONE);
+        int slot2 = slotMap.get(user2, NONE);
+        if (slot1 == NONE || slot2 == NONE) {
+            return -1;
+        }
+        long dx = xs[slot1] - xs[slot2];
+        long dy = ys[slot1] - ys[slot2];
+        return dx * dx + dy * dy;
+    }
+
+    /**
+     * 判断 user1 在指定范围内是否覆盖到 user2
+     * @return 两个用户都在空间中且距离不超过范围时返回 true
+     */
+    public boolean canCover(int user1, double range, int user2) {
+        int slot1 = slotMap.get(user1, NONE);
+        int slot2 = slotMap.get(user2, NONE);
+        return slot1 != NONE && slot2 != NONE && within(slot2, xs[slot1], ys[slot1], range * range);
+    }
+
+    /** 空间中的用户数 */
+    public int size() {
+        return slotMap.size();
+    }
+
+    /** 变化的位置的接收者 */
+    public interface ChangeConsumer {
+        /**
+         * @param userIds 移动过的用户 ID
+         * @param xs 对应的虚拟坐标 x
+         * @param ys 对应的虚拟坐标 y
+         * @param removedUserIds 离开的用户 ID
+         */
+        void accept(int[] userIds, int[] xs, int[] ys, int[] removedUserIds);
+    }
+
+    /**
+     * 取出上次取出后变化的所有位置（同一用户多次移动只保留最新的）
+     * @param consumer 接收者，没有任何变化时不调用
+     */
+    public void drainChanges(ChangeConsumer consumer) {
+        if (dirtySet.isEmpty() && removedSet.isEmpty()) {
+            return;
+        }
+        int[] dirtyIds = dirtySet.toIntArray();
+        int[] dirtyXs = new int[dirtyIds.length];
+        int[] dirtyYs = new int[dirtyIds.length];
+        for (int i = 0; i < dirtyIds.length; i++) {
+            int slot = slotMap.get(dirtyIds[i], NONE);
+            dirtyXs[i] = xs[slot];
+            dirtyYs[i] = ys[slot];
+        }
+        int[] removedIds = removedSet.toIntArray();
+        dirtySet = new IntSet();
+        removedSet = new IntSet();
+        consumer.accept(dirtyIds, dirtyXs, dirtyYs, removedIds);
+    }
+
+    /**
+     * 写入失败时重新标记为变化，下次再写入（期间又变化过的以新的为准）
+     * @param userIds 写入失败的移动用户
+     * @param removedUserIds 写入失败的离开用户
+     */
+    public void markChanged(int[] userIds, int[] removedUserIds) {
+        for (int userId : userIds) {
+            if (contains(userId)) {
+                dirtySet.add(userId);
+            }
+        }
+        for (int userId : removedUserIds) {
+            if (!contains(userId)) {
+                removedSet.add(userId);
+            }
+        }
+    }
+
+    private boolean within(int slot, int x, int y, double squared) {
+        long dx = xs[slot] - x;
+        long dy = ys[slot] - y;
+        return dx * dx + dy * dy <= squared;
+    }
+
+    private int bucket(int x, int y) {
+        return hash(Math.floorDiv(x, cellSize), Math.floorDiv(y, cellSize));
+    }
+
+    private int hash(int cx, int cy) {
+        int h = cx * 0x8DA6B343 ^ cy * 0xD8163841;
+        return (h ^ (h >>> 16)) & bucketMask;
+    }
+
+    private void link(int slot, int bucket) {
+        int head = bucketHead[bucket];
+        buckets[slot] = bucket;
+        prev[slot] = NONE;
+        next[slot] = head;
+        if (head != NONE) {
+            prev[head] = slot;
+        }
+        bucketHead[bucket] = slot;
+    }
+
+    private void unlink(int slot) {
+        int before = prev[slot];
+        int after = next[slot];
+        if (before == NONE) {
+            bucketHead[buckets[slot]] = after;
+        } else {
+            next[before] = after;
+        }
+        if (after != NONE) {
+            prev[after] = before;
+        }
+        buckets[slot] = NONE;
+    }
+
+    private int allocateSlot() {
+        if (freeHead != NONE) {
+            int slot = freeHead;
+            freeHead = next[slot];
+            return slot;
+        }
+        if (used == userIds.length) {
+            allocate(used << 1);
+        }
+        return used++;
+    }
+
+    private void allocate(int capacity) {
+        int oldLength = userIds == null ? 0 : userIds.length;
+        userIds = userIds == null ? new int[capacity] : Arrays.copyOf(userIds, capacity);
+        xs = xs == null ? new int[capacity] : Arrays.copyOf(xs, capacity);
+        ys = ys == null ? new int[capacity] : Arrays.copyOf(ys, capacity);
+        next = next == null ? new int[capacity] : Arrays.copyOf(next, capacity);
+        prev = prev == null ? new int[capacity] : Arrays.copyOf(prev, capacity);
+        buckets = buckets == null ? new int[capacity] : Arrays.copyOf(buckets, capacity);
+        Arrays.fill(buckets, oldLength, capacity, NONE);
+    }
+}
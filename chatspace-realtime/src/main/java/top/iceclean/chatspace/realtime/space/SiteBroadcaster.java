@@ -0,0 +1,72 @@
+package top.iceclean.chatspace.realtime.space;
+
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.stereotype.Component;
+import top.iceclean.chatspace.realtime.common.DataGenerator;
+import top.iceclean.chatspace.realtime.node.NodeRouter;
+
+import java.util.function.Function;
+
+/**
+ * 空间内用户位置变化的入口（进入、移动、离开）
+ * 可以在任意线程调用，变化提交到空间的事件循环中执行：更新位置存储和视野，
+ * 再按空间的帧模式立即或按帧推送位置帧，本节点的用户直接投递，其他节点的用户交给路由线程异步转发，不阻塞事件循环
+ * @author : Ice'Clean
+ * @date : 2026-10-18
+ */
+@Slf4j
+@Component
+public class SiteBroadcaster {
+    private final SpaceExecutor spaceExecutor;
+    private final SiteTicker siteTicker;
+    private final PositionFlusher positionFlusher;
+    private final NodeRouter nodeRouter;
+
+    public SiteBroadcaster(SpaceExecutor spaceExecutor, SiteTicker siteTicker,
+                           PositionFlusher positionFlusher, NodeRouter nodeRouter) {
+        this.spaceExecutor = spaceExecutor;
+        this.siteTicker = siteTicker;
+        this.positionFlusher = positionFlusher;
+        this.nodeRouter = nodeRouter;
+    }
+
+    /**
+     * 用户进入空间或移动到新位置
+     * @param spaceId 空间 ID
+     * @param userId 用户 ID
+     * @param x 虚拟坐标 x
+     * @param y 虚拟坐标 y
+     */
+    public void move(int spaceId, int userId, int x, int y) {
+        submit(spaceId, userId, context -> context.interests().move(userId, x, y));
+    }
+
+    /**
+     * 用户离开空间
+     * @param spaceId 空间 ID
+     * @param userId 用户 ID
+     */
+    public void leave(int spaceId, int userId) {
+        submit(spaceId, userId, context -> {
+            context.leave(userId);
+            return context.interests().leave(userId);
+        });
+    }
+
+    /** 在空间的事件循环中执行变化并推送产生的位置帧 */
+    private void submit(int spaceId, int userId, Function<SpaceContext, InterestTracker.Delta> change) {
+        positionFlusher.start();
+        spaceExecutor.execute(spaceId, () -> {
+            SpaceContext context = spaceExecutor.context(spaceId);
+            try {
+                siteTicker.submit(context, change.apply(context), this::cast);
+            } catch (RuntimeException e) {
+                log.error("空间 {} 中用户 {} 的位置更新失败：{}", spaceId, userId, e.getMessage());
+            }
+        });
+    }
+
+    private void cast(DataGenerator.Generator generator) {
+        nodeRouter.castAsync(generator, SiteFrame::encode);
+    }
+}
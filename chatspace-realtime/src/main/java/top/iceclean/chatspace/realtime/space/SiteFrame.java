@@ -0,0 +1,118 @@
+package top.iceclean.chatspace.realtime.space;
+
+import com.alibaba.fastjson.JSONObject;
+import top.iceclean.chatspace.cache.collection.IntSet;
+import top.iceclean.chatspace.realtime.common.DataGenerator;
+
+import java.util.ArrayList;
+import java.util.List;
+
+/**
+ * 空间内的位置帧消息生成器（用户的发现、消失和更新）
+ * 位置直接取自空间的 PositionStore，不读取会话也不调用远程服务，可以在空间的事件循环中构建；
+ * 离开视野或离开空间的用户以离开标记表示，客户端收到后将其移除
+ * 位置帧是新的消息类型，与原来以 SiteVO 列表推送的位置消息格式不同，不能复用原来的消息类型，由 encode 编码为：
+ * {"type": "SITE_FRAME", "version": 1, "data": [{"spaceId", "userId", "x", "y", "leave"}, ...]}（离开时没有 x、y）
+ * 只有 userId 没有用户资料，客户端对没见过的用户需要另外获取资料；不认识该类型的旧客户端会忽略这条消息，
+ * 原来的位置消息照常推送，客户端按 type 区分两种格式，格式变化时增加 version
+ * @author : Ice'Clean
+ * @date : 2026-10-18
+ */
+public class SiteFrame implements DataGenerator.Generator {
+    /** 位置帧的消息类型 */
+    public static final String TYPE = "SITE_FRAME";
+    /** 位置帧的格式版本 */
+    public static final int VERSION = 1;
+
+    /** 单个用户的位置变化 */
+    public static class Entry {
+        private final int spaceId;
+        private final int userId;
+        /** 虚拟坐标，离开时为空 */
+        private final Integer x;
+        private final Integer y;
+        /** 是否离开（离开视野或离开空间） */
+        private final boolean leave;
+
+        private Entry(int spaceId, int userId, Integer x, Integer y, boolean leave) {
+            this.spaceId = spaceId;
+            this.userId = userId;
+            this.x = x;
+            this.y = y;
+            this.leave = leave;
+        }
+
+        public int getSpaceId() {
+            return spaceId;
+        }
+
+        public int getUserId() {
+            return userId;
+        }
+
+        public Integer getX() {
+            return x;
+        }
+
+        public Integer getY() {
+            return y;
+        }
+
+        public boolean isLeave() {
+            return leave;
+        }
+    }
+
+    private final int spaceId;
+    private final PositionStore positionStore;
+    /** 消息的目标用户集合 */
+    private final IntSet targetSet;
+    /** 消息内容中的用户 */
+    private final List<Entry> entryList;
+
+    SiteFrame(int spaceId, PositionStore positionStore, IntSet targetSet, int expectedSize) {
+        this.spaceId = spaceId;
+        this.positionStore = positionStore;
+        this.targetSet = targetSet;
+        this.entryList = new ArrayList<>(expectedSize);
+    }
+
+    /** 添加用户的当前位置，用户已不在位置存储中时添加离开标记 */
+    SiteFrame site(int userId) {
+        int[] site = positionStore.get(userId);
+        entryList.add(site == null ? new Entry(spaceId, userId, null, null, true)
+                : new Entry(spaceId, userId, site[0], site[1], false));
+        return this;
+    }
+
+    /** 添加用户的离开标记 */
+    SiteFrame leave(int userId) {
+        entryList.add(new Entry(spaceId, userId, null, null, true));
+        return this;
+    }
+
+    /**
+     * 将位置帧的消息对象数据编码为 websocket 文本帧内容（带上消息类型和格式版本）
+     * @param data exec 返回的位置变化列表
+     * @return 文本帧内容
+     */
+    public static String encode(Object data) {
+        return new JSONObject(true).fluentPut("type", TYPE).fluentPut("version", VERSION)
+                .fluentPut("data", data).toJSONString();
+    }
+
+    @Override
+    public IntSet target() {
+        return targetSet;
+    }
+
+    @Override
+    public Object exec(int toUserId) {
+        return entryList;
+    }
+
+    @Override
+    public boolean shared() {
+        return true;
+    }
+}
@@ -0,0 +1,202 @@
+package top.iceclean.chatspace.realtime.space;
+
+import io.micrometer.core.instrument.Counter;
+import io.micrometer.core.instrument.MeterRegistry;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.stereotype.Component;
+import top.iceclean.chatspace.cache.collection.IntSet;
+import top.iceclean.chatspace.realtime.common.DataGenerator;
+
+import java.util.HashMap;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentMap;
+import java.util.concurrent.TimeUnit;
+import java.util.function.Consumer;
+import java.util.function.IntConsumer;
+
+/**
+ * 位置更新的按帧合并
+ * 开启帧模式的空间中，移动产生的视野变化先按接收者累积，同一接收者同一用户在一帧内的多次更新合并为一次（以最新位置为准），
+ * 每帧结束时每个接收者只收到一条包含所有变化用户位置的消息，位置在帧结束时取自空间的位置存储，
+ * 此时已不在接收者视野中的用户以离开标记表示；用户进入和离开视野的更新一定在当帧推送，
+ * 只有视野内用户的位置刷新受每个接收者每帧的用户数上限限制，超出的刷新顺延到下一帧，不会丢弃；
+ * 未开启帧模式的空间每次移动立即推送
+ * @author : Ice'Clean
+ * @date : 2026-10-18
+ */
+@Slf4j
+@Component
+public class SiteTicker {
+    private final TickProperties properties;
+    private final MeterRegistry meterRegistry;
+    /** 开启帧模式的空间的缓冲 (spaceId -> 缓冲)，缓冲只在空间的事件循环中访问 */
+    private final ConcurrentMap<Integer, Buffer> bufferMap = new ConcurrentHashMap<>();
+
+    public SiteTicker(TickProperties properties, MeterRegistry meterRegistry) {
+        this.properties = properties;
+        this.meterRegistry = meterRegistry;
+    }
+
+    /** 一个接收者一帧内累积的更新 */
+    private static class Pending {
+        /** 进入或离开接收者视野的用户 */
+        private final IntSet required = new IntSet();
+        /** 只需要刷新位置的用户 */
+        private final IntSet refresh = new IntSet();
+    }
+
+    /** 一个空间一帧内累积的更新 */
+    private static class Buffer {
+        private final SpaceContext context;
+        private final int maxBatch;
+        /** 帧结束时用来推送消息 */
+        private Consumer<DataGenerator.Generator> sink;
+        /** 每个接收者需要收到的更新 (接收者 -> 更新) */
+        private Map<Integer, Pending> pendingMap = new HashMap<>();
+        private final Counter merged;
+        private final Counter deferred;
+        private final Counter dropped;
+        private final Counter frames;
+
+        Buffer(SpaceContext context, int maxBatch, MeterRegistry meterRegistry) {
+            this.context = context;
+            this.maxBatch = maxBatch;
+            String spaceId = String.valueOf(context.getSpaceId());
+            this.merged = meterRegistry.counter("chatspace.site.tick.updates", "space", spaceId, "result", "merged");
+            this.deferred = meterRegistry.counter("chatspace.site.tick.updates", "space", spaceId, "result", "deferred");
+            this.dropped = meterRegistry.counter("chatspace.site.tick.updates", "space", spaceId, "result", "dropped");
+            this.frames = meterRegistry.counter("chatspace.site.tick.frames", "space", spaceId);
+        }
+
+        /**
+         * 添加一个更新
+         * @param recipient 接收者
+         * @param userId 位置变化的用户
+         * @param required 是否为进入或离开视野的更新（不受每帧上限限制）
+         */
+        void add(int recipient, int userId, boolean required) {
+            Pending pending = pendingMap.computeIfAbsent(recipient, id -> new Pending());
+            if (pending.required.contains(userId)) {
+                merged.increment();
+            } else if (required) {
+                if (pending.refresh.remove(userId)) {
+                    merged.increment();
+                }
+                pending.required.add(userId);
+            } else if (!pending.refresh.add(userId)) {
+                merged.increment();
+            }
+        }
+
+        void addAll(IntSet recipients, int userId, boolean required) {
+            recipients.forEachInt(recipient -> add(recipient, userId, required));
+        }
+
+        /** 帧结束，给每个接收者推送一条消息 */
+        void tick() {
+            if (pendingMap.isEmpty()) {
+                return;
+            }
+            Map<Integer, Pending> pendingByRecipient = pendingMap;
+            pendingMap = new HashMap<>();
+            int spaceId = context.getSpaceId();
+            PositionStore positionStore = context.positions();
+            InterestTracker interests = context.interests();
+            pendingByRecipient.forEach((recipient, pending) -> {
+                if (!positionStore.contains(recipient)) {
+                    // 接收者已经离开空间
+                    dropped.increment(pending.required.size() + pending.refresh.size());
+                    return;
+                }
+                // 进入和离开视野的更新全部推送，位置刷新只占用剩余的名额，其余的顺延到下一帧
+                int[] refreshes = pending.refresh.toIntArray();
+                int refreshCount = Math.min(refreshes.length, Math.max(0, maxBatch - pending.required.size()));
+                if (refreshCount < refreshes.length) {
+                    Pending carried = pendingMap.computeIfAbsent(recipient, id -> new Pending());
+                    for (int i = refreshCount; i < refreshes.length; i++) {
+                        carried.refresh.add(refreshes[i]);
+                    }
+                    deferred.increment(refreshes.length - refreshCount);
+                }
+
+                IntSet visible = interests.visible(recipient);
+                SiteFrame frame = new SiteFrame(spaceId, positionStore, IntSet.of(recipient), pending.required.size() + refreshCount);
+                IntConsumer append = userId -> {
+                    if (visible.contains(userId)) {
+                        frame.site(userId);
+                    } else {
+                        frame.leave(userId);
+                    }
+                };
+                pending.required.forEachInt(append);
+                for (int i = 0; i < refreshCount; i++) {
+                    append.accept(refreshes[i]);
+                }
+                sink.accept(frame);
+                frames.increment();
+            });
+        }
+    }
+
+    /** 空间是否开启了帧模式 */
+    public boolean isTickMode(int spaceId) {
+        return properties.rateOf(spaceId) > 0;
+    }
+
+    /**
+     * 提交一次移动或离开产生的视野变化，需要在空间的事件循环中调用
+     * 帧模式下累积到帧结束时推送，否则立即推送
+     * @param context 空间上下文
+     * @param delta 视野变化
+     * @param sink 推送消息的方式
+     */
+    public void submit(SpaceContext context, InterestTracker.Delta delta, Consumer<DataGenerator.Generator> sink) {
+        context.ensureInLoop();
+        if (delta == null) {
+            return;
+        }
+        if (!isTickMode(context.getSpaceId())) {
+            delta.toSiteChanges(context).forEach(sink);
+            return;
+        }
+        Buffer buffer = bufferMap.computeIfAbsent(context.getSpaceId(), spaceId -> start(context));
+        buffer.sink = sink;
+        int userId = delta.getUserId();
+        if (!delta.isGone()) {
+            delta.getEntered().forEachInt(other -> buffer.add(userId, other, true));
+            delta.getLeft().forEachInt(other -> buffer.add(userId, other, true));
+        }
+        buffer.addAll(delta.getWatchers(), userId, false);
+        buffer.addAll(delta.getEnteredWatchers(), userId, true);
+        buffer.addAll(delta.getLeftWatchers(), userId, true);
+    }
+
+    /**
+     * 立即结束空间当前的帧并推送，需要在空间的事件循环中调用
+     * @param context 空间上下文
+     */
+    void tick(SpaceContext context) {
+        context.ensureInLoop();
+        Buffer buffer = bufferMap.get(context.getSpaceId());
+        if (buffer != null) {
+            buffer.tick();
+        }
+    }
+
+    /** 创建空间的缓冲，并在空间的事件循环上按帧率定时推送 */
+    private Buffer start(SpaceContext context) {
+        int spaceId = context.getSpaceId();
+        Buffer buffer = new Buffer(context, Math.max(1, properties.maxBatchOf(spaceId)), meterRegistry);
+        long period = Math.max(1, 1000 / properties.rateOf(spaceId));
+        context.executor().scheduleAtFixedRate(() -> {
+            // 定时任务抛出异常后不会再执行，这里吞掉异常保证之后的帧正常推送
+            try {
+                buffer.tick();
+            } catch (RuntimeException e) {
+                log.error("空间 {} 的位置帧推送失败：{}", spaceId, e.getMessage());
+            }
+        }, period, period, TimeUnit.MILLISECONDS);
+        return buffer;
+    }
+}
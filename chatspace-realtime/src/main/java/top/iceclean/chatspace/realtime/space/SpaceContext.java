@@ -0,0 +1,122 @@
+package top.iceclean.chatspace.realtime.space;
+
+import io.netty.util.concurrent.EventExecutor;
+import top.iceclean.chatspace.cache.collection.IntSet;
+
+import java.util.HashMap;
+import java.util.Map;
+
+/**
+ * 空间上下文，存放一个空间在本节点的内存状态
+ * 只能在空间绑定的事件循环中访问（通过 SpaceExecutor 提交任务），因此不做任何同步
+ * @author : Ice'Clean
+ * @date : 2026-10-18
+ */
+public class SpaceContext {
+    /** 空间 ID */
+    private final int spaceId;
+    /** 空间绑定的事件循环 */
+    private final EventExecutor executor;
+    /** 用户所在的区域 (userId -> zoneId) */
+    private final Map<Integer, Integer> userZoneMap = new HashMap<>();
+    /** 区域中的用户 (zoneId -> userIds) */
+    private final Map<Integer, IntSet> zoneUserMap = new HashMap<>();
+    /** 用户位置 */
+    private final PositionStore positionStore;
+    /** 用户视野 */
+    private final InterestTracker interestTracker;
+
+    SpaceContext(int spaceId, EventExecutor executor, PositionStore positionStore, int visionRange) {
+        this.spaceId = spaceId;
+        this.executor = executor;
+        this.positionStore = positionStore;
+        this.interestTracker = new InterestTracker(positionStore, visionRange);
+    }
+
+    /**
+     * 用户进入区域（会先离开原来的区域）
+     * @param userId 用户 ID
+     * @param zoneId 区域 ID
+     * @return 原来所在的区域 ID，没有则为 null
+     */
+    public Integer enterZone(int userId, int zoneId) {
+        ensureInLoop();
+        Integer oldZoneId = userZoneMap.put(userId, zoneId);
+        if (oldZoneId != null && oldZoneId != zoneId) {
+            removeZoneUser(oldZoneId, userId);
+        }
+        zoneUserMap.computeIfAbsent(zoneId, id -> new IntSet()).add(userId);
+        return oldZoneId;
+    }
+
+    /**
+     * 用户离开空间
+     * @param userId 用户 ID
+     * @return 离开前所在的区域 ID，没有则为 null
+     */
+    public Integer leave(int userId) {
+        ensureInLoop();
+        Integer zoneId = userZoneMap.remove(userId);
+        if (zoneId != null) {
+            removeZoneUser(zoneId, userId);
+        }
+        return zoneId;
+    }
+
+    /** 获取用户所在的区域，没有则为 null */
+    public Integer getUserZone(int userId) {
+        ensureInLoop();
+        return userZoneMap.get(userId);
+    }
+
+    /**
+     * 获取区域中的用户
+     * @param zoneId 区域 ID
+     * @return 用户 ID 集合（内部状态，只读）
+     */
+    public IntSet getZoneUsers(int zoneId) {
+        ensureInLoop();
+        IntSet userSet = zoneUserMap.get(zoneId);
+        return userSet == null ? new IntSet(0) : userSet;
+    }
+
+    /** 空间中的用户数 */
+    public int userCount() {
+        ensureInLoop();
+        return userZoneMap.size();
+    }
+
+    private void removeZoneUser(int zoneId, int userId) {
+        IntSet userSet = zoneUserMap.get(zoneId);
+        if (userSet != null && userSet.remove(userId) && userSet.isEmpty()) {
+            zoneUserMap.remove(zoneId);
+        }
+    }
+
+    /** 空间状态只允许在绑定的事件循环中访问 */
+    void ensureInLoop() {
+        if (!executor.inEventLoop()) {
+            throw new IllegalStateException("空间 " + spaceId + " 的状态只能在其事件循环中访问");
+        }
+    }
+
+    public int getSpaceId() {
+        return spaceId;
+    }
+
+    public EventExecutor executor() {
+        return executor;
+    }
+
+    /** 获取用户位置存储 */
+    public PositionStore positions() {
+        ensureInLoop();
+        return positionStore;
+    }
+
+    /** 获取用户视野管理，用户的移动和离开应通过它进行，以便同时维护位置和视野 */
+    public InterestTracker interests() {
+        ensureInLoop();
+        return interestTracker;
+    }
+}
@@ -0,0 +1,107 @@
+package top.iceclean.chatspace.realtime.space;
+
+import io.netty.util.concurrent.DefaultEventExecutorGroup;
+import io.netty.util.concurrent.DefaultThreadFactory;
+import io.netty.util.concurrent.EventExecutor;
+import io.netty.util.concurrent.EventExecutorGroup;
+import io.netty.util.concurrent.Future;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.stereotype.Component;
+
+import javax.annotation.PreDestroy;
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.List;
+import java.util.concurrent.Callable;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentMap;
+import java.util.concurrent.atomic.AtomicInteger;
+
+/**
+ * 空间执行器
+ * 每个空间固定绑定到一个单线程的事件循环上，该空间的位置移动、区域进出和广播都在这个线程中串行执行，
+ * 空间的内存状态（SpaceContext）只由这个线程读写，不需要加锁；
+ * 空间在第一次使用时依次分配到各个事件循环上，多个空间分散到多个核心
+ * @author : Ice'Clean
+ * @date : 2026-10-18
+ */
+@Slf4j
+@Component
+public class SpaceExecutor {
+    /** 所有事件循环 */
+    private final EventExecutorGroup group;
+    private final List<EventExecutor> executors = new ArrayList<>();
+    /** 下一个空间分配到的事件循环 */
+    private final AtomicInteger next = new AtomicInteger();
+    /** 各个空间的上下文 (spaceId -> context) */
+    private final ConcurrentMap<Integer, SpaceContext> contextMap = new ConcurrentHashMap<>();
+    /** 位置网格的边长和桶数 */
+    private final int cellSize;
+    private final int cellBuckets;
+    /** 默认视野半径 */
+    private final int visionRange;
+
+    public SpaceExecutor(@Value("${chatspace.realtime.space-threads:0}") int threads,
+                         @Value("${chatspace.realtime.position.cell-size:32}") int cellSize,
+                         @Value("${chatspace.realtime.position.cell-buckets:4096}") int cellBuckets,
+                         @Value("${chatspace.realtime.position.vision-range:32}") int visionRange) {
+        this.cellSize = cellSize;
+        this.cellBuckets = cellBuckets;
+        this.visionRange = visionRange;
+        int size = threads > 0 ? threads : Runtime.getRuntime().availableProcessors();
+        this.group = new DefaultEventExecutorGroup(size, new DefaultThreadFactory("space-loop", true));
+        group.forEach(executors::add);
+        log.info("空间事件循环数：{}", size);
+    }
+
+    /**
+     * 获取空间的上下文，第一次获取时为空间分配事件循环
+     * @param spaceId 空间 ID
+     * @return 空间上下文
+     */
+    public SpaceContext context(int spaceId) {
+        return contextMap.computeIfAbsent(spaceId, id -> new SpaceContext(id,
+                executors.get(Math.floorMod(next.getAndIncrement(), executors.size())),
+                new PositionStore(cellSize, cellBuckets), visionRange));
+    }
+
+    /** 本节点已使用的所有空间上下文 */
+    public Collection<SpaceContext> contexts() {
+        return contextMap.values();
+    }
+
+    /** 获取空间绑定的事件循环 */
+    public EventExecutor executor(int spaceId) {
+        return context(spaceId).executor();
+    }
+
+    /**
+     * 在空间的事件循环中执行任务，当前已经在该事件循环中时直接执行
+     * @param spaceId 空间 ID
+     * @param task 任务
+     */
+    public void execute(int spaceId, Runnable task) {
+        EventExecutor executor = executor(spaceId);
+        if (executor.inEventLoop()) {
+            task.run();
+        } else {
+            executor.execute(task);
+        }
+    }
+
+    /**
+     * 在空间的事件循环中执行有返回值的任务
+     * @param spaceId 空间 ID
+     * @param task 任务
+     * @return 任务结果
+     */
+    public <T> Future<T> submit(int spaceId, Callable<T> task) {
+        return executor(spaceId).submit(task);
+    }
+
+    @PreDestroy
+    public void shutdown() {
+        group.shutdownGracefully();
+    }
+}
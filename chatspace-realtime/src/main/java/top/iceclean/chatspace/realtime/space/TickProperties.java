@@ -0,0 +1,82 @@
+package top.iceclean.chatspace.realtime.space;
+
+import org.springframework.boot.context.properties.ConfigurationProperties;
+import org.springframework.stereotype.Component;
+
+import java.util.HashMap;
+import java.util.Map;
+
+/**
+ * 位置更新按帧合并的配置（chatspace.realtime.tick），可以按空间单独配置
+ * @author : Ice'Clean
+ * @date : 2026-10-18
+ */
+@Component
+@ConfigurationProperties(prefix = "chatspace.realtime.tick")
+public class TickProperties {
+    /** 默认每秒的帧数，不大于 0 时不合并，每次移动立即推送 */
+    private int rate = 0;
+    /** 默认每个接收者每帧最多包含的用户位置数，只限制位置刷新，超出的刷新顺延到下一帧，进入和离开视野的更新不受限制 */
+    private int maxBatch = 200;
+    /** 各空间单独的配置 (spaceId -> 配置) */
+    private Map<Integer, Space> spaces = new HashMap<>();
+
+    public static class Space {
+        /** 每秒的帧数，为空时使用默认值 */
+        private Integer rate;
+        /** 每个接收者每帧最多包含的用户位置数，为空时使用默认值 */
+        private Integer maxBatch;
+
+        public Integer getRate() {
+            return rate;
+        }
+
+        public void setRate(Integer rate) {
+            this.rate = rate;
+        }
+
+        public Integer getMaxBatch() {
+            return maxBatch;
+        }
+
+        public void setMaxBatch(Integer maxBatch) {
+            this.maxBatch = maxBatch;
+        }
+    }
+
+    /** 获取空间的帧率 */
+    public int rateOf(int spaceId) {
+        Space space = spaces.get(spaceId);
+        return space == null || space.getRate() == null ? rate : space.getRate();
+    }
+
+    /** 获取空间每个接收者每帧的最大用户位置数 */
+    public int maxBatchOf(int spaceId) {
+        Space space = spaces.get(spaceId);
+        return space == null || space.getMaxBatch() == null ? maxBatch : space.getMaxBatch();
+    }
+
+    public int getRate() {
+        return rate;
+    }
+
+    public void setRate(int rate) {
+        this.rate = rate;
+    }
+
+    public int getMaxBatch() {
+        return maxBatch;
+    }
+
+    public void setMaxBatch(int maxBatch) {
+        this.maxBatch = maxBatch;
+    }
+
+    public Map<Integer, Space> getSpaces() {
+        return spaces;
+    }
+
+    public void setSpaces(Map<Integer, Space> spaces) {
+        this.spaces = spaces;
+    }
+}
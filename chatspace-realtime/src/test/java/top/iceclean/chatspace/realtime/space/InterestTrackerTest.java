@@ -0,0 +1,171 @@
+package top.iceclean.chatspace.realtime.space;
+
+import io.netty.util.concurrent.ImmediateEventExecutor;
+import org.junit.jupiter.api.Test;
+import top.iceclean.chatspace.cache.collection.IntSet;
+import top.iceclean.chatspace.realtime.common.DataGenerator;
+
+import java.util.*;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+/**
+ * InterestTracker 的增量视野与每一步完整重新计算的对照测试
+ * @author : Ice'Clean
+ * @date : 2026-10-18
+ */
+class InterestTrackerTest {
+    private static final int USERS = 60;
+    private static final int BOUND = 40;
+    private static final int DEFAULT_RANGE = 10;
+
+    private final Map<Integer, int[]> sites = new HashMap<>();
+    private final Map<Integer, Integer> ranges = new HashMap<>();
+
+    @Test
+    void deltasMatchFullRecomputation() {
+        Random random = new Random(20261018);
+        PositionStore store = new PositionStore(8, 16);
+        InterestTracker tracker = new InterestTracker(store, DEFAULT_RANGE);
+
+        for (int step = 0; step < 4000; step++) {
+            int userId = random.nextInt(USERS);
+            Map<Integer, Set<Integer>> oldVisible = visibleAll();
+            Map<Integer, Set<Integer>> oldWatchers = watchersAll();
+            int op = random.nextInt(10);
+            InterestTracker.Delta delta;
+            if (op == 0) {
+                delta = tracker.leave(userId);
+                boolean present = sites.remove(userId) != null;
+                ranges.remove(userId);
+                if (!present) {
+                    assertNull(delta);
+                    continue;
+                }
+                assertTrue(delta.isGone());
+            } else if (op == 1) {
+                int range = new int[]{0, 5, 10, 20}[random.nextInt(4)];
+                delta = tracker.setRange(userId, range);
+                ranges.put(userId, range);
+                if (!sites.containsKey(userId)) {
+                    assertNull(delta);
+                    continue;
+                }
+            } else {
+                int x = random.nextInt(2 * BOUND + 1) - BOUND;
+                int y = random.nextInt(2 * BOUND + 1) - BOUND;
+                delta = tracker.move(userId, x, y);
+                sites.put(userId, new int[]{x, y});
+                assertFalse(delta.isGone());
+            }
+            Map<Integer, Set<Integer>> newVisible = visibleAll();
+            Map<Integer, Set<Integer>> newWatchers = watchersAll();
+
+            // 差量与前后两次完整计算的差一致
+            Set<Integer> before = oldVisible.getOrDefault(userId, Collections.emptySet());
+            Set<Integer> after = newVisible.getOrDefault(userId, Collections.emptySet());
+            assertEquals(userId, delta.getUserId());
+            assertEquals(minus(after, before), delta.getEntered());
+            assertEquals(minus(before, after), delta.getLeft());
+            Set<Integer> watchersBefore = oldWatchers.getOrDefault(userId, Collections.emptySet());
+            Set<Integer> watchersAfter = newWatchers.getOrDefault(userId, Collections.emptySet());
+            assertEquals(minus(watchersAfter, watchersBefore), delta.getEnteredWatchers());
+            assertEquals(minus(watchersBefore, watchersAfter), delta.getLeftWatchers());
+            Set<Integer> kept = new HashSet<>(watchersBefore);
+            kept.retainAll(watchersAfter);
+            assertEquals(kept, delta.getWatchers());
+
+            // 所有用户的视野都与完整计算一致，而不只是移动的用户
+            if (step % 20 == 0) {
+                for (int id = 0; id < USERS; id++) {
+                    assertEquals(newVisible.getOrDefault(id, Collections.emptySet()), tracker.visible(id), "visible " + id);
+                    assertEquals(newWatchers.getOrDefault(id, Collections.emptySet()), tracker.watchers(id), "watchers " + id);
+                }
+            }
+        }
+    }
+
+    @Test
+    void siteChangesCarryPositionsAndLeaveMarkers() {
+        PositionStore store = new PositionStore(8, 16);
+        SpaceContext context = new SpaceContext(1, ImmediateEventExecutor.INSTANCE, store, DEFAULT_RANGE);
+        InterestTracker tracker = context.interests();
+        tracker.move(1, 0, 0);
+        tracker.move(2, 5, 0);
+        tracker.move(3, 30, 0);
+
+        // 1 移动到 3 旁边：看到 3，看不到 2；2 不再能看到 1，3 开始能看到 1
+        List<DataGenerator.Generator> changes = tracker.move(1, 25, 0).toSiteChanges(context);
+        assertEquals(3, changes.size());
+        assertFrame(changes.get(0), IntSet.of(1), "3@30,0", "2 leave");
+        assertFrame(changes.get(1), IntSet.of(3), "1@25,0");
+        assertFrame(changes.get(2), IntSet.of(2), "1 leave");
+
+        // 离开空间后只通知能看到它的用户，不再发给自己
+        changes = tracker.leave(1).toSiteChanges(context);
+        assertEquals(1, changes.size());
+        assertFrame(changes.get(0), IntSet.of(3), "1 leave");
+
+        // 原地移动（视野没有变化）只刷新能看到它的用户
+        changes = tracker.move(2, 5, 0).toSiteChanges(context);
+        assertTrue(changes.isEmpty());
+    }
+
+    @SuppressWarnings("unchecked")
+    private static void assertFrame(DataGenerator.Generator generator, IntSet target, String... entries) {
+        assertEquals(target, generator.target());
+        List<String> actual = new ArrayList<>();
+        for (SiteFrame.Entry entry : (List<SiteFrame.Entry>) generator.exec(target.toIntArray()[0])) {
+            assertEquals(1, entry.getSpaceId());
+            actual.add(entry.isLeave() ? entry.getUserId() + " leave"
+                    : entry.getUserId() + "@" + entry.getX() + "," + entry.getY());
+        }
+        assertEquals(Arrays.asList(entries), actual);
+    }
+
+    /** 完整计算所有用户能看到的用户 */
+    private Map<Integer, Set<Integer>> visibleAll() {
+        Map<Integer, Set<Integer>> result = new HashMap<>();
+        sites.forEach((userId, site) -> {
+            Set<Integer> visible = new HashSet<>();
+            sites.forEach((other, otherSite) -> {
+                if (other.intValue() != userId && covers(site, rangeOf(userId), otherSite)) {
+                    visible.add(other);
+                }
+            });
+            result.put(userId, visible);
+        });
+        return result;
+    }
+
+    /** 完整计算所有用户被哪些用户看到 */
+    private Map<Integer, Set<Integer>> watchersAll() {
+        Map<Integer, Set<Integer>> result = new HashMap<>();
+        sites.forEach((userId, site) -> {
+            Set<Integer> watchers = new HashSet<>();
+            sites.forEach((other, otherSite) -> {
+                if (other.intValue() != userId && covers(otherSite, rangeOf(other), site)) {
+                    watchers.add(other);
+                }
+            });
+            result.put(userId, watchers);
+        });
+        return result;
+    }
+
+    private int rangeOf(int userId) {
+        return ranges.getOrDefault(userId, DEFAULT_RANGE);
+    }
+
+    private static boolean covers(int[] site, long range, int[] other) {
+        long dx = site[0] - other[0];
+        long dy = site[1] - other[1];
+        return dx * dx + dy * dy <= range * range;
+    }
+
+    private static Set<Integer> minus(Set<Integer> a, Set<Integer> b) {
+        Set<Integer> result = new HashSet<>(a);
+        result.removeAll(b);
+        return result;
+    }
+}
@@ -0,0 +1,144 @@
+package top.iceclean.chatspace.realtime.space;
+
+import org.junit.jupiter.api.Test;
+import top.iceclean.chatspace.cache.collection.IntSet;
+
+import java.util.*;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+/**
+ * PositionStore 与暴力计算的对照测试
+ * 网格和桶都取得很小，让不同网格散列到同一个桶、查询覆盖的网格多于桶数等情况都能出现
+ * @author : Ice'Clean
+ * @date : 2026-10-18
+ */
+class PositionStoreTest {
+    private static final int USERS = 200;
+    private static final int BOUND = 100;
+
+    @Test
+    void randomOperationsMatchBruteForce() {
+        Random random = new Random(20261018);
+        PositionStore store = new PositionStore(8, 16);
+        Map<Integer, int[]> expected = new HashMap<>();
+
+        for (int step = 0; step < 5000; step++) {
+            int userId = random.nextInt(USERS);
+            if (random.nextInt(5) == 0) {
+                assertEquals(expected.remove(userId) != null, store.remove(userId));
+            } else {
+                int x = random.nextInt(2 * BOUND + 1) - BOUND;
+                int y = random.nextInt(2 * BOUND + 1) - BOUND;
+                assertEquals(expected.put(userId, new int[]{x, y}) == null, store.put(userId, x, y));
+            }
+            if (step % 25 == 0) {
+                assertSameState(expected, store, random);
+            }
+        }
+        assertSameState(expected, store, random);
+    }
+
+    @Test
+    void drainChangesKeepsLatestPositionAndRemovals() {
+        PositionStore store = new PositionStore(8, 16);
+        store.put(1, 0, 0);
+        store.put(1, 5, 6);
+        store.put(2, 1, 1);
+        store.put(3, 2, 2);
+        store.remove(3);
+        store.remove(4);
+
+        Map<Integer, int[]> moved = new HashMap<>();
+        Set<Integer> removed = new HashSet<>();
+        store.drainChanges((userIds, xs, ys, removedUserIds) -> {
+            for (int i = 0; i < userIds.length; i++) {
+                moved.put(userIds[i], new int[]{xs[i], ys[i]});
+            }
+            Arrays.stream(removedUserIds).forEach(removed::add);
+        });
+        assertEquals(2, moved.size());
+        assertArrayEquals(new int[]{5, 6}, moved.get(1));
+        assertArrayEquals(new int[]{1, 1}, moved.get(2));
+        assertEquals(Collections.singleton(3), removed);
+
+        // 取出后没有新的变化时不回调
+        store.drainChanges((userIds, xs, ys, removedUserIds) -> fail("没有变化时不应回调"));
+
+        // 写入失败重新标记，期间又离开的用户以离开为准
+        store.markChanged(new int[]{1, 2}, new int[]{3});
+        store.remove(2);
+        store.drainChanges((userIds, xs, ys, removedUserIds) -> {
+            assertArrayEquals(new int[]{1}, userIds);
+            assertEquals(new HashSet<>(Arrays.asList(2, 3)), toSet(removedUserIds));
+        });
+    }
+
+    /** 逐个对比位置、范围查询、候选查询和距离 */
+    private static void assertSameState(Map<Integer, int[]> expected, PositionStore store, Random random) {
+        assertEquals(expected.size(), store.size());
+        for (int userId = 0; userId < USERS; userId++) {
+            int[] site = expected.get(userId);
+            assertEquals(site != null, store.contains(userId));
+            if (site == null) {
+                assertNull(store.get(userId));
+            } else {
+                assertArrayEquals(site, store.get(userId));
+            }
+        }
+
+        for (int i = 0; i < 10; i++) {
+            int x = random.nextInt(2 * BOUND + 1) - BOUND;
+            int y = random.nextInt(2 * BOUND + 1) - BOUND;
+            // 包括 0、小于网格、跨多个网格和覆盖全部桶的范围
+            double range = random.nextInt(4) == 0 ? random.nextInt(300) : random.nextDouble() * 40;
+            assertEquals(bruteRadius(expected, x, y, range), store.radius(x, y, range));
+
+            int userId = random.nextInt(USERS);
+            int[] site = expected.get(userId);
+            IntSet around = store.radius(userId, range);
+            if (site == null) {
+                assertTrue(around.isEmpty());
+            } else {
+                assertEquals(bruteRadius(expected, site[0], site[1], range), around);
+            }
+
+            int minX = Math.min(x, site == null ? x : site[0]);
+            int minY = Math.min(y, site == null ? y : site[1]);
+            IntSet candidates = store.candidates(minX, minY, minX + 20, minY + 20);
+            expected.forEach((id, s) -> {
+                if (s[0] >= minX && s[0] <= minX + 20 && s[1] >= minY && s[1] <= minY + 20) {
+                    assertTrue(candidates.contains(id), "候选集合缺少区域内的用户 " + id);
+                }
+            });
+
+            int other = random.nextInt(USERS);
+            int[] otherSite = expected.get(other);
+            long distance = site == null || otherSite == null ? -1 : squared(site, otherSite[0], otherSite[1]);
+            assertEquals(distance, store.distanceSquared(userId, other));
+            assertEquals(distance >= 0 && distance <= range * range, store.canCover(userId, range, other));
+        }
+    }
+
+    private static Set<Integer> bruteRadius(Map<Integer, int[]> expected, int x, int y, double range) {
+        Set<Integer> result = new HashSet<>();
+        expected.forEach((id, site) -> {
+            if (squared(site, x, y) <= range * range) {
+                result.add(id);
+            }
+        });
+        return result;
+    }
+
+    private static long squared(int[] site, int x, int y) {
+        long dx = site[0] - x;
+        long dy = site[1] - y;
+        return dx * dx + dy * dy;
+    }
+
+    private static Set<Integer> toSet(int[] values) {
+        Set<Integer> set = new HashSet<>();
+        Arrays.stream(values).forEach(set::add);
+        return set;
+    }
+}
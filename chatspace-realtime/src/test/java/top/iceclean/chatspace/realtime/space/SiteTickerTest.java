@@ -0,0 +1,198 @@
+package top.iceclean.chatspace.realtime.space;
+
+import io.micrometer.core.instrument.MeterRegistry;
+import io.micrometer.core.instrument.simple.SimpleMeterRegistry;
+import io.netty.util.concurrent.DefaultEventExecutor;
+import io.netty.util.concurrent.EventExecutor;
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import top.iceclean.chatspace.realtime.common.DataGenerator;
+
+import java.util.*;
+import java.util.concurrent.Callable;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+/**
+ * SiteTicker 的按帧合并、每帧上限和顺延测试
+ * 帧率取得很低，帧由测试在空间的事件循环中手动结束，结果与时间无关
+ * @author : Ice'Clean
+ * @date : 2026-10-18
+ */
+class SiteTickerTest {
+    private static final int SPACE_ID = 1;
+    private static final int RECIPIENT = 100;
+    /** 接收者周围的 4 个用户，都在接收者视野内，但互相看不到 */
+    private static final int[][] AROUND = {{10, 0}, {-10, 0}, {0, 10}, {0, -10}};
+
+    private EventExecutor loop;
+    private MeterRegistry registry;
+    private SpaceContext context;
+    private SiteTicker ticker;
+    /** 推送出去的位置帧 */
+    private final List<DataGenerator.Generator> sent = new ArrayList<>();
+
+    @BeforeEach
+    void setUp() {
+        loop = new DefaultEventExecutor();
+        registry = new SimpleMeterRegistry();
+        context = new SpaceContext(SPACE_ID, loop, new PositionStore(8, 16), 10);
+        TickProperties properties = new TickProperties();
+        properties.setRate(1);
+        properties.setMaxBatch(2);
+        ticker = new SiteTicker(properties, registry);
+    }
+
+    @AfterEach
+    void tearDown() {
+        loop.shutdownGracefully();
+    }
+
+    @Test
+    void enterAndLeaveAreNeverCapped() throws Exception {
+        inLoop(() -> {
+            surround();
+            // 进入视野的 4 个用户超过每帧上限 2，也要在当帧全部推送
+            assertEquals(Arrays.asList("1@10,0", "2@-10,0", "3@0,10", "4@0,-10"), sorted(framesTo(RECIPIENT)));
+
+            leave(1);
+            leave(2);
+            leave(3);
+            ticker.tick(context);
+            assertEquals(Arrays.asList("1 leave", "2 leave", "3 leave"), sorted(framesTo(RECIPIENT)));
+            return null;
+        });
+        assertEquals(0, count("deferred"));
+    }
+
+    @Test
+    void refreshesOverTheCapAreDeferredNotDropped() throws Exception {
+        inLoop(() -> {
+            surround();
+            framesTo(RECIPIENT);
+
+            // 4 个用户都只是刷新位置，每帧只推送 2 个，其余的顺延到下一帧
+            for (int userId = 1; userId <= 4; userId++) {
+                move(userId, AROUND[userId - 1][0] * 9 / 10, AROUND[userId - 1][1] * 9 / 10);
+            }
+            ticker.tick(context);
+            List<String> first = framesTo(RECIPIENT);
+            assertEquals(2, first.size());
+            assertEquals(2, count("deferred"));
+
+            ticker.tick(context);
+            List<String> second = framesTo(RECIPIENT);
+            assertEquals(2, second.size());
+            List<String> all = new ArrayList<>(first);
+            all.addAll(second);
+            assertEquals(Arrays.asList("1@9,0", "2@-9,0", "3@0,9", "4@0,-9"), sorted(all));
+
+            // 顺延的刷新全部推送后不再有消息
+            ticker.tick(context);
+            assertTrue(framesTo(RECIPIENT).isEmpty());
+            return null;
+        });
+    }
+
+    @Test
+    void updatesWithinAFrameAreMerged() throws Exception {
+        inLoop(() -> {
+            move(1, 1, 0);
+            move(RECIPIENT, 0, 0);
+            ticker.tick(context);
+            framesTo(RECIPIENT);
+
+            move(1, 2, 0);
+            move(1, 3, 0);
+            move(1, 4, 0);
+            ticker.tick(context);
+            assertEquals(Collections.singletonList("1@4,0"), framesTo(RECIPIENT));
+
+            // 同一帧内进入后又离开视野，帧结束时只剩离开标记
+            move(5, 1, 1);
+            move(5, 30, 30);
+            ticker.tick(context);
+            assertEquals(Collections.singletonList("5 leave"), framesTo(RECIPIENT));
+            return null;
+        });
+        assertTrue(count("merged") >= 3);
+    }
+
+    @Test
+    void recipientsThatLeftAreDropped() throws Exception {
+        inLoop(() -> {
+            move(1, 1, 0);
+            move(RECIPIENT, 0, 0);
+            ticker.tick(context);
+            sent.clear();
+
+            move(1, 2, 0);
+            leave(RECIPIENT);
+            ticker.tick(context);
+            assertTrue(framesTo(RECIPIENT).isEmpty());
+            return null;
+        });
+        assertEquals(1, count("dropped"));
+    }
+
+    @Test
+    void immediateModeSendsEveryMove() throws Exception {
+        TickProperties properties = new TickProperties();
+        ticker = new SiteTicker(properties, registry);
+        inLoop(() -> {
+            move(1, 1, 0);
+            move(RECIPIENT, 0, 0);
+            assertEquals(Collections.singletonList("100@0,0"), framesTo(1));
+            move(RECIPIENT, 1, 1);
+            assertEquals(Collections.singletonList("100@1,1"), framesTo(1));
+            return null;
+        });
+    }
+
+    /** 4 个用户在接收者周围，接收者最后进入，然后结束一帧 */
+    private void surround() {
+        for (int userId = 1; userId <= 4; userId++) {
+            move(userId, AROUND[userId - 1][0], AROUND[userId - 1][1]);
+        }
+        move(RECIPIENT, 0, 0);
+        ticker.tick(context);
+    }
+
+    private void move(int userId, int x, int y) {
+        ticker.submit(context, context.interests().move(userId, x, y), sent::add);
+    }
+
+    private void leave(int userId) {
+        ticker.submit(context, context.interests().leave(userId), sent::add);
+    }
+
+    /** 取出发给某个用户的所有位置帧的内容，并清空已推送的帧 */
+    @SuppressWarnings("unchecked")
+    private List<String> framesTo(int userId) {
+        List<String> entries = new ArrayList<>();
+        for (DataGenerator.Generator frame : sent) {
+            if (frame.target().contains(userId)) {
+                for (SiteFrame.Entry entry : (List<SiteFrame.Entry>) frame.exec(userId)) {
+                    entries.add(entry.isLeave() ? entry.getUserId() + " leave"
+                            : entry.getUserId() + "@" + entry.getX() + "," + entry.getY());
+                }
+            }
+        }
+        sent.clear();
+        return entries;
+    }
+
+    private double count(String result) {
+        return registry.counter("chatspace.site.tick.updates", "space", String.valueOf(SPACE_ID), "result", result).count();
+    }
+
+    private void inLoop(Callable<Void> task) throws Exception {
+        loop.submit(task).get();
+    }
+
+    private static List<String> sorted(List<String> entries) {
+        Collections.sort(entries);
+        return entries;
+    }
+}
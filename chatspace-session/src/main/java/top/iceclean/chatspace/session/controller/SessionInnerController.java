@@ -1,5 +1,6 @@
 package top.iceclean.chatspace.session.controller;
 
+import lombok.extern.slf4j.Slf4j;
 import org.springframework.beans.factory.annotation.Autowired;
 import org.springframework.web.bind.annotation.*;
 import top.iceclean.chatspace.infrastructure.constant.SessionType;
@@ -7,13 +8,16 @@ import top.iceclean.chatspace.infrastructure.po.Session;
 import top.iceclean.chatspace.infrastructure.vo.SessionVO;
 import top.iceclean.chatspace.session.service.SessionService;
 
+import java.util.ArrayList;
 import java.util.List;
+import java.util.function.IntFunction;
 
 /**
  * 内部调用的会话服务
  * @author : Ice'Clean
  * @date : 2022-10-10
  */
+@Slf4j
 @RestController
 public class SessionInnerController {
 
@@ -40,6 +44,16 @@ public class SessionInnerController {
         return sessionService.getSessionVO(sessionId);
     }
 
+    /**
+     * 批量通过会话 ID 获取简单的会话响应对象
+     * @param sessionIdList 会话 ID 列表
+     * @return 会话响应对象列表，与请求顺序一致，不存在的为 null
+     */
+    @PostMapping("/vo/list")
+    public List<SessionVO> getSessionVOList(@RequestBody List<Integer> sessionIdList) {
+        return getEach(sessionIdList, sessionService::getSessionVO);
+    }
+
     /**
      * 通过会话 ID 和当前用户 ID 获取详细的会话响应对象
      * @param sessionId 会话 ID
@@ -62,6 +76,19 @@ public class SessionInnerController {
         return sessionService.findSessionId(type, targetId);
     }
 
+    /**
+     * 批量寻找会话的 ID
+     * 目前仍逐个键查询（与 findSessionId 相同的查询），合并只省去了调用方的 HTTP 往返
+     * @param keys 会话类型和目标 ID 组成的数组列表 [[type, targetId], ...]
+     * @return 对应会话的 ID 列表，与请求顺序一致，不存在的为 null
+     */
+    @PostMapping("/find/id/list")
+    public List<Integer> findSessionIds(@RequestBody List<int[]> keys) {
+        List<Integer> sessionIds = new ArrayList<>(keys.size());
+        keys.forEach(key -> sessionIds.add(sessionService.findSessionId(key[0], key[1])));
+        return sessionIds;
+    }
+
     /**
      * 更新用户在会话中最后一条消息的 ID 为最新的
      * @param sessionId 会话 ID
@@ -71,4 +98,27 @@ public class SessionInnerController {
     public void updateLastMsgId(int sessionId, int userId) {
         sessionService.updateLastMsgId(sessionId, userId);
     }
+
+    /**
+     * 批量更新用户在会话中最后阅读的消息 ID（只增不减）
+     * @param cursors 会话 ID、用户 ID 和消息 ID 组成的数组列表 [[sessionId, userId, msgId], ...]
+     */
+    @PutMapping("/last-msg-id/list")
+    public void updateLastMsgIds(@RequestBody List<int[]> cursors) {
+        sessionService.updateLastMsgIds(cursors);
+    }
+
+    /** 逐个 ID 查询，单个 ID 查询失败时该位置为 null，不影响同一批中的其他 ID */
+    private static <T> List<T> getEach(List<Integer> idList, IntFunction<T> getter) {
+        List<T> list = new ArrayList<>(idList.size());
+        for (Integer id : idList) {
+            try {
+                list.add(getter.apply(id));
+            } catch (RuntimeException e) {
+                log.warn("批量查询中 ID {} 查询失败：{}", id, e.getMessage());
+                list.add(null);
+            }
+        }
+        return list;
+    }
 }